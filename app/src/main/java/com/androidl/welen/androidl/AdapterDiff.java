@@ -0,0 +1,221 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.androidl.welen.androidl;
+
+/**
+ * Computes the minimal remove, insert and move operations which transform one list of stable ids
+ * into another. Ids are matched through a hash table and the items which keep their relative order
+ * are found with a longest increasing subsequence, which makes a diff O(n log n). Every item which
+ * is not part of that subsequence is reported as moved.
+ *
+ * The ids of a list have to be unique. The arrays are reused between calls, so a result is only
+ * valid until the next call to {@link #calculate}.
+ */
+public class AdapterDiff {
+
+    private static final long NO_ID = Long.MIN_VALUE;
+
+    private int mOldCount;
+    private int mNewCount;
+    private int mRemoveCount;
+    private int mInsertCount;
+    private int mMoveCount;
+
+    /**
+     * For every new position the old position of the item, or -1 if it was inserted.
+     */
+    private int[] mNewToOld = new int[0];
+    private boolean[] mRemoved = new boolean[0];
+    private boolean[] mMoved = new boolean[0];
+
+    // the open addressing table mapping an old id to its old position
+    private long[] mTableKeys = new long[0];
+    private int[] mTableValues = new int[0];
+
+    // scratch space of the longest increasing subsequence
+    private int[] mTails = new int[0];
+    private int[] mPredecessors = new int[0];
+
+    /**
+     * Diff the old against the new ids.
+     */
+    public void calculate(long[] oldIds, int oldCount, long[] newIds, int newCount) {
+        mOldCount = oldCount;
+        mNewCount = newCount;
+        ensureCapacity(oldCount, newCount);
+        fillTable(oldIds, oldCount);
+
+        for (int i = 0; i < oldCount; i++) {
+            mRemoved[i] = true;
+        }
+        mInsertCount = 0;
+        for (int i = 0; i < newCount; i++) {
+            int oldPosition = lookup(newIds[i]);
+            if (oldPosition >= 0 && !mRemoved[oldPosition]) {
+                // duplicate id, it can only be matched once
+                oldPosition = -1;
+            }
+            mNewToOld[i] = oldPosition;
+            mMoved[i] = false;
+            if (oldPosition >= 0) {
+                mRemoved[oldPosition] = false;
+            } else {
+                mInsertCount++;
+            }
+        }
+        mRemoveCount = oldCount - (newCount - mInsertCount);
+        findMovedItems();
+    }
+
+    public int getOldCount() {
+        return mOldCount;
+    }
+
+    public int getNewCount() {
+        return mNewCount;
+    }
+
+    /**
+     * @return the old position of the item at the new position or -1 if it was inserted
+     */
+    public int getOldPosition(int newPosition) {
+        return mNewToOld[newPosition];
+    }
+
+    public boolean isInserted(int newPosition) {
+        return mNewToOld[newPosition] < 0;
+    }
+
+    public boolean isRemoved(int oldPosition) {
+        return mRemoved[oldPosition];
+    }
+
+    /**
+     * @return whether the item at the new position changed its order relative to the other kept
+     *         items and needs to be moved
+     */
+    public boolean isMoved(int newPosition) {
+        return mMoved[newPosition];
+    }
+
+    public int getRemoveCount() {
+        return mRemoveCount;
+    }
+
+    public int getInsertCount() {
+        return mInsertCount;
+    }
+
+    public int getMoveCount() {
+        return mMoveCount;
+    }
+
+    /**
+     * Mark all kept items which are not part of the longest increasing subsequence of old
+     * positions as moved, using patience sorting.
+     */
+    private void findMovedItems() {
+        int length = 0;
+        int kept = 0;
+        for (int i = 0; i < mNewCount; i++) {
+            int oldPosition = mNewToOld[i];
+            if (oldPosition < 0) {
+                continue;
+            }
+            kept++;
+            // find the first tail which is not smaller than this position
+            int low = 0;
+            int high = length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (mNewToOld[mTails[mid]] < oldPosition) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            mPredecessors[i] = low > 0 ? mTails[low - 1] : -1;
+            mTails[low] = i;
+            if (low == length) {
+                length++;
+            }
+        }
+        for (int i = 0; i < mNewCount; i++) {
+            mMoved[i] = mNewToOld[i] >= 0;
+        }
+        int current = length > 0 ? mTails[length - 1] : -1;
+        while (current >= 0) {
+            mMoved[current] = false;
+            current = mPredecessors[current];
+        }
+        mMoveCount = kept - length;
+    }
+
+    private void fillTable(long[] ids, int count) {
+        int capacity = mTableKeys.length;
+        for (int i = 0; i < capacity; i++) {
+            mTableKeys[i] = NO_ID;
+        }
+        int mask = capacity - 1;
+        for (int i = 0; i < count; i++) {
+            long id = ids[i];
+            int slot = hash(id) & mask;
+            while (mTableKeys[slot] != NO_ID && mTableKeys[slot] != id) {
+                slot = (slot + 1) & mask;
+            }
+            if (mTableKeys[slot] == NO_ID) {
+                mTableKeys[slot] = id;
+                mTableValues[slot] = i;
+            }
+        }
+    }
+
+    private int lookup(long id) {
+        int mask = mTableKeys.length - 1;
+        int slot = hash(id) & mask;
+        while (mTableKeys[slot] != NO_ID) {
+            if (mTableKeys[slot] == id) {
+                return mTableValues[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private static int hash(long id) {
+        long h = id * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private void ensureCapacity(int oldCount, int newCount) {
+        if (mRemoved.length < oldCount) {
+            mRemoved = new boolean[oldCount];
+        }
+        if (mNewToOld.length < newCount) {
+            mNewToOld = new int[newCount];
+            mMoved = new boolean[newCount];
+            mTails = new int[newCount];
+            mPredecessors = new int[newCount];
+        }
+        // keep the load factor of the table at or below one half
+        int tableSize = Integer.highestOneBit(Math.max(oldCount, 1) * 2 - 1) << 1;
+        if (mTableKeys.length < tableSize) {
+            mTableKeys = new long[tableSize];
+            mTableValues = new int[tableSize];
+        }
+    }
+}
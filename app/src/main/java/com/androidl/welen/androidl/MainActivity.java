@@ -5,24 +5,59 @@ import android.os.Bundle;
 import android.view.LayoutInflater;
 import android.view.Menu;
 import android.view.MenuItem;
-import android.view.View;
+import android.view.ViewGroup;
 import android.widget.FrameLayout;
 import android.widget.TextView;
 
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
 import java.util.ArrayList;
 
 
 public class MainActivity extends Activity {
 
     NotificationScrollLayout mStackLayout;
+
+    /**
+     * Off by default, switched with adb shell dumpsys activity
+     * com.androidl.welen.androidl/.MainActivity metrics-on|metrics-off|metrics-reset
+     */
+    private final StackMetricsRecorder mMetrics = new StackMetricsRecorder();
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
         mStackLayout = (NotificationScrollLayout) findViewById(R.id.stack_scroll_layout);
         mStackLayout.setScrollingEnabled(true);
-        mStackLayout.setMainActivity(this);
         mStackLayout.setAnimationsEnabled(true);
+        mStackLayout.setScrollTranslationEnabled(true);
+        mStackLayout.setTouchResamplingEnabled(true);
+        mStackLayout.setBackgroundLayoutEnabled(true);
+        mStackLayout.setAdapter(mAdapter);
+        mMetrics.setEnabled(false);
+        mStackLayout.setMetrics(mMetrics);
+    }
+
+    @Override
+    public void dump(String prefix, FileDescriptor fd, PrintWriter writer, String[] args) {
+        super.dump(prefix, fd, writer, args);
+        if (args != null && args.length > 0) {
+            if ("metrics-on".equals(args[0])) {
+                mMetrics.setEnabled(true);
+            } else if ("metrics-off".equals(args[0])) {
+                mMetrics.setEnabled(false);
+            } else if ("metrics-reset".equals(args[0])) {
+                mMetrics.reset();
+            }
+        }
+        mMetrics.dump(writer);
+        writer.println("  snapped children: "
+                + mStackLayout.getAnimationDegradationPolicy().getSnappedChildCount());
+        HardwareLayerManager layers = mStackLayout.getLayerManager();
+        writer.println("  layers: " + layers.getLayerCount() + " (" + layers.getLayerBytes()
+                + " bytes), created " + layers.getLayerCreations() + ", reused "
+                + layers.getLayerReuses() + ", skipped " + layers.getSkippedPromotions()
+                + ", denied " + layers.getDeniedPromotions());
     }
 
     @Override
@@ -41,69 +76,48 @@ public class MainActivity extends Activity {
 
         //noinspection SimplifiableIfStatement
         if (id == R.id.action_settings) {
-            NotificationRow row = (NotificationRow) LayoutInflater.from(this).inflate(R.layout.status_bar_notification_row, mStackLayout, false);
-
-//            viewById.setExpandedChild(getTextView("welenwho aaa"));
-//            row.setUserLocked(true);
-            mNotificationView.add(0,row);
-            updateNotificationShade();
+            mNotificationIds.add(0, mNextNotificationId++);
+            mAdapter.notifyDataSetChanged();
             return true;
         }
 
         return super.onOptionsItemSelected(item);
     }
 
-    public ArrayList<NotificationRow> mNotificationView = new ArrayList<NotificationRow>();
-    public void updateNotificationShade() {
-        if (mStackLayout == null) return;
+    /**
+     * The stable ids of the shown notifications, newest first.
+     */
+    private final ArrayList<Long> mNotificationIds = new ArrayList<Long>();
+    private long mNextNotificationId;
 
-        ArrayList<NotificationRow> toShow = new ArrayList<>(mNotificationView.size());
-        final int N = mNotificationView.size();
-        for (int i=0; i<N; i++) {
-            toShow.add(mNotificationView.get(i));
+    private final NotificationAdapter mAdapter = new NotificationAdapter() {
+        @Override
+        public int getCount() {
+            return mNotificationIds.size();
         }
 
-        ArrayList<View> toRemove = new ArrayList<View>();
-        for (int i=0; i< mStackLayout.getChildCount(); i++) {
-            View child = mStackLayout.getChildAt(i);
-            if (!toShow.contains(child) && child instanceof NotificationRow) {
-                toRemove.add(child);
-            }
+        @Override
+        public long getItemId(int position) {
+            return mNotificationIds.get(position);
         }
 
-        for (View remove : toRemove) {
-            mStackLayout.removeView(remove);
+        @Override
+        public NotificationRow createRow(ViewGroup parent, int viewType) {
+            return (NotificationRow) LayoutInflater.from(MainActivity.this)
+                    .inflate(R.layout.status_bar_notification_row, parent, false);
         }
-        for (int i=0; i<toShow.size(); i++) {
-            View v = toShow.get(i);
-            if (v.getParent() == null) {
-                mStackLayout.addView(v);
-            }
-        }
-
-        // So after all this work notifications still aren't sorted correctly.
-        // Let's do that now by advancing through toShow and mStackScroller in
-        // lock-step, making sure mStackScroller matches what we see in toShow.
-        int j = 0;
-        for (int i = 0; i < mStackLayout.getChildCount(); i++) {
-            View child = mStackLayout.getChildAt(i);
-            if (!(child instanceof NotificationRow)) {
-                // We don't care about non-notification views.
-                continue;
-            }
 
-            if (child == toShow.get(j)) {
-                // Everything is well, advance both lists.
-                j++;
-                continue;
-            }
+        @Override
+        public void bindRow(NotificationRow row, int position) {
+//            row.setExpandedChild(getTextView("welenwho aaa"));
+        }
 
-            // Oops, wrong notification at this position. Put the right one
-            // here and advance both lists.
-            mStackLayout.changeViewPosition(toShow.get(j), i);
-            j++;
+        @Override
+        public void onRowDismissed(NotificationRow row, int position) {
+            mNotificationIds.remove(position);
+            notifyDataSetChanged();
         }
-    }
+    };
 
     private TextView getTextView(String text) {
         TextView textView = new TextView(this);
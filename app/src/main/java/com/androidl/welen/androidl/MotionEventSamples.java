@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.androidl.welen.androidl;
+
+import android.view.MotionEvent;
+
+/**
+ * Feeds the samples of a {@link MotionEvent} into a {@link TouchTracker}.
+ */
+final class MotionEventSamples {
+
+    /**
+     * The time before the frame the position of the pointer is resampled to. The samples of a
+     * frame are still arriving until shortly before it, this keeps the position between two
+     * samples instead of predicting it.
+     */
+    static final long RESAMPLE_LATENCY_MS = 5;
+
+    private MotionEventSamples() {
+    }
+
+    /**
+     * Add the historical samples of the event and its current one, in this order.
+     */
+    static void addMovement(TouchTracker tracker, MotionEvent ev, int pointerIndex) {
+        if (pointerIndex < 0 || pointerIndex >= ev.getPointerCount()) {
+            return;
+        }
+        int historySize = ev.getHistorySize();
+        for (int i = 0; i < historySize; i++) {
+            tracker.addSample(ev.getHistoricalEventTime(i), ev.getHistoricalX(pointerIndex, i),
+                    ev.getHistoricalY(pointerIndex, i));
+        }
+        tracker.addSample(ev.getEventTime(), ev.getX(pointerIndex), ev.getY(pointerIndex));
+    }
+
+    /**
+     * @param frameTimeNanos the time of a frame from {@link android.view.Choreographer}, which
+     *                       uses the same clock as the event times
+     * @return the time the position of the pointer should be resampled to for this frame
+     */
+    static long getResampleTime(long frameTimeNanos) {
+        return frameTimeNanos / 1000000 - RESAMPLE_LATENCY_MS;
+    }
+}
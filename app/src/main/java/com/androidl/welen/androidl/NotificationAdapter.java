@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.androidl.welen.androidl;
+
+import android.view.ViewGroup;
+
+/**
+ * Supplies the rows of a {@link NotificationScrollLayout}. When an adapter is set, the layout
+ * creates its children itself and can reuse rows which scrolled out of view for other positions.
+ */
+public abstract class NotificationAdapter {
+
+    private NotificationScrollLayout mHostLayout;
+
+    /**
+     * @return the number of rows in the data set
+     */
+    public abstract int getCount();
+
+    /**
+     * @return the stable id of the row at the given position. Ids have to be unique within the
+     *         data set and must not change while the item exists, they are used to find the rows
+     *         which were inserted, removed or moved by {@link #notifyDataSetChanged()}.
+     */
+    public abstract long getItemId(int position);
+
+    /**
+     * @return the layout type of the row at the given position. Rows are only reused for
+     *         positions of the same type.
+     */
+    public int getItemViewType(int position) {
+        return 0;
+    }
+
+    /**
+     * Create a new, unbound row of the given layout type.
+     *
+     * @param parent the layout the row will be attached to
+     * @param viewType the type returned by {@link #getItemViewType(int)}
+     */
+    public abstract NotificationRow createRow(ViewGroup parent, int viewType);
+
+    /**
+     * Fill the row with the content of the given position.
+     */
+    public abstract void bindRow(NotificationRow row, int position);
+
+    /**
+     * Called before a row is put back into the pool, release any content bound to it here.
+     */
+    public void unbindRow(NotificationRow row) {
+    }
+
+    /**
+     * Called when the row at the given position was swiped away by the user. Implementations
+     * should remove the item from their data set and call {@link #notifyDataSetChanged()}.
+     */
+    public void onRowDismissed(NotificationRow row, int position) {
+    }
+
+    /**
+     * Notify the attached layout that the data set changed. The layout diffs the new data set
+     * against the old one by stable id, animates the inserted, removed and moved rows in one batch
+     * and rebinds the attached rows.
+     */
+    public void notifyDataSetChanged() {
+        if (mHostLayout != null) {
+            mHostLayout.onAdapterDataSetChanged();
+        }
+    }
+
+    void setHostLayout(NotificationScrollLayout hostLayout) {
+        mHostLayout = hostLayout;
+    }
+}
@@ -0,0 +1,384 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.androidl.welen.androidl;
+
+import android.util.SparseArray;
+import android.view.View;
+import android.view.ViewGroup;
+
+import java.util.ArrayList;
+
+/**
+ * Keeps a lightweight height record for every row of a {@link NotificationAdapter} and a pool of
+ * {@link NotificationRow}s keyed by layout type. Only the rows inside the attached range are backed
+ * by a view, all other rows are represented by their last known height.
+ */
+public class NotificationRecycler {
+
+    /**
+     * The maximum amount of unused rows which are kept around for every layout type.
+     */
+    private static final int MAX_POOLED_ROWS_PER_TYPE = 16;
+
+    private final ViewGroup mHostView;
+    private final SparseArray<ArrayList<NotificationRow>> mPool =
+            new SparseArray<ArrayList<NotificationRow>>();
+    private NotificationAdapter mAdapter;
+
+    private final AdapterDiff mDiff = new AdapterDiff();
+    private final ArrayList<NotificationRow> mRemovedRows = new ArrayList<NotificationRow>();
+    private final ArrayList<NotificationRow> mStaleRows = new ArrayList<NotificationRow>();
+
+    private int mCount;
+    private final HeightIndex mHeightIndex = new HeightIndex();
+    private long[] mIds = new long[0];
+    private int[] mViewTypes = new int[0];
+    private NotificationRow[] mRows = new NotificationRow[0];
+
+    /**
+     * Rows which were bound and measured ahead of time for positions that are not attached yet,
+     * keyed by position. They are handed out by {@link #bindRow(int)} and dropped on every data
+     * set change.
+     */
+    private final SparseArray<NotificationRow> mPrefetchedRows = new SparseArray<NotificationRow>();
+
+    /**
+     * The records before the last data set change, swapped with the current ones on every change.
+     * The previous heights are copied out of the height index instead.
+     */
+    private long[] mPreviousIds = new long[0];
+    private int[] mPreviousHeights = new int[0];
+    private int[] mPreviousViewTypes = new int[0];
+    private NotificationRow[] mPreviousRows = new NotificationRow[0];
+
+    /**
+     * The attached range, both inclusive. The range is empty if mLastAttached < mFirstAttached.
+     */
+    private int mFirstAttached;
+    private int mLastAttached = -1;
+
+    /**
+     * The height used for rows which were never measured.
+     */
+    private int mEstimatedHeight;
+
+    public NotificationRecycler(ViewGroup hostView) {
+        mHostView = hostView;
+    }
+
+    public void setAdapter(NotificationAdapter adapter) {
+        mAdapter = adapter;
+        mPrefetchedRows.clear();
+        mPool.clear();
+        mCount = 0;
+        mFirstAttached = 0;
+        mLastAttached = -1;
+        onDataSetChanged();
+    }
+
+    public NotificationAdapter getAdapter() {
+        return mAdapter;
+    }
+
+    public void setEstimatedHeight(int estimatedHeight) {
+        mEstimatedHeight = estimatedHeight;
+    }
+
+    /**
+     * Re-read the data set of the adapter and diff it against the current records by stable id.
+     * The records of kept items, including their heights and attached rows, move to their new
+     * positions. The attached rows of removed items are collected in {@link #getRemovedRows()}
+     * and rows of kept items whose layout type changed in {@link #getStaleRows()}, the host has to
+     * remove both and update the attached range afterwards.
+     *
+     * @return the diff, valid until the next call
+     */
+    public AdapterDiff onDataSetChanged() {
+        // the prefetched rows are bound to positions which are about to change
+        recyclePrefetchedRows(0, -1);
+        int oldCount = mCount;
+        int newCount = mAdapter != null ? mAdapter.getCount() : 0;
+        if (mPreviousHeights.length < oldCount) {
+            mPreviousHeights = new int[Math.max(oldCount, mPreviousHeights.length * 2)];
+        }
+        for (int i = 0; i < oldCount; i++) {
+            mPreviousHeights[i] = mHeightIndex.getHeight(i);
+        }
+        if (mPreviousIds.length < newCount) {
+            int capacity = Math.max(newCount, mPreviousIds.length * 2);
+            mPreviousIds = new long[capacity];
+            mPreviousViewTypes = new int[capacity];
+            mPreviousRows = new NotificationRow[capacity];
+        }
+        long[] newIds = mPreviousIds;
+        for (int i = 0; i < newCount; i++) {
+            newIds[i] = mAdapter.getItemId(i);
+        }
+        mDiff.calculate(mIds, oldCount, newIds, newCount);
+
+        mRemovedRows.clear();
+        mStaleRows.clear();
+        for (int i = 0; i < oldCount; i++) {
+            if (mDiff.isRemoved(i) && mRows[i] != null) {
+                mRemovedRows.add(mRows[i]);
+            }
+        }
+        mHeightIndex.reset(newCount);
+        int[] newViewTypes = mPreviousViewTypes;
+        NotificationRow[] newRows = mPreviousRows;
+        for (int i = 0; i < newCount; i++) {
+            int oldPosition = mDiff.getOldPosition(i);
+            int viewType = mAdapter.getItemViewType(i);
+            newViewTypes[i] = viewType;
+            if (oldPosition < 0) {
+                mHeightIndex.put(i, mEstimatedHeight, false);
+                newRows[i] = null;
+                continue;
+            }
+            mHeightIndex.put(i, mPreviousHeights[oldPosition], false);
+            NotificationRow row = mRows[oldPosition];
+            if (row != null && mViewTypes[oldPosition] != viewType) {
+                mStaleRows.add(row);
+                row = null;
+            }
+            newRows[i] = row;
+        }
+        mHeightIndex.rebuild();
+
+        // the current records become the previous ones
+        mPreviousIds = mIds;
+        mPreviousViewTypes = mViewTypes;
+        mPreviousRows = mRows;
+        mIds = newIds;
+        mViewTypes = newViewTypes;
+        mRows = newRows;
+        for (int i = 0; i < oldCount; i++) {
+            mPreviousRows[i] = null;
+        }
+        mCount = newCount;
+        return mDiff;
+    }
+
+    /**
+     * @return the height the item at the given old position had before the last data set change
+     */
+    public int getPreviousHeight(int oldPosition) {
+        return mPreviousHeights[oldPosition];
+    }
+
+    /**
+     * @return the attached rows of the items removed by the last data set change
+     */
+    public ArrayList<NotificationRow> getRemovedRows() {
+        return mRemovedRows;
+    }
+
+    /**
+     * @return the attached rows of kept items which changed their layout type with the last data
+     *         set change and can't be rebound
+     */
+    public ArrayList<NotificationRow> getStaleRows() {
+        return mStaleRows;
+    }
+
+    public int getCount() {
+        return mCount;
+    }
+
+    public int getHeight(int position) {
+        return mHeightIndex.getHeight(position);
+    }
+
+    /**
+     * @return the index over the height records, the padding between elements has to be set on it
+     */
+    public HeightIndex getHeightIndex() {
+        return mHeightIndex;
+    }
+
+    /**
+     * Update the height record of a row, usually after it was measured.
+     *
+     * @return whether the height changed
+     */
+    public boolean setHeight(int position, int height) {
+        return mHeightIndex.update(position, height, false);
+    }
+
+    public NotificationRow getRow(int position) {
+        return mRows[position];
+    }
+
+    public int getFirstAttached() {
+        return mFirstAttached;
+    }
+
+    public int getLastAttached() {
+        return mLastAttached;
+    }
+
+    public boolean hasAttachedRows() {
+        return mLastAttached >= mFirstAttached;
+    }
+
+    /**
+     * Update the attached range after the host attached or detached rows, both inclusive.
+     */
+    public void setAttachedRange(int first, int last) {
+        if (last < first) {
+            first = 0;
+            last = -1;
+        }
+        mFirstAttached = first;
+        mLastAttached = last;
+    }
+
+    public long getItemId(int position) {
+        return mIds[position];
+    }
+
+    /**
+     * @return the adapter position of the given row, or -1 if it is not attached
+     */
+    public int getPosition(View row) {
+        for (int i = mFirstAttached; i <= mLastAttached; i++) {
+            if (mRows[i] == row) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the linear layout position of the top of the given row
+     */
+    public int getPositionInLayout(int position) {
+        return mHeightIndex.getPosition(position);
+    }
+
+    /**
+     * @return the row which contains the given linear layout position, clamped to the data set
+     */
+    public int getPositionAtOffset(int offset) {
+        return mHeightIndex.getIndexAtPosition(offset);
+    }
+
+    public int getContentHeight() {
+        return mHeightIndex.getContentHeight();
+    }
+
+    /**
+     * Get a bound row for the given position, either the prefetched one, one from the pool or one
+     * newly created by the adapter. The attached range is not changed.
+     */
+    public NotificationRow bindRow(int position) {
+        NotificationRow row = mPrefetchedRows.get(position);
+        if (row != null) {
+            mPrefetchedRows.remove(position);
+        } else {
+            row = obtainRow(mViewTypes[position]);
+            mAdapter.bindRow(row, position);
+        }
+        mRows[position] = row;
+        return row;
+    }
+
+    /**
+     * Bind a row for a position which is not attached yet, so attaching it later only has to add
+     * it to the host. The host should measure the returned row right away.
+     */
+    public NotificationRow prefetchRow(int position) {
+        NotificationRow row = obtainRow(mViewTypes[position]);
+        mAdapter.bindRow(row, position);
+        mPrefetchedRows.put(position, row);
+        return row;
+    }
+
+    /**
+     * @return whether the given position is attached or has a prefetched row
+     */
+    public boolean hasRow(int position) {
+        return mRows[position] != null || mPrefetchedRows.get(position) != null;
+    }
+
+    /**
+     * Release the prefetched rows outside of the given range into the pool, an empty range
+     * releases all of them.
+     */
+    public void recyclePrefetchedRows(int first, int last) {
+        for (int i = mPrefetchedRows.size() - 1; i >= 0; i--) {
+            int position = mPrefetchedRows.keyAt(i);
+            if (position < first || position > last) {
+                NotificationRow row = mPrefetchedRows.valueAt(i);
+                mPrefetchedRows.removeAt(i);
+                releaseRow(row, mViewTypes[position]);
+            }
+        }
+    }
+
+    public int getPrefetchedRowCount() {
+        return mPrefetchedRows.size();
+    }
+
+    /**
+     * Release the row at the given position into the pool. The row has to be removed from the
+     * host already, the attached range is not changed.
+     */
+    public void recycleRow(int position) {
+        NotificationRow row = mRows[position];
+        mRows[position] = null;
+        if (row == null) {
+            return;
+        }
+        releaseRow(row, mViewTypes[position]);
+    }
+
+    private NotificationRow obtainRow(int viewType) {
+        ArrayList<NotificationRow> pooled = mPool.get(viewType);
+        if (pooled != null && !pooled.isEmpty()) {
+            return pooled.remove(pooled.size() - 1);
+        }
+        return mAdapter.createRow(mHostView, viewType);
+    }
+
+    private void releaseRow(NotificationRow row, int viewType) {
+        mAdapter.unbindRow(row);
+        resetRow(row);
+        ArrayList<NotificationRow> pooled = mPool.get(viewType);
+        if (pooled == null) {
+            pooled = new ArrayList<NotificationRow>();
+            mPool.put(viewType, pooled);
+        }
+        if (pooled.size() < MAX_POOLED_ROWS_PER_TYPE) {
+            pooled.add(row);
+        }
+    }
+
+    /**
+     * Reset the properties the stack or a swipe might have left on a row.
+     */
+    private void resetRow(NotificationRow row) {
+        row.clearAnimation();
+        row.setTranslationX(0);
+        row.setTranslationY(0);
+        row.setAlpha(1);
+        row.setScaleX(1);
+        row.setScaleY(1);
+        row.setVisibility(View.VISIBLE);
+        row.setLayerType(View.LAYER_TYPE_NONE, null);
+    }
+}
@@ -22,29 +22,42 @@ import android.content.Context;
 import android.content.res.Configuration;
 import android.graphics.Paint;
 import android.os.Build;
+import android.os.Looper;
+import android.os.MessageQueue;
 import android.util.AttributeSet;
 import android.util.Log;
+import android.view.Choreographer;
 import android.view.MotionEvent;
-import android.view.VelocityTracker;
 import android.view.View;
 import android.view.ViewConfiguration;
 import android.view.ViewGroup;
 import android.view.ViewParent;
 import android.view.ViewTreeObserver;
+import android.view.WindowManager;
 import android.view.animation.AnimationUtils;
-import android.widget.OverScroller;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * A layout which handles a dynamic amount of notifications and presents them in a scrollable stack.
  */
-public class NotificationScrollLayout extends ViewGroup
-        implements SwipeHelper.Callback, ScrollAdapter, ViewGroup.OnHierarchyChangeListener {
+public class NotificationScrollLayout extends ViewGroup implements SwipeHelper.Callback,
+        ScrollAdapter, ViewGroup.OnHierarchyChangeListener, StackHost {
 
     private static final String TAG = "NotificationStackScrollLayout";
     private static final boolean DEBUG = true;
+
+    /**
+     * Record the scroll and fling events into {@link #mScrollTrace}. Compiled out when false.
+     */
+    private static final boolean TRACE_SCROLL = false;
+    private static final int SCROLL_TRACE_CAPACITY = 4096;
     private static final float RUBBER_BAND_FACTOR_NORMAL = 0.35f;
 
     /**
@@ -57,8 +70,18 @@ public class NotificationScrollLayout extends ViewGroup
     private int mOwnScrollY;
     private int mMaxLayoutHeight;
 
-    private VelocityTracker mVelocityTracker;
-    private OverScroller mScroller;
+    /**
+     * All samples of the active pointer, for the velocity of a fling and the resampled position
+     */
+    private final TouchTracker mTouchTracker = new TouchTracker();
+    private PhysicsScroller mScroller;
+
+    /**
+     * The curve of the flings, null for the one of the platform scroller at the density of the
+     * display, and the mapping of the pixels past an edge to the overscroll amount.
+     */
+    private FlingCurve mFlingCurve;
+    private RubberBand mRubberBand = RubberBand.linear(RUBBER_BAND_FACTOR_NORMAL);
     private int mTouchSlop;
     private int mMinimumVelocity;
     private int mMaximumVelocity;
@@ -69,6 +92,24 @@ public class NotificationScrollLayout extends ViewGroup
     private int mDownX;
     private int mActivePointerId;
 
+    /**
+     * Whether a drag scrolls to the position of the pointer resampled to the time of the frame,
+     * see {@link #setTouchResamplingEnabled(boolean)}.
+     */
+    private boolean mTouchResamplingEnabled;
+    private boolean mTouchScrollScheduled;
+    private final Choreographer.FrameCallback mTouchScrollCallback =
+            new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            mTouchScrollScheduled = false;
+            if (mIsBeingDragged) {
+                mTouchTracker.resample(MotionEventSamples.getResampleTime(frameTimeNanos));
+                scrollByTouch((int) mTouchTracker.getResampledY());
+            }
+        }
+    };
+
     private int mSidePaddings;
     private Paint mDebugPaint;
     private int mContentHeight;
@@ -84,18 +125,110 @@ public class NotificationScrollLayout extends ViewGroup
      */
     private StackScrollState mCurrentStackScrollState = new StackScrollState(this);
     private AmbientState mAmbientState = new AmbientState();
-    private ArrayList<View> mChildrenToAddAnimated = new ArrayList<View>();
-    private ArrayList<View> mChildrenToRemoveAnimated = new ArrayList<View>();
-    private ArrayList<View> mSnappedBackChildren = new ArrayList<View>();
-    private ArrayList<View> mDragAnimPendingChildren = new ArrayList<View>();
-    private ArrayList<View> mChildrenChangingPositions = new ArrayList<View>();
-    private HashSet<View> mFromMoreCardAdditions = new HashSet<View>();
+    private OrderedIdentitySet<View> mChildrenToAddAnimated = new OrderedIdentitySet<View>();
+    private OrderedIdentitySet<View> mChildrenToRemoveAnimated = new OrderedIdentitySet<View>();
+    private OrderedIdentitySet<View> mSnappedBackChildren = new OrderedIdentitySet<View>();
+    private OrderedIdentitySet<View> mDragAnimPendingChildren = new OrderedIdentitySet<View>();
+    private OrderedIdentitySet<View> mChildrenChangingPositions = new OrderedIdentitySet<View>();
+    private OrderedIdentitySet<View> mFromMoreCardAdditions = new OrderedIdentitySet<View>();
     private ArrayList<AnimationEvent> mAnimationEvents = new ArrayList<AnimationEvent>();
-    private ArrayList<View> mSwipedOutViews = new ArrayList<View>();
+    private final AnimationEventCoalescer mEventCoalescer = new AnimationEventCoalescer();
+    private OrderedIdentitySet<View> mSwipedOutViews = new OrderedIdentitySet<View>();
     private final StackStateAnimator mStateAnimator = new StackStateAnimator(this);
+
+    /**
+     * Decides which children get a hardware layer while they fade, shared by the state, the
+     * animator and the swipe helper.
+     */
+    private final HardwareLayerManager mLayerManager = new HardwareLayerManager();
+    private final Runnable mTrimLayersRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mLayerManager.trim();
+        }
+    };
     private boolean mAnimationsEnabled;
     private boolean mChangePositionInProgress;
 
+    /**
+     * The records and the row pool used when the rows are supplied by a {@link NotificationAdapter}
+     */
+    private final NotificationRecycler mRecycler = new NotificationRecycler(this);
+    private NotificationAdapter mAdapter;
+
+    /**
+     * Whether only the rows intersecting the viewport are attached when using an adapter
+     */
+    private boolean mRecyclingEnabled;
+
+    /**
+     * The distance around the viewport in which rows are still attached when recycling
+     */
+    private int mRecyclingOverscan;
+
+    /**
+     * The last row around the predicted end of the current fling. The rows up to it are bound
+     * and measured one by one while the main thread is idle, starting at mPrefetchNext.
+     */
+    private int mPrefetchLast = -1;
+    private int mPrefetchNext;
+    private boolean mPrefetchScheduled;
+    private final MessageQueue.IdleHandler mPrefetchIdleHandler = new MessageQueue.IdleHandler() {
+        @Override
+        public boolean queueIdle() {
+            mPrefetchScheduled = prefetchNextRow();
+            return mPrefetchScheduled;
+        }
+    };
+
+    private StackMetrics mMetrics = StackMetrics.NOOP;
+
+    private final ScrollTrace mScrollTrace =
+            TRACE_SCROLL ? new ScrollTrace(SCROLL_TRACE_CAPACITY) : null;
+
+    /**
+     * The duration of a frame of the display and the time of the last frame while flinging, used
+     * to count the dropped frames
+     */
+    private long mFrameIntervalNanos;
+    private long mLastFlingFrameNanos;
+
+    /**
+     * Data set changes with at least this many inserted and removed rows are laid out on a worker
+     * thread if background layout is enabled
+     */
+    private static final int BACKGROUND_LAYOUT_MIN_CHANGES = 20;
+    private BackgroundStackLayout mBackgroundLayout;
+
+    /**
+     * Should the next pass be computed in the background, and is one currently being computed?
+     */
+    private boolean mBackgroundLayoutRequested;
+    private boolean mBackgroundLayoutPending;
+
+    /**
+     * The scroll position including the overscroll of the pending background layout. Once the
+     * scroll moves away from it before the result is published, the layout is computed on the UI
+     * thread again.
+     */
+    private int mBackgroundLayoutScrollPosition;
+
+    /**
+     * Is a row currently attached or detached because of the recycling? No animations are
+     * generated for these.
+     */
+    private boolean mRecyclingInProgress;
+
+    /**
+     * The height index over the children, only used without an adapter. It is rebuilt lazily
+     * after the children changed.
+     */
+    private final HeightIndex mChildHeightIndex = new HeightIndex();
+    private boolean mChildHeightIndexValid;
+    private final int[] mTmpRange = new int[2];
+    private int mChildWidthMeasureSpec;
+    private int mChildHeightMeasureSpec;
+
     /**
      * The raw amount of the overScroll on the top, which is not rubber-banded.
      */
@@ -111,6 +244,22 @@ public class NotificationScrollLayout extends ViewGroup
     private boolean mNeedsAnimation;
     private boolean mTopPaddingNeedsAnimation;
     private boolean mChildrenUpdateRequested;
+
+    /**
+     * Whether a pure scroll is applied as the scroll of this container instead of a new pass, see
+     * {@link #setScrollTranslationEnabled(boolean)}.
+     */
+    private boolean mScrollTranslationEnabled;
+
+    /**
+     * Whether something else than the scroll position changed since the last pass.
+     */
+    private boolean mLayoutInvalid = true;
+
+    /**
+     * The scroll position including the overscroll the states of the last pass were computed for.
+     */
+    private int mLayoutScrollPosition;
     private boolean mScrollingEnabled;
     private boolean mDismissAllInProgress;
 
@@ -147,6 +296,12 @@ public class NotificationScrollLayout extends ViewGroup
         @Override
         public boolean onPreDraw() {
             updateChildren();
+            if (mBackgroundLayoutPending) {
+                // the rows are not laid out for the new data yet, hold the frame until the
+                // worker published the layout
+                invalidate();
+                return false;
+            }
             mChildrenUpdateRequested = false;
             getViewTreeObserver().removeOnPreDrawListener(this);
             return true;
@@ -177,6 +332,16 @@ public class NotificationScrollLayout extends ViewGroup
 
         mSwipeHelper = new SwipeHelper(SwipeHelper.X, this, getContext());
         mSwipeHelper.setLongPressListener(mLongPressListener);
+        mLayerManager.setTrimScheduler(new HardwareLayerManager.TrimScheduler() {
+            @Override
+            public void scheduleTrim(long delayMillis) {
+                removeCallbacks(mTrimLayersRunnable);
+                postDelayed(mTrimLayersRunnable, delayMillis);
+            }
+        });
+        mSwipeHelper.setLayerManager(mLayerManager);
+        mStateAnimator.setLayerManager(mLayerManager);
+        mCurrentStackScrollState.setLayerManager(mLayerManager);
         initView(context);
         setOnHierarchyChangeListener(this);
         if (DEBUG) {
@@ -190,7 +355,7 @@ public class NotificationScrollLayout extends ViewGroup
 
 
     private void initView(Context context) {
-        mScroller = new OverScroller(getContext());
+        mScroller = new PhysicsScroller(getFlingCurve());
         setFocusable(true);
         setDescendantFocusability(FOCUS_AFTER_DESCENDANTS);
         setClipChildren(false);
@@ -202,9 +367,17 @@ public class NotificationScrollLayout extends ViewGroup
 
         mSidePaddings = context.getResources()
                 .getDimensionPixelSize(R.dimen.notification_side_padding);
-        mStackScrollAlgorithm = new StackScrollAlgorithm(context);
         mPaddingBetweenElements = context.getResources()
                 .getDimensionPixelSize(R.dimen.notification_padding);
+        mStackScrollAlgorithm = new StackScrollAlgorithm(mPaddingBetweenElements,
+                context.getResources().getDimensionPixelSize(
+                        R.dimen.notification_layout_window_margin));
+        mChildHeightIndex.setPaddingBetweenElements(mPaddingBetweenElements);
+        mRecycler.getHeightIndex().setPaddingBetweenElements(mPaddingBetweenElements);
+        mRecyclingOverscan = context.getResources()
+                .getDimensionPixelSize(R.dimen.notification_recycling_overscan);
+        mRecycler.setEstimatedHeight(context.getResources()
+                .getDimensionPixelSize(R.dimen.notification_mid_height));
         updatePadding();
     }
 
@@ -219,6 +392,8 @@ public class NotificationScrollLayout extends ViewGroup
         int mode = MeasureSpec.getMode(widthMeasureSpec);
         int size = MeasureSpec.getSize(widthMeasureSpec);
         int childMeasureSpec = MeasureSpec.makeMeasureSpec(size - 2 * mSidePaddings, mode);
+        mChildWidthMeasureSpec = childMeasureSpec;
+        mChildHeightMeasureSpec = heightMeasureSpec;
 
         measureChildren(childMeasureSpec, heightMeasureSpec);
     }
@@ -227,26 +402,480 @@ public class NotificationScrollLayout extends ViewGroup
     protected void onLayout(boolean changed, int l, int t, int r, int b) {
 
         // we layout all our children centered on the top
-        float centerX = getWidth() / 2.0f;
         int childCount = getChildCount();
         for (int i = 0; i < childCount; i++) {
-            View child = getChildAt(i);
-            float width = child.getMeasuredWidth();
-            float height = child.getMeasuredHeight();
-            int top = mStackScrollAlgorithm.isRevertLayout()? (int) (getHeight() - height) : 0;
-            int bottom = (int) (top+height);
-            child.layout((int) (centerX - width / 2.0f),
-                    top,
-                    (int) (centerX + width / 2.0f),
-                    bottom);
+            layoutChild(getChildAt(i));
         }
+        boolean heightsChanged = updateHeightIndex();
         setMaxLayoutHeight(getHeight());
         updateContentHeight();
         clampScrollPosition();
         requestAnimationOnViewResize();
+        if (changed || heightsChanged) {
+            requestChildrenUpdate();
+        } else if (mLayoutInvalid) {
+            // children were added or removed since the last pass, which already invalidated it
+            requestScrollUpdate();
+        }
+    }
+
+    private void layoutChild(View child) {
+        float centerX = getWidth() / 2.0f;
+        float width = child.getMeasuredWidth();
+        float height = child.getMeasuredHeight();
+        int top = getOrientation().getChildTop(getHeight(), (int) height);
+        int bottom = (int) (top+height);
+        child.layout((int) (centerX - width / 2.0f),
+                top,
+                (int) (centerX + width / 2.0f),
+                bottom);
+    }
+
+    /**
+     * Copy the measured heights of the children which changed into the height index, each in
+     * O(log n).
+     *
+     * @return whether any height changed
+     */
+    private boolean updateHeightIndex() {
+        boolean changed = false;
+        int childCount = getChildCount();
+        if (mAdapter == null) {
+            if (!mChildHeightIndexValid || mChildHeightIndex.getCount() != childCount) {
+                // rebuilt from the children when it is used next
+                mChildHeightIndexValid = false;
+                return true;
+            }
+            for (int i = 0; i < childCount; i++) {
+                View child = getChildAt(i);
+                int height = getIntrinsicHeight(child);
+                boolean gone = child.getVisibility() == View.GONE;
+                if (mChildHeightIndex.getHeight(i) != height
+                        || mChildHeightIndex.isGone(i) != gone) {
+                    changed |= mChildHeightIndex.update(i, height, gone);
+                }
+            }
+            return changed;
+        }
+        if (!mRecycler.hasAttachedRows()) {
+            return false;
+        }
+        int first = mRecycler.getFirstAttached();
+        for (int i = 0; i < childCount; i++) {
+            int height = getChildAt(i).getMeasuredHeight();
+            if (mRecycler.getHeight(first + i) != height) {
+                changed |= mRecycler.setHeight(first + i, height);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Set the adapter which supplies the rows of this layout. Once an adapter is set, children
+     * must no longer be added directly.
+     */
+    public void setAdapter(NotificationAdapter adapter) {
+        if (mAdapter != null) {
+            mAdapter.setHostLayout(null);
+        }
+        detachAllRecycledRows();
+        mPrefetchLast = -1;
+        mAdapter = adapter;
+        mRecycler.setAdapter(adapter);
+        if (adapter != null) {
+            adapter.setHostLayout(this);
+        }
+        updateContentHeight();
+        clampScrollPosition();
+        requestLayout();
         requestChildrenUpdate();
     }
 
+    public NotificationAdapter getAdapter() {
+        return mAdapter;
+    }
+
+    /**
+     * Enable the recycling of rows. Only rows intersecting the viewport plus the overscan are
+     * attached, the others are only represented by their height. Requires an adapter.
+     */
+    public void setRecyclingEnabled(boolean recyclingEnabled) {
+        mRecyclingEnabled = recyclingEnabled;
+        requestChildrenUpdate();
+    }
+
+    /**
+     * Lay out large data set changes of the adapter on a worker thread. The pass after such a
+     * change is computed from a snapshot of the row heights and the scroll state and applied once
+     * it is published back to the UI thread, no frame is drawn until then. Any other change in
+     * between, including a scroll, makes the snapshot stale, its result is dropped and the layout
+     * is computed on the UI thread again.
+     */
+    public void setBackgroundLayoutEnabled(boolean backgroundLayoutEnabled) {
+        if (!backgroundLayoutEnabled) {
+            if (mBackgroundLayout != null) {
+                mBackgroundLayout.invalidate();
+                mBackgroundLayout = null;
+            }
+            mBackgroundLayoutRequested = false;
+            mBackgroundLayoutPending = false;
+            requestChildrenUpdate();
+        } else if (mBackgroundLayout == null) {
+            Executor uiThread = new Executor() {
+                @Override
+                public void execute(Runnable command) {
+                    post(command);
+                }
+            };
+            // an own worker, which unrelated tasks can't hold up, whose thread ends while idle
+            ThreadPoolExecutor worker = new ThreadPoolExecutor(1, 1, 1, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>());
+            worker.allowCoreThreadTimeOut(true);
+            mBackgroundLayout = new BackgroundStackLayout(worker, uiThread,
+                    new BackgroundStackLayout.Callback() {
+                        @Override
+                        public void onLayoutComputed(StackLayoutResult result) {
+                            onBackgroundLayoutComputed(result);
+                        }
+                    });
+        }
+    }
+
+    /**
+     * Write the recorded scroll events in the binary format of {@link ScrollTrace}. Only records
+     * anything if {@link #TRACE_SCROLL} is compiled in.
+     */
+    public void dumpScrollTrace(OutputStream out) throws IOException {
+        if (TRACE_SCROLL) {
+            mScrollTrace.writeTo(out);
+        }
+    }
+
+    /**
+     * Report the timings of the layout passes, the applies, the animation starts and the frames
+     * while flinging to the given metrics. Pass null to stop reporting.
+     */
+    public void setMetrics(StackMetrics metrics) {
+        mMetrics = metrics != null ? metrics : StackMetrics.NOOP;
+        WindowManager windowManager =
+                (WindowManager) getContext().getSystemService(Context.WINDOW_SERVICE);
+        float refreshRate = windowManager.getDefaultDisplay().getRefreshRate();
+        mFrameIntervalNanos = (long) (1000000000 / (refreshRate > 0 ? refreshRate : 60f));
+        mLastFlingFrameNanos = 0;
+    }
+
+    public StackMetrics getMetrics() {
+        return mMetrics;
+    }
+
+    /**
+     * Snapshot the model and compute the layout on the worker.
+     */
+    private void submitBackgroundLayout(int scrollPosition) {
+        mBackgroundLayoutPending = true;
+        mBackgroundLayoutScrollPosition = scrollPosition;
+        mBackgroundLayout.submit(new StackLayoutModel(mBackgroundLayout.nextVersion(),
+                getHeightIndex(), mMaxLayoutHeight, getOrientation(),
+                mOwnScrollY, mAmbientState.getOverScrollAmount(true /* onTop */),
+                mAmbientState.getOverScrollAmount(false /* onTop */)));
+    }
+
+    private void onBackgroundLayoutComputed(StackLayoutResult result) {
+        if (!mBackgroundLayoutPending) {
+            return;
+        }
+        mBackgroundLayoutPending = false;
+        mLayoutInvalid = false;
+        mAmbientState.setHeightIndex(getHeightIndex(), mRecycler.getFirstAttached());
+        resetScrollTranslation();
+        mLayoutScrollPosition = result.getScrollPosition();
+        mStackScrollAlgorithm.getStackScrollState(mAmbientState, result, mCurrentStackScrollState);
+        if (mNeedsAnimation) {
+            // a burst of rows is not animated row by row
+            generateChildHierarchyEvents();
+            mEventCoalescer.recycle(mAnimationEvents);
+        }
+        if (isCurrentlyAnimating()) {
+            startAnimationToState();
+        } else {
+            applyCurrentState();
+        }
+        mAmbientState.setScrollY(mOwnScrollY);
+        if (mStackScrollAlgorithm.getScrollPosition(mAmbientState) != mLayoutScrollPosition) {
+            // the scroll moved since the snapshot, the next update translates for the rest
+            requestScrollUpdate();
+        }
+    }
+
+    /**
+     * Use another deceleration for the flings, null for the one of the platform scroller.
+     */
+    public void setFlingCurve(FlingCurve flingCurve) {
+        mFlingCurve = flingCurve;
+        mScroller.setFlingCurve(getFlingCurve());
+    }
+
+    private FlingCurve getFlingCurve() {
+        if (mFlingCurve != null) {
+            return mFlingCurve;
+        }
+        return new SplineFlingCurve(getResources().getDisplayMetrics().density,
+                ViewConfiguration.getScrollFriction());
+    }
+
+    /**
+     * Map the pixels dragged or flung past an edge to the shown overscroll in another way, the
+     * default shows a constant fraction of them.
+     */
+    public void setRubberBand(RubberBand rubberBand) {
+        mRubberBand = rubberBand;
+    }
+
+    /**
+     * Scroll a drag to where the pointer was shortly before the next frame, interpolated between
+     * the samples of the touch panel, instead of to the newest sample of each move event. The
+     * scroll then advances by the same distance every frame even if the panel reports at another
+     * rate than the display refreshes.
+     */
+    public void setTouchResamplingEnabled(boolean touchResamplingEnabled) {
+        mTouchResamplingEnabled = touchResamplingEnabled;
+        mSwipeHelper.setTouchResamplingEnabled(touchResamplingEnabled);
+        if (!touchResamplingEnabled) {
+            cancelTouchScroll();
+        }
+    }
+
+    /**
+     * Apply a pure scroll as the scroll of this container, which moves all children at once,
+     * instead of computing and writing new translations for every child. A new pass is only
+     * computed once rows, heights or animations change or the scroll leaves the window margin.
+     */
+    public void setScrollTranslationEnabled(boolean scrollTranslationEnabled) {
+        mScrollTranslationEnabled = scrollTranslationEnabled;
+        requestChildrenUpdate();
+    }
+
+    /**
+     * @param overscan the distance above and below the viewport in which rows are still attached
+     */
+    public void setRecyclingOverscan(int overscan) {
+        mRecyclingOverscan = overscan;
+        requestChildrenUpdate();
+    }
+
+    /**
+     * Diff the new data set of the adapter against the current records and apply all changes in
+     * one batch: rows of removed items are removed with an animation, inserted rows are added with
+     * an animation and moved rows change their position. The kept rows are rebound in place.
+     */
+    void onAdapterDataSetChanged() {
+        AdapterDiff diff = mRecycler.onDataSetChanged();
+        // the positions of the predicted fling landing are stale
+        mPrefetchLast = -1;
+        updateScrollStateForRemovedRecords(diff);
+        updateContentHeight();
+        clampScrollPosition();
+
+        ArrayList<NotificationRow> removedRows = mRecycler.getRemovedRows();
+        for (int i = 0; i < removedRows.size(); i++) {
+            // removed rows are not pooled, their remove animation still refers to them
+            removeView(removedRows.get(i));
+        }
+        mRecyclingInProgress = true;
+        ArrayList<NotificationRow> staleRows = mRecycler.getStaleRows();
+        for (int i = 0; i < staleRows.size(); i++) {
+            View row = staleRows.get(i);
+            mStateAnimator.cancelAnimations(row);
+            removeViewInLayout(row);
+        }
+        computeAttachedRange(mTmpRange);
+        int first = mTmpRange[0];
+        int last = mTmpRange[1];
+        int count = mRecycler.getCount();
+        for (int position = 0; position < count; position++) {
+            NotificationRow row = mRecycler.getRow(position);
+            if (row != null && (position < first || position > last)) {
+                mStateAnimator.cancelAnimations(row);
+                removeViewInLayout(row);
+                mRecycler.recycleRow(position);
+            }
+        }
+        mRecyclingInProgress = false;
+
+        // Walk the new order and put every row right after its predecessor. Rows which kept their
+        // relative order are already in place, so only the moved rows change their position.
+        NotificationRow previous = null;
+        for (int position = first; position <= last; position++) {
+            NotificationRow row = mRecycler.getRow(position);
+            int index = previous == null ? 0 : indexOfChild(previous) + 1;
+            if (row == null) {
+                mRecyclingInProgress = !diff.isInserted(position);
+                attachRecycledRow(position, index);
+                mRecyclingInProgress = false;
+            } else {
+                mAdapter.bindRow(row, position);
+                if (diff.isMoved(position)) {
+                    if (indexOfChild(row) < index) {
+                        index--;
+                    }
+                    changeViewPosition(row, index);
+                }
+            }
+            previous = row;
+        }
+        mRecycler.setAttachedRange(first, last);
+        updateContentHeight();
+        clampScrollPosition();
+        requestChildrenUpdate();
+        if (mBackgroundLayout != null
+                && diff.getInsertCount() + diff.getRemoveCount() >= BACKGROUND_LAYOUT_MIN_CHANGES) {
+            mBackgroundLayoutRequested = true;
+        }
+    }
+
+    /**
+     * Update the scroll position for the records removed by the last data set change, the same
+     * way {@link #updateScrollStateForRemovedChild(View)} does for a removed child.
+     */
+    private void updateScrollStateForRemovedRecords(AdapterDiff diff) {
+        int position = 0;
+        int oldCount = diff.getOldCount();
+        for (int i = 0; i < oldCount; i++) {
+            int childHeight = mRecycler.getPreviousHeight(i) + mPaddingBetweenElements;
+            if (!diff.isRemoved(i)) {
+                position += childHeight;
+                continue;
+            }
+            int endPosition = position + childHeight;
+            if (endPosition <= mOwnScrollY) {
+                mOwnScrollY -= childHeight;
+            } else if (position < mOwnScrollY) {
+                mOwnScrollY = position;
+            }
+        }
+    }
+
+    private void detachAllRecycledRows() {
+        if (mAdapter == null) {
+            return;
+        }
+        mRecyclingInProgress = true;
+        int first = mRecycler.getFirstAttached();
+        for (int position = mRecycler.getLastAttached(); position >= first; position--) {
+            detachRecycledRow(position, getChildCount() - 1);
+        }
+        mRecycler.setAttachedRange(0, -1);
+        mRecyclingInProgress = false;
+    }
+
+    /**
+     * Compute the range of rows which should be attached for the current scroll position.
+     *
+     * @param outRange receives the first and the last position, both inclusive
+     */
+    private void computeAttachedRange(int[] outRange) {
+        int count = mRecycler.getCount();
+        if (count == 0) {
+            outRange[0] = 0;
+            outRange[1] = -1;
+        } else if (mRecyclingEnabled) {
+            // the overscroll might reveal more content on one of the sides
+            int overScroll = (int) Math.max(getCurrentOverScrollAmount(true),
+                    getCurrentOverScrollAmount(false));
+            int overscan = mRecyclingOverscan + overScroll;
+            outRange[0] = mRecycler.getPositionAtOffset(mOwnScrollY - overscan);
+            outRange[1] = mRecycler.getPositionAtOffset(
+                    mOwnScrollY + getLayoutHeight() + overscan);
+        } else {
+            outRange[0] = 0;
+            outRange[1] = count - 1;
+        }
+    }
+
+    /**
+     * Attach the rows which intersect the viewport and recycle the ones which left it.
+     *
+     * @return whether rows were attached or recycled or a height changed
+     */
+    private boolean updateRecycledRows() {
+        if (mAdapter == null) {
+            return false;
+        }
+        computeAttachedRange(mTmpRange);
+        int first = mTmpRange[0];
+        int last = mTmpRange[1];
+        int attachedFirst = mRecycler.getFirstAttached();
+        int attachedLast = mRecycler.getLastAttached();
+        boolean rangeChanged = first != attachedFirst || last != attachedLast;
+        mRecyclingInProgress = true;
+        boolean heightChanged = false;
+        if (attachedFirst > last || attachedLast < first) {
+            // no overlap, recycle everything
+            for (; attachedLast >= attachedFirst; attachedLast--) {
+                detachRecycledRow(attachedLast, getChildCount() - 1);
+            }
+            attachedFirst = first;
+            attachedLast = first - 1;
+        }
+        // recycle the rows which left the range
+        for (; attachedFirst < first; attachedFirst++) {
+            detachRecycledRow(attachedFirst, 0);
+        }
+        for (; attachedLast > last; attachedLast--) {
+            detachRecycledRow(attachedLast, getChildCount() - 1);
+        }
+        while (attachedFirst > first) {
+            attachedFirst--;
+            int oldHeight = mRecycler.getHeight(attachedFirst);
+            heightChanged |= attachRecycledRow(attachedFirst, 0);
+            // keep the visible content in place when a row above it was measured
+            mOwnScrollY += mRecycler.getHeight(attachedFirst) - oldHeight;
+        }
+        while (attachedLast < last) {
+            attachedLast++;
+            heightChanged |= attachRecycledRow(attachedLast, getChildCount());
+        }
+        mRecycler.setAttachedRange(attachedFirst, attachedLast);
+        mRecyclingInProgress = false;
+        if (heightChanged) {
+            updateContentHeight();
+            clampScrollPosition();
+        }
+        mAmbientState.setFirstChildPosition(mRecycler.hasAttachedRows()
+                ? mRecycler.getPositionInLayout(mRecycler.getFirstAttached())
+                : 0);
+        return rangeChanged || heightChanged;
+    }
+
+    /**
+     * @return whether the measured height of the row differs from its record
+     */
+    private boolean attachRecycledRow(int position, int childIndex) {
+        NotificationRow row = mRecycler.bindRow(position);
+        LayoutParams params = row.getLayoutParams();
+        if (params == null) {
+            params = generateDefaultLayoutParams();
+        }
+        if (mRecyclingInProgress) {
+            addViewInLayout(row, childIndex, params, true);
+        } else {
+            // a new item, this goes through onChildViewAdded and is animated
+            addView(row, childIndex, params);
+        }
+        measureChild(row, mChildWidthMeasureSpec, mChildHeightMeasureSpec);
+        layoutChild(row);
+        invalidate();
+        return mRecycler.setHeight(position, row.getMeasuredHeight());
+    }
+
+    private void detachRecycledRow(int position, int childIndex) {
+        View row = getChildAt(childIndex);
+        mStateAnimator.cancelAnimations(row);
+        removeViewInLayout(row);
+        mRecycler.recycleRow(position);
+        invalidate();
+    }
+
     private void requestAnimationOnViewResize() {
         if (mRequestViewResizeAnimationOnLayout && mAnimationsEnabled) {
             mNeedViewResizeAnimation = true;
@@ -275,16 +904,116 @@ public class NotificationScrollLayout extends ViewGroup
      * modifications to {@link #mOwnScrollY} are performed to reflect it in the view layout.
      */
     private void updateChildren() {
+        StackMetrics metrics = mMetrics;
+        long startTime = metrics.isEnabled() ? System.nanoTime() : 0;
+        boolean rowsChanged = updateRecycledRows();
+        if (rowsChanged) {
+            mLayoutInvalid = true;
+        }
         mAmbientState.setScrollY(mOwnScrollY);
+        int scrollPosition = mStackScrollAlgorithm.getScrollPosition(mAmbientState);
+        if (mBackgroundLayoutPending
+                && (rowsChanged || scrollPosition != mBackgroundLayoutScrollPosition)) {
+            // the rows on screen need states for this frame, which the snapshot doesn't have
+            cancelBackgroundLayout();
+        }
+        if (mBackgroundLayoutRequested && mAdapter != null) {
+            mBackgroundLayoutRequested = false;
+            submitBackgroundLayout(scrollPosition);
+        }
+        if (mBackgroundLayoutPending) {
+            // the state is applied when the worker published it
+            return;
+        }
+        if (canTranslateForScroll(scrollPosition)) {
+            // only the scroll changed, move all children at once
+            int translation = getOrientation().getDirection()
+                    * (scrollPosition - mLayoutScrollPosition);
+            if (getScrollY() != translation) {
+                setScrollY(translation);
+                if (mListener != null) {
+                    mListener.onChildLocationsChanged(this);
+                }
+            }
+            if (metrics.isEnabled()) {
+                metrics.onUpdateChildren(System.nanoTime() - startTime);
+            }
+            return;
+        }
+        mLayoutInvalid = false;
+        mAmbientState.setHeightIndex(getHeightIndex(),
+                mAdapter != null ? mRecycler.getFirstAttached() : 0);
+        resetScrollTranslation();
+        mLayoutScrollPosition = scrollPosition;
+        long layoutStartTime = metrics.isEnabled() ? System.nanoTime() : 0;
         mStackScrollAlgorithm.getStackScrollState(mAmbientState, mCurrentStackScrollState, getScrollRange());
+        if (metrics.isEnabled()) {
+            metrics.onLayoutPass(System.nanoTime() - layoutStartTime,
+                    mStackScrollAlgorithm.getChildrenTouched());
+        }
         if (!isCurrentlyAnimating() && !mNeedsAnimation) {
             applyCurrentState();
         } else {
             startAnimationToState();
         }
+        if (metrics.isEnabled()) {
+            metrics.onUpdateChildren(System.nanoTime() - startTime);
+        }
+    }
+
+    /**
+     * Whether the children can keep the states of the last pass and the new scroll position is
+     * only applied as the scroll of this container. Not while anything animates, the animations
+     * target the states of a pass, and not if children the last pass didn't lay out would
+     * become visible.
+     */
+    private boolean canTranslateForScroll(int scrollPosition) {
+        return mScrollTranslationEnabled && !mLayoutInvalid
+                && !isCurrentlyAnimating() && !mNeedsAnimation
+                && mAmbientState.getDraggedViews().isEmpty()
+                && Math.abs(scrollPosition - mLayoutScrollPosition)
+                        <= mStackScrollAlgorithm.getScrollSlack();
+    }
+
+    /**
+     * Move the scroll of this container back into the children before a new pass. The pass
+     * writes the translations of the children right away unless they are animated, so only
+     * then their current translations have to be corrected, as the animations start from them.
+     */
+    private void resetScrollTranslation() {
+        int translation = getScrollY();
+        if (translation == 0) {
+            return;
+        }
+        setScrollY(0);
+        if (isCurrentlyAnimating() || mNeedsAnimation) {
+            int childCount = getChildCount();
+            for (int i = 0; i < childCount; i++) {
+                View child = getChildAt(i);
+                child.setTranslationY(child.getTranslationY() - translation);
+            }
+            mCurrentStackScrollState.markAllDirty();
+        }
+    }
+
+    /**
+     * Update the children for a changed scroll position or overscroll amount. Unlike
+     * {@link #requestChildrenUpdate()} this allows applying it as the scroll of this container.
+     */
+    private void requestScrollUpdate() {
+        if (!mChildrenUpdateRequested) {
+            getViewTreeObserver().addOnPreDrawListener(mChildrenUpdater);
+            mChildrenUpdateRequested = true;
+            invalidate();
+        }
     }
 
     private void requestChildrenUpdate() {
+        mLayoutInvalid = true;
+        if (mBackgroundLayoutPending) {
+            // something changed since the snapshot, lay out on the UI thread again
+            cancelBackgroundLayout();
+        }
         if (!mChildrenUpdateRequested) {
             getViewTreeObserver().addOnPreDrawListener(mChildrenUpdater);
             mChildrenUpdateRequested = true;
@@ -292,6 +1021,14 @@ public class NotificationScrollLayout extends ViewGroup
         }
     }
 
+    /**
+     * Drop the result of the pending background layout, the next pass runs on the UI thread.
+     */
+    private void cancelBackgroundLayout() {
+        mBackgroundLayout.invalidate();
+        mBackgroundLayoutPending = false;
+    }
+
     private boolean isCurrentlyAnimating() {
         return mStateAnimator.isRunning();
     }
@@ -328,19 +1065,22 @@ public class NotificationScrollLayout extends ViewGroup
             mDragAnimPendingChildren.remove(v);
         }
         mSwipedOutViews.add(v);
-        mAmbientState.onDragFinished(v);
-        activity.mNotificationView.remove(v);
-        activity.updateNotificationShade();
-    }
-
-    MainActivity activity;
-    public void setMainActivity(MainActivity activity){
-        this.activity = activity;
+        mAmbientState.onDragFinished((StackChild) v);
+        if (mAdapter != null) {
+            int position = mRecycler.getPosition(v);
+            if (position >= 0) {
+                mAdapter.onRowDismissed((NotificationRow) v, position);
+            }
+            return;
+        }
+        removeView(v);
     }
 
     @Override
     public void onChildSnappedBack(View animView) {
-        mAmbientState.onDragFinished(animView);
+        mAmbientState.onDragFinished((StackChild) animView);
+        // the swipe changed the alpha and translation of the view
+        mCurrentStackScrollState.markDirty((StackChild) animView);
         if (!mDragAnimPendingChildren.contains(animView)) {
             if (mAnimationsEnabled) {
                 mSnappedBackChildren.add(animView);
@@ -365,7 +1105,8 @@ public class NotificationScrollLayout extends ViewGroup
 
     public void onBeginDrag(View v) {
         setSwipingInProgress(true);
-        mAmbientState.onBeginDrag(v);
+        mAmbientState.onBeginDrag((StackChild) v);
+        mCurrentStackScrollState.markDirty((StackChild) v);
         if (mAnimationsEnabled) {
             mDragAnimPendingChildren.add(v);
             mNeedsAnimation = true;
@@ -383,6 +1124,19 @@ public class NotificationScrollLayout extends ViewGroup
 
 
     public NotificationView getChildAtPosition(float touchX, float touchY) {
+        // the translations of the children don't include the scroll of this container
+        touchY += getScrollY();
+        // Allow the full width of this view to prevent gesture conflict on Keyguard (phone and
+        // camera affordance).
+        if (touchX < 0 || touchX > getWidth()) {
+            return null;
+        }
+        if (isPositionIndexValid()) {
+            // the position of the touch in content space, relative to the scroll of the last pass
+            float position = getOrientation().getPosition(touchY, mMaxLayoutHeight);
+            return (NotificationView) mStackScrollAlgorithm.getPositionIndex()
+                    .findChildAt(position);
+        }
         // find the view under the pointer, accounting for GONE views
         final int count = getChildCount();
         for (int childIdx = 0; childIdx < count; childIdx++) {
@@ -390,23 +1144,11 @@ public class NotificationScrollLayout extends ViewGroup
             if (slidingChild.getVisibility() == GONE) {
                 continue;
             }
-            float childTop = slidingChild.getTranslationY();
-            float top;
-            float bottom;
-            if(mStackScrollAlgorithm.isRevertLayout()){
-                bottom = slidingChild.getTranslationY()+mMaxLayoutHeight;
-                top = bottom - slidingChild.getHeight();
-            }else{
-                top = slidingChild.getTranslationY();
-                bottom = top + slidingChild.getHeight();
-            }
-
-            // Allow the full width of this view to prevent gesture conflict on Keyguard (phone and
-            // camera affordance).
-            int left = 0;
-            int right = getWidth();
-
-            if (touchY >= top && touchY <= bottom && touchX >= left && touchX <= right) {
+            int childHeight = slidingChild.getHeight();
+            float top = getOrientation().getChildTop(mMaxLayoutHeight, childHeight)
+                    + slidingChild.getTranslationY();
+            float bottom = top + childHeight;
+            if (touchY >= top && touchY <= bottom) {
                 return slidingChild;
             }
         }
@@ -414,6 +1156,15 @@ public class NotificationScrollLayout extends ViewGroup
     }
 
 
+    /**
+     * @return whether the children are where the last pass put them, so the position index of
+     *         the pass can be used for hit testing. While they are animated they are searched by
+     *         their current translations instead.
+     */
+    private boolean isPositionIndexValid() {
+        return !mLayoutInvalid && !mBackgroundLayoutPending && !isCurrentlyAnimating();
+    }
+
     public void setScrollingEnabled(boolean enable) {
         mScrollingEnabled = enable;
     }
@@ -487,8 +1238,7 @@ public class NotificationScrollLayout extends ViewGroup
         if (!isScrollingEnabled()) {
             return false;
         }
-        initVelocityTrackerIfNotExists();
-        mVelocityTracker.addMovement(ev);
+        addTouchSamples(ev);
 
         final int action = ev.getAction();
 
@@ -505,7 +1255,8 @@ public class NotificationScrollLayout extends ViewGroup
                  * will be false if being flinged.
                  */
                 if (!mScroller.isFinished()) {
-                    mScroller.forceFinished(true);
+                    mScroller.forceFinished();
+                    cancelFlingPrefetch();
                 }
 
                 // Remember where the motion event started
@@ -528,74 +1279,43 @@ public class NotificationScrollLayout extends ViewGroup
                 final int yDiff = Math.abs(deltaY);
                 if (!mIsBeingDragged && yDiff > mTouchSlop && yDiff > xDiff) {
                     setIsBeingDragged(true);
+                    // the slop is not scrolled
                     if (deltaY > 0) {
-                        deltaY -= mTouchSlop;
+                        mLastMotionY -= mTouchSlop;
                     } else {
-                        deltaY += mTouchSlop;
+                        mLastMotionY += mTouchSlop;
                     }
                 }
                 if (mIsBeingDragged) {
-                    // Scroll to follow the motion event
-                    mLastMotionY = y;
-                    int range = getScrollRange();
-
-                    float scrollAmount;
-                    if(isRevert()){
-                        if(deltaY < 0){
-                            scrollAmount = overScrollDownRevert(deltaY, range);
-                        }else{
-                            scrollAmount = overScrollUpRevert(deltaY);
-                        }
-                    }else{
-                        if (deltaY < 0) {//往下滑动
-                            scrollAmount = overScrollDown(deltaY);
-                        } else {
-                            scrollAmount = overScrollUp(deltaY, range);
-                        }
-                    }
-
-                    // Calling overScrollBy will call onOverScrolled, which
-                    // calls onScrollChanged if applicable.
-                    if (scrollAmount != 0.0f) {
-                        // The scrolling motion could not be compensated with the
-                        // existing overScroll, we have to scroll the view
-                        overScrollBy(0, (int) scrollAmount, 0, mOwnScrollY,
-                                0, range, 0, getHeight() / 2, true);
+                    if (mTouchResamplingEnabled) {
+                        scheduleTouchScroll();
+                    } else {
+                        scrollByTouch(y);
                     }
                 }
                 break;
             case MotionEvent.ACTION_UP:
                 if (mIsBeingDragged) {
-                    final VelocityTracker velocityTracker = mVelocityTracker;
-                    velocityTracker.computeCurrentVelocity(1000, mMaximumVelocity);
-                    int initialVelocity = (int) velocityTracker.getYVelocity(mActivePointerId);
+                    if (mTouchResamplingEnabled) {
+                        // the scroll ends where the pointer was lifted
+                        cancelTouchScroll();
+                        scrollByTouch((int) mTouchTracker.getLatestY());
+                    }
+                    mTouchTracker.computeCurrentVelocity(1000, mMaximumVelocity);
+                    int initialVelocity = (int) mTouchTracker.getYVelocity();
 
                     if (getChildCount() > 0) {
                         if ((Math.abs(initialVelocity) > mMinimumVelocity)) {
-                            if(isRevert()){
-                                /*float currentOverScrollBottom = getCurrentOverScrollAmount(false);
-                                if (currentOverScrollBottom == 0.0f || initialVelocity < 0) {
-                                    Log.i("welen", "fling R"+ currentOverScrollBottom+" velocity="+initialVelocity);*/
-                                    flingRert(initialVelocity);
-                                /*} else {
-                                    Log.i("welen", "overscrollflingR");
-                                    onOverScrollFling(false, -initialVelocity);
-                                }*/
-                            }else{
-                                //float currentOverScrollTop = getCurrentOverScrollAmount(true);
-                                /*if (currentOverScrollTop == 0.0f || initialVelocity > 0) {
-                                    //往上滑动 init < 0
-                                    Log.i("welen", "fling"+ currentOverScrollTop+ "velocity="+initialVelocity);*/
-                                    fling(-initialVelocity);
-                                /*} else {
-                                    Log.i("welen", "overscrollfling");
-                                    onOverScrollFling(false, initialVelocity);
-                                }*/
-                            }
+                            // the finger moving up scrolls towards the end in normal mode
+                            fling(getOrientation().toContent(-initialVelocity));
                         } else {
                             int scrollRange = getScrollRange();
-                            Log.i("welen","springback "+ mOwnScrollY);
-                            if (mScroller.springBack(getScrollX(), mOwnScrollY, 0, 0, 0,scrollRange)) {
+                            if (TRACE_SCROLL) {
+                                mScrollTrace.record(ScrollTrace.EVENT_SPRING_BACK, mOwnScrollY,
+                                        0, 0, 0);
+                            }
+                            if (mScroller.springBack(mOwnScrollY, 0, scrollRange,
+                                    AnimationUtils.currentAnimationTimeMillis())) {
                                 postInvalidateOnAnimation();
                             }
                         }
@@ -608,8 +1328,12 @@ public class NotificationScrollLayout extends ViewGroup
                 break;
             case MotionEvent.ACTION_CANCEL:
                 if (mIsBeingDragged && getChildCount() > 0) {
-                    Log.i("welen","springback cancel");
-                    if (mScroller.springBack(getScrollX(), mOwnScrollY, 0, 0, 0, getScrollRange())) {
+                    if (TRACE_SCROLL) {
+                        mScrollTrace.record(ScrollTrace.EVENT_SPRING_BACK_CANCEL, mOwnScrollY,
+                                0, 0, 0);
+                    }
+                    if (mScroller.springBack(mOwnScrollY, 0, getScrollRange(),
+                            AnimationUtils.currentAnimationTimeMillis())) {
                         postInvalidateOnAnimation();
                     }
                     mActivePointerId = INVALID_POINTER;
@@ -621,6 +1345,10 @@ public class NotificationScrollLayout extends ViewGroup
                 mLastMotionY = (int) ev.getY(index);
                 mDownX = (int) ev.getX(index);
                 mActivePointerId = ev.getPointerId(index);
+                // the new pointer starts a new track
+                cancelTouchScroll();
+                mTouchTracker.clear();
+                MotionEventSamples.addMovement(mTouchTracker, ev, index);
                 break;
             }
             case MotionEvent.ACTION_POINTER_UP:
@@ -632,6 +1360,56 @@ public class NotificationScrollLayout extends ViewGroup
         return true;
     }
 
+    /**
+     * Add the samples of the active pointer, the one of a down event is always the first.
+     */
+    private void addTouchSamples(MotionEvent ev) {
+        int pointerIndex = ev.getActionMasked() == MotionEvent.ACTION_DOWN
+                ? 0 : ev.findPointerIndex(mActivePointerId);
+        MotionEventSamples.addMovement(mTouchTracker, ev, pointerIndex);
+    }
+
+    private void scheduleTouchScroll() {
+        if (!mTouchScrollScheduled) {
+            mTouchScrollScheduled = true;
+            Choreographer.getInstance().postFrameCallback(mTouchScrollCallback);
+        }
+    }
+
+    private void cancelTouchScroll() {
+        if (mTouchScrollScheduled) {
+            mTouchScrollScheduled = false;
+            Choreographer.getInstance().removeFrameCallback(mTouchScrollCallback);
+        }
+    }
+
+    /**
+     * Scroll to follow the pointer of a drag to the given position.
+     */
+    private void scrollByTouch(int y) {
+        int deltaY = mLastMotionY - y;
+        mLastMotionY = y;
+        int range = getScrollRange();
+
+        // towards the start or the end of the content, whichever side it is on
+        int contentDelta = getOrientation().toContent(deltaY);
+        float scrollAmount;
+        if (contentDelta < 0) {
+            scrollAmount = overScrollTowardsStart(contentDelta);
+        } else {
+            scrollAmount = overScrollTowardsEnd(contentDelta, range);
+        }
+
+        // Calling overScrollBy will call onOverScrolled, which
+        // calls onScrollChanged if applicable.
+        if (scrollAmount != 0.0f) {
+            // The scrolling motion could not be compensated with the
+            // existing overScroll, we have to scroll the view
+            overScrollBy(0, (int) scrollAmount, 0, mOwnScrollY,
+                    0, range, 0, getHeight() / 2, true);
+        }
+    }
+
     private void onOverScrollFling(boolean open, int initialVelocity) {
         if (mOverscrollTopChangedListener != null) {
             mOverscrollTopChangedListener.flingTopOverscroll(initialVelocity, open);
@@ -641,30 +1419,32 @@ public class NotificationScrollLayout extends ViewGroup
     }
 
     /**
-     * Perform a scroll upwards and adapt the overscroll amounts accordingly
+     * Perform a scroll towards the end of the content and adapt the overscroll amounts
+     * accordingly. This is a scroll upwards in normal mode and downwards in revert mode.
      *
-     * @param deltaY The amount to scroll upwards, has to be positive.
+     * @param contentDelta The amount to scroll, has to be positive.
      * @return The amount of scrolling to be performed by the scroller,
      *         not handled by the overScroll amount.
      */
-    private float overScrollUp(int deltaY, int range) {
-        deltaY = Math.max(deltaY, 0);
-        float currentTopAmount = getCurrentOverScrollAmount(true);
-        float newTopAmount = currentTopAmount - deltaY;
-        if (currentTopAmount > 0) {
-            setOverScrollAmount(newTopAmount, true /* onTop */,
-                    false /* animate */);
-        }
-        // Top overScroll might not grab all scrolling motion,
+    private float overScrollTowardsEnd(int contentDelta, int range) {
+        contentDelta = Math.max(contentDelta, 0);
+        StackOrientation orientation = getOrientation();
+        boolean startOnTop = orientation.isOnTop(true /* start */);
+        float currentStartAmount = getCurrentOverScrollAmount(startOnTop);
+        float newStartAmount = currentStartAmount - contentDelta;
+        if (currentStartAmount > 0) {
+            setOverScrollAmount(newStartAmount, startOnTop, false /* animate */);
+        }
+        // The overScroll at the start might not grab all scrolling motion,
         // we have to scroll as well.
-        float scrollAmount = newTopAmount < 0 ? -newTopAmount : 0.0f;
+        float scrollAmount = newStartAmount < 0 ? -newStartAmount : 0.0f;
         float newScrollY = mOwnScrollY + scrollAmount;
         if (newScrollY > range) {
-                float currentBottomPixels = getCurrentOverScrolledPixels(false);
-                // We overScroll on the top
-                setOverScrolledPixels(currentBottomPixels + newScrollY - range,//设置地步超过曲玉
-                        false /* onTop */,
-                        false /* animate */);
+            boolean endOnTop = orientation.isOnTop(false /* start */);
+            float currentEndPixels = getCurrentOverScrolledPixels(endOnTop);
+            // We overScroll at the end
+            setOverScrolledPixels(currentEndPixels + newScrollY - range, endOnTop,
+                    false /* animate */);
             mOwnScrollY = range;
             scrollAmount = 0.0f;
         }
@@ -672,82 +1452,34 @@ public class NotificationScrollLayout extends ViewGroup
     }
 
     /**
-     * Perform a scroll downward and adapt the overscroll amounts accordingly
+     * Perform a scroll towards the start of the content and adapt the overscroll amounts
+     * accordingly. This is a scroll downwards in normal mode and upwards in revert mode.
      *
-     * @param deltaY The amount to scroll downwards, has to be negative.
+     * @param contentDelta The amount to scroll, has to be negative.
      * @return The amount of scrolling to be performed by the scroller,
      *         not handled by the overScroll amount.
      */
-    private float overScrollDown(int deltaY) {//-
-        deltaY = Math.min(deltaY, 0);
-        float currentBottomAmount = getCurrentOverScrollAmount(false);
-        float newBottomAmount = currentBottomAmount + deltaY;
-        if (currentBottomAmount > 0) {
-            setOverScrollAmount(newBottomAmount, false /* onTop */,
-                    false /* animate */);
-        }
-        // Bottom overScroll might not grab all scrolling motion,
-        // we have to scroll as well.
-        float scrollAmount = newBottomAmount < 0 ? newBottomAmount : 0.0f;
-        float newScrollY = mOwnScrollY + scrollAmount;
-        if (newScrollY < 0) {
-            float currentTopPixels = getCurrentOverScrolledPixels(true);
-            // We overScroll on the top
-            setOverScrolledPixels(currentTopPixels - newScrollY,
-                    true /* onTop */,
-                    false /* animate */);
-            mOwnScrollY = 0;
-            scrollAmount = 0.0f;
-        }
-        return scrollAmount;
-    }
-
-    private float overScrollUpRevert(int deltaY){
-        deltaY = Math.max(deltaY, 0);
-        float currentUpAmount = getCurrentOverScrollAmount(true);
-        float newBottomAmount = currentUpAmount - deltaY;
-        if (currentUpAmount > 0) {
-            setOverScrollAmount(newBottomAmount, true /* onTop */,
-                    false /* animate */);
-        }
-        // Bottom overScroll might not grab all scrolling motion,
+    private float overScrollTowardsStart(int contentDelta) {
+        contentDelta = Math.min(contentDelta, 0);
+        StackOrientation orientation = getOrientation();
+        boolean endOnTop = orientation.isOnTop(false /* start */);
+        float currentEndAmount = getCurrentOverScrollAmount(endOnTop);
+        float newEndAmount = currentEndAmount + contentDelta;
+        if (currentEndAmount > 0) {
+            setOverScrollAmount(newEndAmount, endOnTop, false /* animate */);
+        }
+        // The overScroll at the end might not grab all scrolling motion,
         // we have to scroll as well.
-        float scrollAmount = newBottomAmount < 0 ? newBottomAmount : 0.0f;
+        float scrollAmount = newEndAmount < 0 ? newEndAmount : 0.0f;
         float newScrollY = mOwnScrollY + scrollAmount;
         if (newScrollY < 0) {
-            float currentBottomPixels = getCurrentOverScrolledPixels(false);
-            // We overScroll on the top
-            setOverScrolledPixels(currentBottomPixels - newScrollY,
-                    false /* onTop */,
+            boolean startOnTop = orientation.isOnTop(true /* start */);
+            float currentStartPixels = getCurrentOverScrolledPixels(startOnTop);
+            // We overScroll at the start
+            setOverScrolledPixels(currentStartPixels - newScrollY, startOnTop,
                     false /* animate */);
             mOwnScrollY = 0;
             scrollAmount = 0.0f;
-
-        }
-        return scrollAmount;
-    }
-
-
-    private float overScrollDownRevert(int deltaY, int range) {//-
-        deltaY = Math.min(deltaY, 0);
-        float currentButtonAmount = getCurrentOverScrollAmount(false);
-        float newTopAmount = currentButtonAmount + deltaY;
-        if (currentButtonAmount > 0) {
-            setOverScrollAmount(newTopAmount, false /* onTop */,
-                    false /* animate */);
-        }
-        // Top overScroll might not grab all scrolling motion,
-        // we have to scroll as well.
-        float scrollAmount = newTopAmount < 0 ? -newTopAmount : 0.0f;
-        float newScrollY = mOwnScrollY + scrollAmount;
-        if (newScrollY > range) {
-            float currentTopPixels = getCurrentOverScrolledPixels(true);
-            // We overScroll on the top
-            setOverScrolledPixels(currentTopPixels + newScrollY - range,//设置地步超过曲玉
-                    true /* onTop */,
-                    false /* animate */);
-            mOwnScrollY = range;
-            scrollAmount = 0.0f;
         }
         return scrollAmount;
     }
@@ -763,63 +1495,64 @@ public class NotificationScrollLayout extends ViewGroup
             final int newPointerIndex = pointerIndex == 0 ? 1 : 0;
             mLastMotionY = (int) ev.getY(newPointerIndex);
             mActivePointerId = ev.getPointerId(newPointerIndex);
-            if (mVelocityTracker != null) {
-                mVelocityTracker.clear();
-            }
-        }
-    }
-
-    private void initVelocityTrackerIfNotExists() {
-        if (mVelocityTracker == null) {
-            mVelocityTracker = VelocityTracker.obtain();
-        }
-    }
-
-    private void recycleVelocityTracker() {
-        if (mVelocityTracker != null) {
-            mVelocityTracker.recycle();
-            mVelocityTracker = null;
-        }
-    }
-
-    private void initOrResetVelocityTracker() {
-        if (mVelocityTracker == null) {
-            mVelocityTracker = VelocityTracker.obtain();
-        } else {
-            mVelocityTracker.clear();
+            cancelTouchScroll();
+            mTouchTracker.clear();
         }
     }
 
     @Override
     public void computeScroll() {
-        if (mScroller.computeScrollOffset()) {
+        if (mScroller.computeScrollOffset(AnimationUtils.currentAnimationTimeMillis())) {
             // This is called at drawing time by ViewGroup.
             int oldX = getScrollX();
             int oldY = mOwnScrollY;
-            int x = mScroller.getCurrX();
             int y = mScroller.getCurrY();
 
-            if (oldX != x || oldY != y) {
+            if (oldY != y) {
                 final int range = getScrollRange();
                 if (y < 0 && oldY >= 0 || y > range && oldY <= range) {
-                    float currVelocity = mScroller.getCurrVelocity();
+                    float currVelocity = Math.abs(mScroller.getCurrVelocity());
                     if (currVelocity >= mMinimumVelocity) {
-                        mMaxOverScroll = Math.abs(currVelocity) / 1000 * mOverflingDistance;
+                        mMaxOverScroll = currVelocity / 1000 * mOverflingDistance;
                     }
                 }
-                Log.i("welen","y="+y+" "+mOwnScrollY);
-                overScrollBy(x - oldX, y - oldY, oldX, oldY, 0, range,
+                if (TRACE_SCROLL) {
+                    mScrollTrace.record(ScrollTrace.EVENT_COMPUTE_SCROLL, y,
+                            mScroller.getCurrVelocity(), mMaxOverScroll, 0);
+                }
+                overScrollBy(0, y - oldY, oldX, oldY, 0, range,
                         0, (int) (mMaxOverScroll), false);
                 onScrollChanged(getScrollX(), mOwnScrollY, oldX, oldY);
             }
 
             // Keep on drawing until the animation has finished.
             postInvalidateOnAnimation();
+            if (mMetrics.isEnabled()) {
+                recordFlingFrame();
+            }
+        } else {
+            mLastFlingFrameNanos = 0;
         }
     }
 
-    boolean isRevert(){
-        return mStackScrollAlgorithm.isRevertLayout();
+    private void recordFlingFrame() {
+        long now = System.nanoTime();
+        if (mLastFlingFrameNanos != 0) {
+            long interval = now - mLastFlingFrameNanos;
+            // a frame which took one and a half intervals or more missed at least one vsync
+            int droppedFrames =
+                    (int) ((interval + mFrameIntervalNanos / 2) / mFrameIntervalNanos) - 1;
+            mMetrics.onFlingFrame(interval, Math.max(0, droppedFrames));
+        }
+        mLastFlingFrameNanos = now;
+    }
+
+    /**
+     * @return how the content is mapped onto the screen. The scroll position, its range, the
+     *         overscroll and the flings are all in content space.
+     */
+    StackOrientation getOrientation() {
+        return mStackScrollAlgorithm.getOrientation();
     }
 
     @Override
@@ -831,32 +1564,22 @@ public class NotificationScrollLayout extends ViewGroup
 
         int newScrollY = scrollY + deltaY;
 
-        final int top;
-        final int bottom;
+        // the scroll position is in content space, so the bounds are the same in both modes
+        final int start = -maxOverScrollY;
+        final int end = maxOverScrollY + scrollRangeY;
         boolean clampedY = false;
-        if(isRevert()){
-            top = maxOverScrollY + scrollRangeY;
-            bottom = -maxOverScrollY;
-            if (newScrollY > top) {
-                newScrollY = top;
-                clampedY = true;
-            } else if (newScrollY < bottom) {
-                newScrollY = bottom;
-                clampedY = true;
-            }
-        }else{
-            top = -maxOverScrollY;
-            bottom = maxOverScrollY + scrollRangeY;
-            if (newScrollY > bottom) {
-                newScrollY = bottom;
-                clampedY = true;
-            } else if (newScrollY < top) {
-                newScrollY = top;
-                clampedY = true;
-            }
+        if (newScrollY > end) {
+            newScrollY = end;
+            clampedY = true;
+        } else if (newScrollY < start) {
+            newScrollY = start;
+            clampedY = true;
         }
 
-        Log.i("welen","new scrolly="+newScrollY+" clampedy="+clampedY);
+        if (TRACE_SCROLL) {
+            mScrollTrace.record(ScrollTrace.EVENT_OVER_SCROLL_BY, newScrollY, 0, maxOverScrollY,
+                    clampedY ? ScrollTrace.FLAG_CLAMPED : 0);
+        }
 
         onOverScrolled(0, newScrollY, false, clampedY);
 
@@ -874,7 +1597,7 @@ public class NotificationScrollLayout extends ViewGroup
      * @param animate Should an animation be performed.
      */
     public void setOverScrolledPixels(float numPixels, boolean onTop, boolean animate) {
-        setOverScrollAmount(numPixels * getRubberBandFactor(onTop), onTop, animate, true);
+        setOverScrollAmount(getRubberBand(onTop).getAmount(numPixels), onTop, animate, true);
     }
 
     /**
@@ -927,12 +1650,12 @@ public class NotificationScrollLayout extends ViewGroup
             mStateAnimator.animateOverScrollToAmount(amount, onTop, isRubberbanded);
         } else {
             //        Log.i("welen","amount="+amount+" ontop="+onTop);
-            setOverScrolledPixels(amount / getRubberBandFactor(onTop), onTop);
+            setOverScrolledPixels(getRubberBand(onTop).getPixels(amount), onTop);
             mAmbientState.setOverScrollAmount(amount, onTop);
             if (onTop) {
                 notifyOverscrollTopListener(amount, isRubberbanded);
             }
-            requestChildrenUpdate();
+            requestScrollUpdate();
         }
     }
 
@@ -1008,43 +1731,32 @@ public class NotificationScrollLayout extends ViewGroup
 
     private void springBack() {
         int scrollRange = getScrollRange();
-        boolean overScrolledTop = mOwnScrollY <= 0;
-        if(isRevert()){
-            overScrolledTop = mOwnScrollY >= scrollRange;
-        }
-        boolean overScrolledBottom = mOwnScrollY >= scrollRange;
-        if(isRevert()){
-            overScrolledBottom = mOwnScrollY <= 0;
-        }
-        if (overScrolledTop || overScrolledBottom) {
-            boolean onTop;
+        StackOrientation orientation = getOrientation();
+        boolean overScrolledStart = mOwnScrollY <= 0;
+        boolean overScrolledEnd = mOwnScrollY >= scrollRange;
+        if (overScrolledStart || overScrolledEnd) {
+            // the top edge wins if both are overscrolled
+            boolean onTop = orientation.isStartOnTop() ? overScrolledStart : overScrolledEnd;
+            boolean atStart = orientation.isOnTop(true /* start */) == onTop;
             float newAmount;
-            if (overScrolledTop) {
-                onTop = true;
-
-                if(isRevert()){
-                    newAmount = mOwnScrollY - scrollRange;
-                    mOwnScrollY = scrollRange;
-                }else{
-                    newAmount = -mOwnScrollY;
-                    mOwnScrollY = 0;
-                }
-                mDontReportNextOverScroll = true;
+            if (atStart) {
+                newAmount = -mOwnScrollY;
+                mOwnScrollY = 0;
             } else {
-                onTop = false;
-
-                if(isRevert()){
-                    newAmount = -mOwnScrollY;
-                    mOwnScrollY = 0;
-                }else{
-                    newAmount = mOwnScrollY - scrollRange;//mOwnScrolly equals scrollRange add bottomAmount in fling
-                    mOwnScrollY = scrollRange;
-                }
+                newAmount = mOwnScrollY - scrollRange;//mOwnScrolly equals scrollRange add bottomAmount in fling
+                mOwnScrollY = scrollRange;
+            }
+            if (onTop) {
+                mDontReportNextOverScroll = true;
+            }
+            if (TRACE_SCROLL) {
+                mScrollTrace.record(ScrollTrace.EVENT_OVER_SCROLL_AMOUNT, mOwnScrollY, 0,
+                        newAmount, onTop ? ScrollTrace.FLAG_ON_TOP : 0);
             }
-            Log.i("welen", "amount=" + newAmount +" top="+onTop);
             setOverScrollAmount(newAmount, onTop, false);
             setOverScrollAmount(0.0f, onTop, true);
-            mScroller.forceFinished(true);
+            mScroller.forceFinished();
+            cancelFlingPrefetch();
         }
     }
 
@@ -1060,13 +1772,34 @@ public class NotificationScrollLayout extends ViewGroup
      */
     private View getFirstChildBelowTranlsationY(float translationY) {
         int childCount = getChildCount();
-        for (int i = 0; i < childCount; i++) {
-            View child = getChildAt(i);
-            if (child.getVisibility() != View.GONE && child.getTranslationY() >= translationY) {
-                return child;
+        HeightIndex heightIndex = getHeightIndex();
+        int first = mAdapter != null ? mRecycler.getFirstAttached() : 0;
+        if (childCount == 0 || heightIndex.getCount() < first + childCount) {
+            return null;
+        }
+        // The translations grow with the index in normal mode, so the first child below can be
+        // searched. In revert mode they fall with the index and no child is below if the first
+        // one isn't, which the search finds as well. Running animations might break the order
+        // slightly, which is fine for the animation delays this is used for. The search runs
+        // over the not gone entries of the height index, so gone children are never visited.
+        int low = heightIndex.getNotGoneIndex(first);
+        int high = heightIndex.getNotGoneIndex(first + childCount);
+        int end = high;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            View child = getChildAt(heightIndex.getIndexOfNotGone(mid) - first);
+            if (child.getTranslationY() >= translationY) {
+                high = mid;
+            } else {
+                low = mid + 1;
             }
         }
-        return null;
+        return low < end ? getChildAt(heightIndex.getIndexOfNotGone(low) - first) : null;
+    }
+
+    @Override
+    public StackChild getStackChildAt(int index) {
+        return (StackChild) getChildAt(index);
     }
 
     /**
@@ -1109,107 +1842,164 @@ public class NotificationScrollLayout extends ViewGroup
     }
 
     private void updateContentHeight() {
-        int height = 0;
-        int childCount = getChildCount();
-        for (int i = 0; i < childCount; i++) {
-            View child = getChildAt(i);
-            if (child.getVisibility() != View.GONE) {
-                if (height != 0) {
-                    // add the padding before this element
-                    height += mPaddingBetweenElements;
-                }
-                height += child.getHeight();
+        mContentHeight = getHeightIndex().getContentHeight();
+    }
+
+    /**
+     * @return the height index over the records of the adapter or over the children
+     */
+    private HeightIndex getHeightIndex() {
+        if (mAdapter != null) {
+            return mRecycler.getHeightIndex();
+        }
+        if (!mChildHeightIndexValid) {
+            int childCount = getChildCount();
+            mChildHeightIndex.reset(childCount);
+            for (int i = 0; i < childCount; i++) {
+                View child = getChildAt(i);
+                mChildHeightIndex.put(i, getIntrinsicHeight(child),
+                        child.getVisibility() == View.GONE);
             }
+            mChildHeightIndex.rebuild();
+            mChildHeightIndexValid = true;
         }
-        mContentHeight = height;
+        return mChildHeightIndex;
+    }
+
+    /**
+     * @return the position of the child in the height index or -1 if it is not a child
+     */
+    private int getIndexInHeightIndex(View child) {
+        if (mAdapter != null) {
+            return mRecycler.getPosition(child);
+        }
+        return indexOfChild(child);
     }
 
     /**
      * Fling the scroll view
      *
-     * @param velocityY The initial velocity in the Y direction. Positive
-     *                  numbers mean that the finger/cursor is moving down the screen,
-     *                  which means we want to scroll towards the top.
+     * @param velocityY The initial velocity in content space. Positive numbers scroll towards
+     *                  the end of the content, which means the finger/cursor is moving up the
+     *                  screen in normal mode and down in revert mode.
      */
     private void fling(int velocityY) {
         if (getChildCount() > 0) {
             int scrollRange = getScrollRange();
 
+            StackOrientation orientation = getOrientation();
+            boolean startOnTop = orientation.isOnTop(true /* start */);
             float topAmount = getCurrentOverScrollAmount(true);
             float bottomAmount = getCurrentOverScrollAmount(false);
-            if (velocityY < 0 && topAmount > 0) {
-                mOwnScrollY -= (int) topAmount;
-                Log.i("welen","fling="+velocityY+" topAmount="+topAmount+ "owns="+mOwnScrollY);
-                mDontReportNextOverScroll = true;
-                setOverScrollAmount(topAmount, true, false);
-                mMaxOverScroll = Math.abs(velocityY) / 1000f * getRubberBandFactor(true /* onTop */)
-                        * mOverflingDistance + topAmount;
-            } else if (velocityY > 0 && bottomAmount > 0) {
-                mOwnScrollY += bottomAmount;
-                Log.i("welen","fling="+velocityY+" bottomAmount="+bottomAmount+ "owns="+mOwnScrollY);
-                setOverScrollAmount(0, false, false);
-                mMaxOverScroll = Math.abs(velocityY) / 1000f
-                        * getRubberBandFactor(false /* onTop */) * mOverflingDistance
-                        +  bottomAmount;
+            float startAmount = startOnTop ? topAmount : bottomAmount;
+            float endAmount = startOnTop ? bottomAmount : topAmount;
+            if (velocityY < 0 && startAmount > 0) {
+                mOwnScrollY -= (int) startAmount;
+                if (startOnTop) {
+                    mDontReportNextOverScroll = true;
+                }
+                setOverScrollAmount(startAmount, startOnTop, false);
+                mMaxOverScroll = getRubberBand(startOnTop).getAmount(
+                        Math.abs(velocityY) / 1000f * mOverflingDistance) + startAmount;
+            } else if (velocityY > 0 && endAmount > 0) {
+                mOwnScrollY += (int) endAmount;
+                if (!startOnTop) {
+                    mDontReportNextOverScroll = true;
+                }
+                setOverScrollAmount(0, !startOnTop, false);
+                mMaxOverScroll = getRubberBand(!startOnTop).getAmount(
+                        Math.abs(velocityY) / 1000f * mOverflingDistance) + endAmount;
             } else {
-                Log.i("welen","fling topAmount="+topAmount+" bottomAmount="+bottomAmount);
                 // it will be set once we reach the boundary
                 mMaxOverScroll = 0.0f;
             }
-            mScroller.fling(getScrollX(), mOwnScrollY, 1, velocityY, 0, 0, 0,
-                    Math.max(0, scrollRange), 0, Integer.MAX_VALUE / 2);
+            if (TRACE_SCROLL) {
+                mScrollTrace.record(orientation.isRevert()
+                                ? ScrollTrace.EVENT_FLING_REVERT
+                                : ScrollTrace.EVENT_FLING,
+                        mOwnScrollY, velocityY, topAmount > 0 ? topAmount : bottomAmount,
+                        topAmount > 0 ? ScrollTrace.FLAG_ON_TOP : 0);
+            }
+            mScroller.fling(mOwnScrollY, velocityY, 0, Math.max(0, scrollRange),
+                    AnimationUtils.currentAnimationTimeMillis());
+            prefetchFlingLanding();
 
             postInvalidateOnAnimation();
         }
     }
-    private void flingRert(int velocityY) {
-        if (getChildCount() > 0) {
-            int scrollRange = getScrollRange();
 
-            float topAmount = getCurrentOverScrollAmount(true);
-            float bottomAmount = getCurrentOverScrollAmount(false);
-            if (velocityY < 0 && bottomAmount > 0) {
-                mOwnScrollY -= bottomAmount;
-                Log.i("welen","fling="+velocityY+" bottomAmount="+bottomAmount+ "owns="+mOwnScrollY);
-                setOverScrollAmount(bottomAmount, false, false);
-                mMaxOverScroll = Math.abs(velocityY) / 1000f
-                        * getRubberBandFactor(false /* onTop */) * mOverflingDistance
-                        +  bottomAmount;
-            } else if (velocityY > 0 && topAmount > 0) {
-                mOwnScrollY += (int) topAmount;
-                Log.i("welen","fling="+velocityY+" topAmount="+topAmount+ "owns="+mOwnScrollY);
-                mDontReportNextOverScroll = true;
-                setOverScrollAmount(0, true, false);
-                mMaxOverScroll = Math.abs(velocityY) / 1000f * getRubberBandFactor(true /* onTop */)
-                        * mOverflingDistance + topAmount;
-            } else {
-                Log.i("welen","fling topAmount="+topAmount+" bottomAmount="+bottomAmount);
-                // it will be set once we reach the boundary
-                mMaxOverScroll = 0.0f;
-            }
-            mScroller.fling(getScrollX(), mOwnScrollY, 0, velocityY, 0, 0, 0,
-                    Math.max(0, scrollRange), 0, Integer.MAX_VALUE / 2);
+    /**
+     * Predict where the fling which was just started comes to rest and prefetch the rows which
+     * will be attached there, so a long fling doesn't stop on rows which were never bound or
+     * measured.
+     */
+    private void prefetchFlingLanding() {
+        if (mAdapter == null || !mRecyclingEnabled || mRecycler.getCount() == 0) {
+            return;
+        }
+        int finalScrollY = mScroller.getFinalY();
+        int first = mRecycler.getPositionAtOffset(finalScrollY - mRecyclingOverscan);
+        mPrefetchLast = mRecycler.getPositionAtOffset(
+                finalScrollY + getLayoutHeight() + mRecyclingOverscan);
+        mPrefetchNext = first;
+        // rows prefetched for an earlier prediction are not needed anymore
+        mRecycler.recyclePrefetchedRows(first, mPrefetchLast);
+        if (!mPrefetchScheduled) {
+            Looper.myQueue().addIdleHandler(mPrefetchIdleHandler);
+            mPrefetchScheduled = true;
+        }
+    }
 
-            postInvalidateOnAnimation();
+    /**
+     * Stop prefetching for a fling which was stopped before it came to rest and release the rows
+     * prefetched for it into the pool.
+     */
+    private void cancelFlingPrefetch() {
+        mPrefetchLast = -1;
+        mRecycler.recyclePrefetchedRows(0, -1);
+    }
+
+    /**
+     * Bind and measure the next row of the predicted fling landing which is neither attached nor
+     * prefetched yet.
+     *
+     * @return whether there might be more rows to prefetch
+     */
+    private boolean prefetchNextRow() {
+        int last = Math.min(mPrefetchLast, mRecycler.getCount() - 1);
+        while (mPrefetchNext <= last) {
+            int position = mPrefetchNext++;
+            if (mRecycler.hasRow(position)) {
+                continue;
+            }
+            NotificationRow row = mRecycler.prefetchRow(position);
+            if (row.getLayoutParams() == null) {
+                row.setLayoutParams(generateDefaultLayoutParams());
+            }
+            // the height record is updated once the row is attached, changing it now would move
+            // the content under the running fling
+            measureChild(row, mChildWidthMeasureSpec, mChildHeightMeasureSpec);
+            return mPrefetchNext <= last;
         }
+        return false;
     }
 
-    private float getRubberBandFactor(boolean onTop) {
-        /*if (!onTop) {
-            return RUBBER_BAND_FACTOR_NORMAL;
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        if (mPrefetchScheduled) {
+            Looper.myQueue().removeIdleHandler(mPrefetchIdleHandler);
+            mPrefetchScheduled = false;
         }
-        if (mExpandedInThisMotion) {
-            return RUBBER_BAND_FACTOR_AFTER_EXPAND;
-        } else if (mIsExpansionChanging) {
-            return RUBBER_BAND_FACTOR_ON_PANEL_EXPAND;
-        } else if (mScrolledToTopOnFirstDown) {
-            return 1.0f;
-        }*/
-        return RUBBER_BAND_FACTOR_NORMAL;
+        cancelTouchScroll();
+    }
+
+    private RubberBand getRubberBand(boolean onTop) {
+        return mRubberBand;
     }
 
     /**
-     * Accompanying function for {@link #getRubberBandFactor}: Returns true if the overscroll is
+     * Accompanying function for {@link #getRubberBand}: Returns true if the overscroll is
      * rubberbanded, false if it is technically an overscroll but rather a motion to expand the
      * overscroll view (e.g. expand QS).
      */
@@ -1220,7 +2010,8 @@ public class NotificationScrollLayout extends ViewGroup
     private void endDrag() {
         setIsBeingDragged(false);
 
-        recycleVelocityTracker();
+        cancelTouchScroll();
+        mTouchTracker.clear();
 
         if (getCurrentOverScrollAmount(true /* onTop */) > 0) {
             setOverScrollAmount(0, true /* onTop */, true /* animate */);
@@ -1257,14 +2048,24 @@ public class NotificationScrollLayout extends ViewGroup
 
     @Override
     public void onChildViewRemoved(View parent, View child) {
-        Log.i(TAG, "onChildViewRemoved");
+        mChildHeightIndexValid = false;
+        mLayoutInvalid = true;
+        mCurrentStackScrollState.requestFullPass();
         if (mChangePositionInProgress) {
             // This is only a position change, don't do anything special
             return;
         }
         NotificationView childView = (NotificationView) child;
-        mCurrentStackScrollState.removeViewStateForView(child);
-        updateScrollStateForRemovedChild(child);
+        mCurrentStackScrollState.removeViewStateForView(childView);
+        mLayerManager.clear(childView);
+        if (mRecyclingInProgress) {
+            // The row only left the attached range, it is still part of the data set
+            return;
+        }
+        if (mAdapter == null) {
+            // with an adapter the scroll state was already updated from the records
+            updateScrollStateForRemovedChild(child);
+        }
         boolean animationGenerated = generateRemoveAnimation(child);
         /*if (animationGenerated && !mSwipedOutViews.contains(child)) {
             // Add this view to an overlay in order to ensure that it will still be temporary
@@ -1327,26 +2128,22 @@ public class NotificationScrollLayout extends ViewGroup
     }
 
     private int getPositionInLinearLayout(View requestedChild) {
-        int position = 0;
-        for (int i = 0; i < getChildCount(); i++) {
-            View child = getChildAt(i);
-            if (child == requestedChild) {
-                return position;
-            }
-            if (child.getVisibility() != View.GONE) {
-                position += getIntrinsicHeight(child);
-                if (i < getChildCount()-1) {
-                    position += mPaddingBetweenElements;
-                }
-            }
+        int index = getIndexInHeightIndex(requestedChild);
+        if (index < 0) {
+            return 0;
         }
-        return 0;
+        return getHeightIndex().getPosition(index);
     }
 
 
     @Override
     public void onChildViewAdded(View parent, View child) {
-        Log.i(TAG, "onChildViewAdded");
+        mChildHeightIndexValid = false;
+        mLayoutInvalid = true;
+        mCurrentStackScrollState.requestFullPass();
+        if (mRecyclingInProgress) {
+            return;
+        }
         generateAddAnimation(child, false /* fromMoreCard */);
     }
 
@@ -1356,6 +2153,22 @@ public class NotificationScrollLayout extends ViewGroup
         mAnimationsEnabled = animationsEnabled;
     }
 
+    /**
+     * Set the policy deciding when children are snapped to their state instead of animated, use
+     * {@link AnimationDegradationPolicy#createDisabled()} to always animate.
+     */
+    public void setAnimationDegradationPolicy(AnimationDegradationPolicy policy) {
+        mStateAnimator.setDegradationPolicy(policy);
+    }
+
+    public AnimationDegradationPolicy getAnimationDegradationPolicy() {
+        return mStateAnimator.getDegradationPolicy();
+    }
+
+    public HardwareLayerManager getLayerManager() {
+        return mLayerManager;
+    }
+
 
     /**
      * Generate an animation for an added child view.
@@ -1400,8 +2213,17 @@ public class NotificationScrollLayout extends ViewGroup
             mNeedsAnimation = false;
         }
         if (!mAnimationEvents.isEmpty() || isCurrentlyAnimating()) {
+            StackMetrics metrics = mMetrics;
+            long startTime = metrics.isEnabled() ? System.nanoTime() : 0;
+            int startedAnimators = mStateAnimator.getStartedAnimatorCount();
             mStateAnimator.startAnimationForEvents(mAnimationEvents, mCurrentStackScrollState, 0);
-            mAnimationEvents.clear();
+            if (metrics.isEnabled()) {
+                metrics.onAnimationStarted(System.nanoTime() - startTime,
+                        mStateAnimator.getStartedAnimatorCount() - startedAnimators);
+            }
+            mEventCoalescer.recycle(mAnimationEvents);
+            // the animator changes the views directly
+            mCurrentStackScrollState.markAllDirty();
         } else {
             applyCurrentState();
         }
@@ -1417,43 +2239,48 @@ public class NotificationScrollLayout extends ViewGroup
         generateTopPaddingEvent();
         generateViewResizeEvent();
         generateAnimateEverythingEvent();
+        mEventCoalescer.coalesce(mAnimationEvents);
         mNeedsAnimation = false;
     }
 
     private void generateViewResizeEvent() {
         if (mNeedViewResizeAnimation) {
             mAnimationEvents.add(
-                    new AnimationEvent(null, AnimationEvent.ANIMATION_TYPE_VIEW_RESIZE));
+                    mEventCoalescer.obtain(null, AnimationEvent.ANIMATION_TYPE_VIEW_RESIZE));
         }
         mNeedViewResizeAnimation = false;
     }
 
     private void generateSnapBackEvents() {
-        for (View child : mSnappedBackChildren) {
-            mAnimationEvents.add(new AnimationEvent(child,
+        for (int i = 0; i < mSnappedBackChildren.size(); i++) {
+            View child = mSnappedBackChildren.get(i);
+            mAnimationEvents.add(mEventCoalescer.obtain((StackChild) child,
                     AnimationEvent.ANIMATION_TYPE_SNAP_BACK));
         }
         mSnappedBackChildren.clear();
     }
 
     private void generateDragEvents() {
-        for (View child : mDragAnimPendingChildren) {
-            mAnimationEvents.add(new AnimationEvent(child,
+        for (int i = 0; i < mDragAnimPendingChildren.size(); i++) {
+            View child = mDragAnimPendingChildren.get(i);
+            mAnimationEvents.add(mEventCoalescer.obtain((StackChild) child,
                     AnimationEvent.ANIMATION_TYPE_START_DRAG));
         }
         mDragAnimPendingChildren.clear();
     }
 
     private void generateChildRemovalEvents() {
-        for (View child : mChildrenToRemoveAnimated) {
+        for (int i = 0; i < mChildrenToRemoveAnimated.size(); i++) {
+            View child = mChildrenToRemoveAnimated.get(i);
             boolean childWasSwipedOut = mSwipedOutViews.contains(child);
             int animationType = childWasSwipedOut
                     ? AnimationEvent.ANIMATION_TYPE_REMOVE_SWIPED_OUT
                     : AnimationEvent.ANIMATION_TYPE_REMOVE;
-            AnimationEvent event = new AnimationEvent(child, animationType);
+            AnimationEvent event = mEventCoalescer.obtain((StackChild) child, animationType);
 
             // we need to know the view after this one
-            event.viewAfterChangingView = getFirstChildBelowTranlsationY(child.getTranslationY());
+            event.viewAfterChangingView = (StackChild) getFirstChildBelowTranlsationY(
+                    child.getTranslationY());
             mAnimationEvents.add(event);
         }
         mSwipedOutViews.clear();
@@ -1461,21 +2288,23 @@ public class NotificationScrollLayout extends ViewGroup
     }
 
     private void generatePositionChangeEvents() {
-        for (View child : mChildrenChangingPositions) {
-            mAnimationEvents.add(new AnimationEvent(child,
+        for (int i = 0; i < mChildrenChangingPositions.size(); i++) {
+            View child = mChildrenChangingPositions.get(i);
+            mAnimationEvents.add(mEventCoalescer.obtain((StackChild) child,
                     AnimationEvent.ANIMATION_TYPE_CHANGE_POSITION));
         }
         mChildrenChangingPositions.clear();
     }
 
     private void generateChildAdditionEvents() {
-        for (View child : mChildrenToAddAnimated) {
+        for (int i = 0; i < mChildrenToAddAnimated.size(); i++) {
+            View child = mChildrenToAddAnimated.get(i);
             if (mFromMoreCardAdditions.contains(child)) {
-                mAnimationEvents.add(new AnimationEvent(child,
+                mAnimationEvents.add(mEventCoalescer.obtain((StackChild) child,
                         AnimationEvent.ANIMATION_TYPE_ADD,
                         StackStateAnimator.ANIMATION_DURATION_STANDARD));
             } else {
-                mAnimationEvents.add(new AnimationEvent(child,
+                mAnimationEvents.add(mEventCoalescer.obtain((StackChild) child,
                         AnimationEvent.ANIMATION_TYPE_ADD));
             }
         }
@@ -1485,8 +2314,8 @@ public class NotificationScrollLayout extends ViewGroup
 
     private void generateTopPaddingEvent() {
         if (mTopPaddingNeedsAnimation) {
-            mAnimationEvents.add(
-                    new AnimationEvent(null, AnimationEvent.ANIMATION_TYPE_TOP_PADDING_CHANGED));
+            mAnimationEvents.add(mEventCoalescer.obtain(null,
+                    AnimationEvent.ANIMATION_TYPE_TOP_PADDING_CHANGED));
         }
         mTopPaddingNeedsAnimation = false;
     }
@@ -1494,7 +2323,7 @@ public class NotificationScrollLayout extends ViewGroup
     private void generateAnimateEverythingEvent() {
         if (mEverythingNeedsAnimation) {
             mAnimationEvents.add(
-                    new AnimationEvent(null, AnimationEvent.ANIMATION_TYPE_EVERYTHING));
+                    mEventCoalescer.obtain(null, AnimationEvent.ANIMATION_TYPE_EVERYTHING));
         }
         mEverythingNeedsAnimation = false;
     }
@@ -1552,8 +2381,7 @@ public class NotificationScrollLayout extends ViewGroup
                     setIsBeingDragged(true);
                     mLastMotionY = y;
                     mDownX = x;
-                    initVelocityTrackerIfNotExists();
-                    mVelocityTracker.addMovement(ev);
+                    MotionEventSamples.addMovement(mTouchTracker, ev, pointerIndex);
                 }
                 break;
             }
@@ -1562,7 +2390,7 @@ public class NotificationScrollLayout extends ViewGroup
                 final int y = (int) ev.getY();
                 if (getChildAtPosition(ev.getX(), y) == null) {
                     setIsBeingDragged(false);
-                    recycleVelocityTracker();
+                    mTouchTracker.clear();
                     break;
                 }
 
@@ -1575,8 +2403,8 @@ public class NotificationScrollLayout extends ViewGroup
                 mActivePointerId = ev.getPointerId(0);
                 mScrolledToTopOnFirstDown = isScrolledToTop();
 
-                initOrResetVelocityTracker();
-                mVelocityTracker.addMovement(ev);
+                mTouchTracker.clear();
+                MotionEventSamples.addMovement(mTouchTracker, ev, 0);
                 /*
                 * If being flinged and user touches the screen, initiate drag;
                 * otherwise don't.  mScroller.isFinished should be false when
@@ -1592,8 +2420,9 @@ public class NotificationScrollLayout extends ViewGroup
                 /* Release the drag */
                 setIsBeingDragged(false);
                 mActivePointerId = INVALID_POINTER;
-                recycleVelocityTracker();
-                if (mScroller.springBack(getScrollX(), mOwnScrollY, 0, 0, 0, getScrollRange())) {
+                mTouchTracker.clear();
+                if (mScroller.springBack(mOwnScrollY, 0, getScrollRange(),
+                        AnimationUtils.currentAnimationTimeMillis())) {
                     postInvalidateOnAnimation();
                 }
                 break;
@@ -1657,6 +2486,11 @@ public class NotificationScrollLayout extends ViewGroup
     }
 
     public void onHeightChanged(NotificationView view) {
+        int index = getIndexInHeightIndex(view);
+        if (index >= 0) {
+            getHeightIndex().update(index, getIntrinsicHeight(view),
+                    view.getVisibility() == View.GONE);
+        }
         updateContentHeight();
         clampScrollPosition();
         requestChildrenUpdate();
@@ -1677,7 +2511,14 @@ public class NotificationScrollLayout extends ViewGroup
 
 
     private void applyCurrentState() {
-        mCurrentStackScrollState.apply();
+        StackMetrics metrics = mMetrics;
+        if (metrics.isEnabled()) {
+            long startTime = System.nanoTime();
+            int applied = mCurrentStackScrollState.apply();
+            metrics.onApply(System.nanoTime() - startTime, applied);
+        } else {
+            mCurrentStackScrollState.apply();
+        }
         if (mListener != null) {
             mListener.onChildLocationsChanged(this);
         }
@@ -1725,206 +2566,4 @@ public class NotificationScrollLayout extends ViewGroup
          */
         public void flingTopOverscroll(float velocity, boolean open);
     }
-
-    static class AnimationEvent {
-
-        static AnimationFilter[] FILTERS = new AnimationFilter[] {
-
-                // ANIMATION_TYPE_ADD
-                new AnimationFilter()
-                        .animateAlpha()
-                        .animateHeight()
-                        .animateTopInset()
-                        .animateY()
-                        .animateZ()
-                        .hasDelays(),
-
-                // ANIMATION_TYPE_REMOVE
-                new AnimationFilter()
-                        .animateAlpha()
-                        .animateHeight()
-                        .animateTopInset()
-                        .animateY()
-                        .animateZ()
-                        .hasDelays(),
-
-                // ANIMATION_TYPE_REMOVE_SWIPED_OUT
-                new AnimationFilter()
-                        .animateAlpha()
-                        .animateHeight()
-                        .animateTopInset()
-                        .animateY()
-                        .animateZ()
-                        .hasDelays(),
-
-                // ANIMATION_TYPE_TOP_PADDING_CHANGED
-                new AnimationFilter()
-                        .animateAlpha()
-                        .animateHeight()
-                        .animateTopInset()
-                        .animateY()
-                        .animateDimmed()
-                        .animateScale()
-                        .animateZ(),
-
-                // ANIMATION_TYPE_START_DRAG
-                new AnimationFilter()
-                        .animateAlpha(),
-
-                // ANIMATION_TYPE_SNAP_BACK
-                new AnimationFilter()
-                        .animateAlpha()
-                        .animateHeight(),
-
-                // ANIMATION_TYPE_ACTIVATED_CHILD
-                new AnimationFilter()
-                        .animateScale()
-                        .animateAlpha(),
-
-                // ANIMATION_TYPE_DIMMED
-                new AnimationFilter()
-                        .animateY()
-                        .animateScale()
-                        .animateDimmed(),
-
-                // ANIMATION_TYPE_CHANGE_POSITION
-                new AnimationFilter()
-                        .animateAlpha()
-                        .animateHeight()
-                        .animateTopInset()
-                        .animateY()
-                        .animateZ(),
-
-                // ANIMATION_TYPE_DARK
-                new AnimationFilter()
-                        .animateDark(),
-
-                // ANIMATION_TYPE_GO_TO_FULL_SHADE
-                new AnimationFilter()
-                        .animateAlpha()
-                        .animateHeight()
-                        .animateTopInset()
-                        .animateY()
-                        .animateDimmed()
-                        .animateScale()
-                        .animateZ()
-                        .hasDelays(),
-
-                // ANIMATION_TYPE_HIDE_SENSITIVE
-                new AnimationFilter()
-                        .animateHideSensitive(),
-
-                // ANIMATION_TYPE_VIEW_RESIZE
-                new AnimationFilter()
-                        .animateAlpha()
-                        .animateHeight()
-                        .animateTopInset()
-                        .animateY()
-                        .animateZ(),
-
-                // ANIMATION_TYPE_EVERYTHING
-                new AnimationFilter()
-                        .animateAlpha()
-                        .animateDark()
-                        .animateScale()
-                        .animateDimmed()
-                        .animateHideSensitive()
-                        .animateHeight()
-                        .animateTopInset()
-                        .animateY()
-                        .animateZ(),
-        };
-
-        static int[] LENGTHS = new int[] {
-
-                // ANIMATION_TYPE_ADD
-                StackStateAnimator.ANIMATION_DURATION_APPEAR_DISAPPEAR,
-
-                // ANIMATION_TYPE_REMOVE
-                StackStateAnimator.ANIMATION_DURATION_APPEAR_DISAPPEAR,
-
-                // ANIMATION_TYPE_REMOVE_SWIPED_OUT
-                StackStateAnimator.ANIMATION_DURATION_STANDARD,
-
-                // ANIMATION_TYPE_TOP_PADDING_CHANGED
-                StackStateAnimator.ANIMATION_DURATION_STANDARD,
-
-                // ANIMATION_TYPE_START_DRAG
-                StackStateAnimator.ANIMATION_DURATION_STANDARD,
-
-                // ANIMATION_TYPE_SNAP_BACK
-                StackStateAnimator.ANIMATION_DURATION_STANDARD,
-
-                // ANIMATION_TYPE_ACTIVATED_CHILD
-                StackStateAnimator.ANIMATION_DURATION_DIMMED_ACTIVATED,
-
-                // ANIMATION_TYPE_DIMMED
-                StackStateAnimator.ANIMATION_DURATION_DIMMED_ACTIVATED,
-
-                // ANIMATION_TYPE_CHANGE_POSITION
-                StackStateAnimator.ANIMATION_DURATION_STANDARD,
-
-                // ANIMATION_TYPE_DARK
-                StackStateAnimator.ANIMATION_DURATION_STANDARD,
-
-                // ANIMATION_TYPE_GO_TO_FULL_SHADE
-                StackStateAnimator.ANIMATION_DURATION_GO_TO_FULL_SHADE,
-
-                // ANIMATION_TYPE_HIDE_SENSITIVE
-                StackStateAnimator.ANIMATION_DURATION_STANDARD,
-
-                // ANIMATION_TYPE_VIEW_RESIZE
-                StackStateAnimator.ANIMATION_DURATION_STANDARD,
-
-                // ANIMATION_TYPE_EVERYTHING
-                StackStateAnimator.ANIMATION_DURATION_STANDARD,
-        };
-
-        static final int ANIMATION_TYPE_ADD = 0;
-        static final int ANIMATION_TYPE_REMOVE = 1;
-        static final int ANIMATION_TYPE_REMOVE_SWIPED_OUT = 2;
-        static final int ANIMATION_TYPE_TOP_PADDING_CHANGED = 3;
-        static final int ANIMATION_TYPE_START_DRAG = 4;
-        static final int ANIMATION_TYPE_SNAP_BACK = 5;
-        static final int ANIMATION_TYPE_CHANGE_POSITION = 8;
-        static final int ANIMATION_TYPE_VIEW_RESIZE = 12;
-        static final int ANIMATION_TYPE_EVERYTHING = 13;
-
-        final long eventStartTime;
-        final View changingView;
-        final int animationType;
-        final AnimationFilter filter;
-        final long length;
-        View viewAfterChangingView;
-
-        AnimationEvent(View view, int type) {
-            this(view, type, LENGTHS[type]);
-        }
-
-        AnimationEvent(View view, int type, long length) {
-            eventStartTime = AnimationUtils.currentAnimationTimeMillis();
-            changingView = view;
-            animationType = type;
-            filter = FILTERS[type];
-            this.length = length;
-        }
-
-        /**
-         * Combines the length of several animation events into a single value.
-         *
-         * @param events The events of the lengths to combine.
-         * @return The combined length. Depending on the event types, this might be the maximum of
-         *         all events or the length of a specific event.
-         */
-        static long combineLength(ArrayList<AnimationEvent> events) {
-            long length = 0;
-            int size = events.size();
-            for (int i = 0; i < size; i++) {
-                AnimationEvent event = events.get(i);
-                length = Math.max(length, event.length);
-            }
-            return length;
-        }
-    }
-
 }
@@ -32,8 +32,14 @@ import java.util.ArrayList;
 /**
  * An abstract view for expandable views.
  */
-public abstract class NotificationView extends FrameLayout {
+public abstract class NotificationView extends FrameLayout implements StackChild {
 
+    /**
+     * The slot of this view in the {@link StackScrollState} of its host.
+     */
+    private int mStackStateSlot = -1;
+    private int mAnimationSlot = -1;
+    private int mLayerSlot = -1;
 
     public NotificationView(Context context, AttributeSet attrs) {
         super(context, attrs);
@@ -56,5 +62,40 @@ public abstract class NotificationView extends FrameLayout {
 
     public abstract void performAddAnimation(long delay, long duration);
 
+    @Override
+    public int getStackStateSlot() {
+        return mStackStateSlot;
+    }
+
+    @Override
+    public void setStackStateSlot(int stackStateSlot) {
+        mStackStateSlot = stackStateSlot;
+    }
+
+    @Override
+    public int getAnimationSlot() {
+        return mAnimationSlot;
+    }
+
+    @Override
+    public void setAnimationSlot(int animationSlot) {
+        mAnimationSlot = animationSlot;
+    }
+
+    @Override
+    public int getLayerSlot() {
+        return mLayerSlot;
+    }
+
+    @Override
+    public void setLayerSlot(int layerSlot) {
+        mLayerSlot = layerSlot;
+    }
+
+    @Override
+    public void applyLayerType(int layerType) {
+        setLayerType(layerType, null);
+    }
+
 
 }
@@ -18,61 +18,86 @@ package com.androidl.welen.androidl;
 
 import android.animation.Animator;
 import android.animation.AnimatorListenerAdapter;
-import android.animation.ObjectAnimator;
-import android.animation.PropertyValuesHolder;
 import android.animation.ValueAnimator;
+import android.view.Choreographer;
 import android.view.View;
 import android.view.animation.DecelerateInterpolator;
 import android.view.animation.Interpolator;
 
 import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.Set;
-import java.util.Stack;
+import java.util.Arrays;
 
 /**
- * An stack state animator which handles animations to new StackScrollStates
+ * An stack state animator which handles animations to new StackScrollStates. The property
+ * animations of all children run in one {@link StackTweenEngine}, driven by a single
+ * {@link Choreographer} frame callback.
  */
-public class StackStateAnimator {
-
-    public static final int ANIMATION_DURATION_STANDARD = 360;
-    public static final int ANIMATION_DURATION_GO_TO_FULL_SHADE = 448;
-    public static final int ANIMATION_DURATION_APPEAR_DISAPPEAR = 464;
-    public static final int ANIMATION_DURATION_DIMMED_ACTIVATED = 220;
+public class StackStateAnimator implements StackTweenEngine.FrameScheduler,
+        StackTweenEngine.Listener, Choreographer.FrameCallback {
+
+    public static final int ANIMATION_DURATION_STANDARD =
+            AnimationEvent.ANIMATION_DURATION_STANDARD;
+    public static final int ANIMATION_DURATION_GO_TO_FULL_SHADE =
+            AnimationEvent.ANIMATION_DURATION_GO_TO_FULL_SHADE;
+    public static final int ANIMATION_DURATION_APPEAR_DISAPPEAR =
+            AnimationEvent.ANIMATION_DURATION_APPEAR_DISAPPEAR;
+    public static final int ANIMATION_DURATION_DIMMED_ACTIVATED =
+            AnimationEvent.ANIMATION_DURATION_DIMMED_ACTIVATED;
     public static final int ANIMATION_DELAY_PER_ELEMENT_INTERRUPTING = 80;
     public static final int ANIMATION_DELAY_PER_ELEMENT_MANUAL = 32;
     public static final int ANIMATION_DELAY_PER_ELEMENT_GO_TO_FULL_SHADE = 48;
-    private static final int DELAY_EFFECT_MAX_INDEX_DIFFERENCE = 2;
+    private static final int INITIAL_RECORD_CAPACITY = 16;
 
-    private static final int TAG_ANIMATOR_TRANSLATION_Y = R.id.translation_y_animator_tag;
     private static final int TAG_ANIMATOR_TRANSLATION_Z = R.id.translation_z_animator_tag;
-    private static final int TAG_ANIMATOR_SCALE = R.id.scale_animator_tag;
-    private static final int TAG_ANIMATOR_ALPHA = R.id.alpha_animator_tag;
     private static final int TAG_ANIMATOR_HEIGHT = R.id.height_animator_tag;
     private static final int TAG_ANIMATOR_TOP_INSET = R.id.top_inset_animator_tag;
-    private static final int TAG_END_TRANSLATION_Y = R.id.translation_y_animator_end_value_tag;
     private static final int TAG_END_TRANSLATION_Z = R.id.translation_z_animator_end_value_tag;
-    private static final int TAG_END_SCALE = R.id.scale_animator_end_value_tag;
-    private static final int TAG_END_ALPHA = R.id.alpha_animator_end_value_tag;
     private static final int TAG_END_HEIGHT = R.id.height_animator_end_value_tag;
     private static final int TAG_END_TOP_INSET = R.id.top_inset_animator_end_value_tag;
-    private static final int TAG_START_TRANSLATION_Y = R.id.translation_y_animator_start_value_tag;
     private static final int TAG_START_TRANSLATION_Z = R.id.translation_z_animator_start_value_tag;
-    private static final int TAG_START_SCALE = R.id.scale_animator_start_value_tag;
-    private static final int TAG_START_ALPHA = R.id.alpha_animator_start_value_tag;
     private static final int TAG_START_HEIGHT = R.id.height_animator_start_value_tag;
     private static final int TAG_START_TOP_INSET = R.id.top_inset_animator_start_value_tag;
 
     private final Interpolator mFastOutSlowInInterpolator;
     private final int mGoToFullShadeAppearingTranslation;
     public NotificationScrollLayout mHostLayout;
-    private ArrayList<NotificationScrollLayout.AnimationEvent> mNewEvents =
+    private ArrayList<AnimationEvent> mNewEvents =
             new ArrayList<>();
-    private ArrayList<View> mNewAddChildren = new ArrayList<>();
-    private Set<Animator> mAnimatorSet = new HashSet<>();
-    private Stack<AnimatorListenerAdapter> mAnimationListenerPool = new Stack<>();
+    private OrderedIdentitySet<View> mNewAddChildren = new OrderedIdentitySet<>();
+    private final StackTweenEngine mTweenEngine = new StackTweenEngine(this, this);
+    private AnimationDegradationPolicy mDegradationPolicy = new AnimationDegradationPolicy();
+    private HardwareLayerManager mLayerManager = new HardwareLayerManager();
+
+    /**
+     * Whether every child of the current pass is snapped to its state because the last frames
+     * were over budget.
+     */
+    private boolean mInstantApply;
+
+    /**
+     * The animation records, one per child with a running property animation. A record holds
+     * the tween id of every property, or -1, and is found through
+     * {@link StackChild#getAnimationSlot()}. Start and end values are kept by the tween engine.
+     */
+    private StackChild[] mRecordChildren = new StackChild[INITIAL_RECORD_CAPACITY];
+    private int[] mRecordTweens =
+            new int[INITIAL_RECORD_CAPACITY * StackTweenEngine.PROPERTY_COUNT];
+    private int mRecordCount;
+    private int[] mFreeRecords = new int[INITIAL_RECORD_CAPACITY];
+    private int mFreeRecordCount;
     private AnimationFilter mAnimationFilter = new AnimationFilter();
+    private final CascadeDelays mCascadeDelays =
+            new CascadeDelays(ANIMATION_DELAY_PER_ELEMENT_INTERRUPTING);
+
+    /**
+     * The types of the new events, the types of the events with their default length and the
+     * longest custom length, collected while processing the events.
+     */
+    private int mNewEventTypes;
+    private int mNewLengthTypes;
+    private long mNewCustomLength;
     private long mCurrentLength;
+    private int mStartedAnimatorCount;
     private long mCurrentAdditionalDelay;
 
     /** The current index for the last child which was not added in this event set. */
@@ -91,20 +116,42 @@ public class StackStateAnimator {
     }
 
     public boolean isRunning() {
-        return !mAnimatorSet.isEmpty();
+        return mTweenEngine.getActiveCount() > 0;
+    }
+
+    public void setDegradationPolicy(AnimationDegradationPolicy degradationPolicy) {
+        mDegradationPolicy = degradationPolicy;
+    }
+
+    public AnimationDegradationPolicy getDegradationPolicy() {
+        return mDegradationPolicy;
+    }
+
+    public void setLayerManager(HardwareLayerManager layerManager) {
+        mLayerManager = layerManager;
+    }
+
+    /**
+     * @return the number of property animations started since this animator was created
+     */
+    public int getStartedAnimatorCount() {
+        return mStartedAnimatorCount;
     }
 
     public void startAnimationForEvents(
-            ArrayList<NotificationScrollLayout.AnimationEvent> mAnimationEvents,
+            ArrayList<AnimationEvent> mAnimationEvents,
             StackScrollState finalState, long additionalDelay) {
 
+        mInstantApply = mDegradationPolicy.isInstantApply(System.nanoTime());
         processAnimationEvents(mAnimationEvents, finalState);
 
         int childCount = mHostLayout.getChildCount();
-        mAnimationFilter.applyCombination(mNewEvents);
+        mAnimationFilter.applyCombination(mNewEventTypes);
         mCurrentAdditionalDelay = additionalDelay;
-        mCurrentLength = NotificationScrollLayout.AnimationEvent.combineLength(mNewEvents);
+        mCurrentLength = Math.max(AnimationEvent.combineLength(mNewLengthTypes),
+                mNewCustomLength);
         mCurrentLastNotAddedIndex = findLastNotAddedIndex(finalState);
+        calculateChildAnimationDelays(finalState, childCount);
         for (int i = 0; i < childCount; i++) {
             final NotificationView child = (NotificationView) mHostLayout.getChildAt(i);
 
@@ -112,6 +159,13 @@ public class StackStateAnimator {
             if (viewState == null || child.getVisibility() == View.GONE) {
                 continue;
             }
+            if (viewState.isClipped()) {
+                // outside of the window of the algorithm, nothing to animate to
+                if (child.getVisibility() == View.VISIBLE) {
+                    child.setVisibility(View.INVISIBLE);
+                }
+                continue;
+            }
 
             startAnimations(child, viewState, finalState, i);
         }
@@ -120,6 +174,9 @@ public class StackStateAnimator {
             onAnimationFinished();
         }
         mNewEvents.clear();
+        mNewEventTypes = 0;
+        mNewLengthTypes = 0;
+        mNewCustomLength = 0;
         mNewAddChildren.clear();
     }
 
@@ -129,11 +186,11 @@ public class StackStateAnimator {
             final NotificationView child = (NotificationView) mHostLayout.getChildAt(i);
 
             StackScrollState.ViewState viewState = finalState.getViewStateForView(child);
-            if (viewState == null || child.getVisibility() == View.GONE) {
+            if (viewState == null || viewState.isClipped() || child.getVisibility() == View.GONE) {
                 continue;
             }
             if (!mNewAddChildren.contains(child)) {
-                return viewState.notGoneIndex;
+                return viewState.getNotGoneIndex();
             }
         }
         return -1;
@@ -146,30 +203,34 @@ public class StackStateAnimator {
             StackScrollState finalState, int i) {
         int childVisibility = child.getVisibility();
         boolean wasVisible = childVisibility == View.VISIBLE;
-        final float alpha = viewState.alpha;
-        if (!wasVisible && alpha != 0 && !viewState.gone) {
+        final float alpha = viewState.getAlpha();
+        if (!wasVisible && alpha != 0 && !viewState.isGone()) {
             child.setVisibility(View.VISIBLE);
         }
+        if (shouldSnap(child, viewState)) {
+            snapToState(child, viewState);
+            return;
+        }
 
-        boolean yTranslationChanging = child.getTranslationY() != viewState.yTranslation;
+        boolean yTranslationChanging = child.getTranslationY() != viewState.getYTranslation();
 //        boolean zTranslationChanging = ViewCompat.getTranslationZ(child) != viewState.zTranslation;
-        boolean scaleChanging = child.getScaleX() != viewState.scale;
+        boolean scaleChanging = child.getScaleX() != viewState.getScale();
         boolean alphaChanging = alpha != child.getAlpha();
         boolean wasAdded = mNewAddChildren.contains(child);
-        boolean hasDelays = mAnimationFilter.hasDelays;
+        boolean hasDelays = mAnimationFilter.has(AnimationFilter.HAS_DELAYS);
         boolean isDelayRelevant = yTranslationChanging/* || zTranslationChanging*/ || scaleChanging ||
                 alphaChanging /*|| heightChanging || topInsetChanging*/;
         boolean noAnimation = wasAdded;
         long delay = 0;
         long duration = mCurrentLength;
         if (hasDelays && isDelayRelevant || wasAdded) {
-            delay = mCurrentAdditionalDelay + calculateChildAnimationDelay(viewState, finalState);
+            delay = mCurrentAdditionalDelay + mCascadeDelays.getDelay(viewState.getNotGoneIndex());
         }
 
        /* if (wasAdded ) {
             child.setTranslationY(child.getTranslationY() + mGoToFullShadeAppearingTranslation);
             yTranslationChanging = true;
-            float longerDurationFactor = viewState.notGoneIndex - mCurrentLastNotAddedIndex;
+            float longerDurationFactor = viewState.getNotGoneIndex() - mCurrentLastNotAddedIndex;
             longerDurationFactor = (float) Math.pow(longerDurationFactor, 0.7f);
             duration = ANIMATION_DURATION_APPEAR_DISAPPEAR + 50 +
                     (long) (100 * longerDurationFactor);
@@ -178,7 +239,7 @@ public class StackStateAnimator {
         // start translationY animation
         if (yTranslationChanging) {
             if (noAnimation /*&& !mAnimationFilter.hasGoToFullShadeEvent*/) {
-                child.setTranslationY(viewState.yTranslation);
+                child.setTranslationY(viewState.getYTranslation());
             } else {
                 startYTranslationAnimation(child, viewState, duration, delay);
             }
@@ -187,8 +248,8 @@ public class StackStateAnimator {
         // start scale animation
         if (scaleChanging) {
             if (noAnimation) {
-                child.setScaleX(viewState.scale);
-                child.setScaleY(viewState.scale);
+                child.setScaleX(viewState.getScale());
+                child.setScaleY(viewState.getScale());
             } else {
                 startScaleAnimation(child, viewState, duration);
             }
@@ -197,7 +258,7 @@ public class StackStateAnimator {
         // start alpha animation
         if (alphaChanging && child.getTranslationX() == 0) {
             if (noAnimation) {
-                child.setAlpha(viewState.alpha);
+                child.setAlpha(viewState.getAlpha());
             } else {
                 startAlphaAnimation(child, viewState, duration, delay);
             }
@@ -213,78 +274,96 @@ public class StackStateAnimator {
         }*/
     }
 
-    private long calculateChildAnimationDelay(StackScrollState.ViewState viewState,
-            StackScrollState finalState) {
-       /* if (mAnimationFilter.hasGoToFullShadeEvent) {
-            return calculateDelayGoToFullShade(viewState);
-        }*/
-        long minDelay = 0;
-        for (NotificationScrollLayout.AnimationEvent event : mNewEvents) {
-            long delayPerElement = ANIMATION_DELAY_PER_ELEMENT_INTERRUPTING;
+    /**
+     * @return whether the degradation policy has the child jump to its state instead of
+     *         animating it
+     */
+    private boolean shouldSnap(NotificationView child, StackScrollState.ViewState viewState) {
+        // the layout top of a child depends on the orientation, its translation alone doesn't
+        // tell where it is on screen
+        int top = child.getTop();
+        return mInstantApply
+                || mDegradationPolicy.isOffscreen(top + child.getTranslationY(),
+                        top + viewState.getYTranslation(), child.getHeight(),
+                        mHostLayout.getHeight())
+                || !mDegradationPolicy.canStartAnimation(mTweenEngine.getActiveCount());
+    }
+
+    /**
+     * Cancel the animations of the child and apply its state right away.
+     */
+    private void snapToState(NotificationView child, StackScrollState.ViewState viewState) {
+        if (child.getTranslationY() != viewState.getYTranslation()
+                || child.getScaleX() != viewState.getScale()
+                || child.getAlpha() != viewState.getAlpha()) {
+            mDegradationPolicy.onChildSnapped();
+        }
+        cancelAnimations(child);
+        child.setTranslationY(viewState.getYTranslation());
+        child.setScaleX(viewState.getScale());
+        child.setScaleY(viewState.getScale());
+        if (child.getTranslationX() == 0) {
+            child.setAlpha(viewState.getAlpha());
+            if (viewState.getAlpha() == 0 && child.getVisibility() == View.VISIBLE) {
+                child.setVisibility(View.INVISIBLE);
+            }
+        }
+    }
+
+    /**
+     * Compute the start delays of all children for the new events in one pass.
+     */
+    private void calculateChildAnimationDelays(StackScrollState finalState, int childCount) {
+        mCascadeDelays.reset();
+        int size = mNewEvents.size();
+        for (int i = 0; i < size; i++) {
+            AnimationEvent event = mNewEvents.get(i);
             switch (event.animationType) {
-                case NotificationScrollLayout.AnimationEvent.ANIMATION_TYPE_ADD: {
-                    int ownIndex = viewState.notGoneIndex;
-                    int changingIndex = finalState
-                            .getViewStateForView(event.changingView).notGoneIndex;
-                    int difference = Math.abs(ownIndex - changingIndex);
-                    difference = Math.max(0, Math.min(DELAY_EFFECT_MAX_INDEX_DIFFERENCE,
-                            difference - 1));
-                    long delay = (DELAY_EFFECT_MAX_INDEX_DIFFERENCE - difference) * delayPerElement;
-                    minDelay = Math.max(delay, minDelay);
+                case AnimationEvent.ANIMATION_TYPE_ADD: {
+                    StackScrollState.ViewState changingState =
+                            finalState.getViewStateForView(event.changingView);
+                    if (changingState != null) {
+                        mCascadeDelays.addInsertion(changingState.getNotGoneIndex());
+                    }
                     break;
                 }
-                case NotificationScrollLayout.AnimationEvent.ANIMATION_TYPE_REMOVE_SWIPED_OUT:
-                    delayPerElement = ANIMATION_DELAY_PER_ELEMENT_MANUAL;
-                case NotificationScrollLayout.AnimationEvent.ANIMATION_TYPE_REMOVE: {
-                    int ownIndex = viewState.notGoneIndex;
+                case AnimationEvent.ANIMATION_TYPE_REMOVE_SWIPED_OUT:
+                case AnimationEvent.ANIMATION_TYPE_REMOVE: {
+                    long delayPerElement = event.animationType
+                            == AnimationEvent.ANIMATION_TYPE_REMOVE_SWIPED_OUT
+                            ? ANIMATION_DELAY_PER_ELEMENT_MANUAL
+                            : ANIMATION_DELAY_PER_ELEMENT_INTERRUPTING;
                     boolean noNextView = event.viewAfterChangingView == null;
-                    View viewAfterChangingView = noNextView
-                            ? mHostLayout.getLastChildNotGone()
+                    StackChild viewAfterChangingView = noNextView
+                            ? (StackChild) mHostLayout.getLastChildNotGone()
                             : event.viewAfterChangingView;
-
-                    int nextIndex = finalState
-                            .getViewStateForView(viewAfterChangingView).notGoneIndex;
-                    if (ownIndex >= nextIndex) {
-                        // we only have the view afterwards
-                        ownIndex++;
+                    StackScrollState.ViewState nextState =
+                            finalState.getViewStateForView(viewAfterChangingView);
+                    if (nextState != null) {
+                        mCascadeDelays.addRemoval(nextState.getNotGoneIndex(), delayPerElement);
                     }
-                    int difference = Math.abs(ownIndex - nextIndex);
-                    difference = Math.max(0, Math.min(DELAY_EFFECT_MAX_INDEX_DIFFERENCE,
-                            difference - 1));
-                    long delay = difference * delayPerElement;
-                    minDelay = Math.max(delay, minDelay);
                     break;
                 }
                 default:
                     break;
             }
         }
-        return minDelay;
+        mCascadeDelays.compute(childCount);
     }
 
 
 
     private void startAlphaAnimation(final NotificationView child,
             final StackScrollState.ViewState viewState, long duration, long delay) {
-        Float previousStartValue = getChildTag(child,TAG_START_ALPHA);
-        Float previousEndValue = getChildTag(child,TAG_END_ALPHA);
-        final float newEndValue = viewState.alpha;
-        if (previousEndValue != null && previousEndValue == newEndValue) {
+        int previousTween = getTween(child, StackTweenEngine.PROPERTY_ALPHA);
+        final float newEndValue = viewState.getAlpha();
+        if (previousTween >= 0 && mTweenEngine.getEndValue(previousTween) == newEndValue) {
             return;
         }
-        ObjectAnimator previousAnimator = getChildTag(child, TAG_ANIMATOR_ALPHA);
-        if (!mAnimationFilter.animateAlpha) {
+        if (!mAnimationFilter.has(AnimationFilter.ANIMATE_ALPHA)) {
             // just a local update was performed
-            if (previousAnimator != null) {
-                // we need to increase all animation keyframes of the previous animator by the
-                // relative change to the end value
-                PropertyValuesHolder[] values = previousAnimator.getValues();
-                float relativeDiff = newEndValue - previousEndValue;
-                float newStartValue = previousStartValue + relativeDiff;
-                values[0].setFloatValues(newStartValue, newEndValue);
-                child.setTag(TAG_START_ALPHA, newStartValue);
-                child.setTag(TAG_END_ALPHA, newEndValue);
-                previousAnimator.setCurrentPlayTime(previousAnimator.getCurrentPlayTime());
+            if (previousTween >= 0) {
+                retargetTween(previousTween, newEndValue);
                 return;
             } else {
                 // no new animation needed, let's just apply the value
@@ -295,52 +374,12 @@ public class StackStateAnimator {
             }
         }
 
-        ObjectAnimator animator = ObjectAnimator.ofFloat(child, View.ALPHA,
-                child.getAlpha(), newEndValue);
-        animator.setInterpolator(mFastOutSlowInInterpolator);
-        // Handle layer type
-        child.setLayerType(View.LAYER_TYPE_HARDWARE, null);
-        animator.addListener(new AnimatorListenerAdapter() {
-            public boolean mWasCancelled;
-
-            @Override
-            public void onAnimationEnd(Animator animation) {
-                child.setLayerType(View.LAYER_TYPE_NONE, null);
-                if (newEndValue == 0 && !mWasCancelled) {
-                    child.setVisibility(View.INVISIBLE);
-                }
-                child.setTag(TAG_ANIMATOR_ALPHA, null);
-                child.setTag(TAG_START_ALPHA, null);
-                child.setTag(TAG_END_ALPHA, null);
-            }
-
-            @Override
-            public void onAnimationCancel(Animator animation) {
-                mWasCancelled = true;
-            }
-
-            @Override
-            public void onAnimationStart(Animator animation) {
-                mWasCancelled = false;
-            }
-        });
-        long newDuration = cancelAnimatorAndGetNewDuration(duration, previousAnimator);
-        animator.setDuration(newDuration);
-        if (delay > 0 && (previousAnimator == null || !previousAnimator.isRunning())) {
-            animator.setStartDelay(delay);
-        }
-        animator.addListener(getGlobalAnimationFinishedListener());
-        // remove the tag when the animation is finished
-        animator.addListener(new AnimatorListenerAdapter() {
-            @Override
-            public void onAnimationEnd(Animator animation) {
-
-            }
-        });
-        startAnimator(animator);
-        child.setTag(TAG_ANIMATOR_ALPHA, animator);
-        child.setTag(TAG_START_ALPHA, child.getAlpha());
-        child.setTag(TAG_END_ALPHA, newEndValue);
+        // Cancel first, the end of the previous animation releases its layer. The new one takes
+        // the layer over again before it is dropped.
+        long newDuration = cancelTweenAndGetNewDuration(duration, previousTween);
+        mLayerManager.acquire(child, HardwareLayerManager.OWNER_ALPHA_ANIMATION, newDuration);
+        startTween(child, StackTweenEngine.PROPERTY_ALPHA, child.getAlpha(), newEndValue,
+                newDuration, delay);
     }
 
    /* private void startZTranslationAnimation(final ExpandableView child,
@@ -397,25 +436,15 @@ public class StackStateAnimator {
 
     private void startYTranslationAnimation(final NotificationView child,
             StackScrollState.ViewState viewState, long duration, long delay) {
-        Float previousStartValue = getChildTag(child,TAG_START_TRANSLATION_Y);
-        Float previousEndValue = getChildTag(child,TAG_END_TRANSLATION_Y);
-        float newEndValue = viewState.yTranslation;
-        if (previousEndValue != null && previousEndValue == newEndValue) {
+        int previousTween = getTween(child, StackTweenEngine.PROPERTY_Y_TRANSLATION);
+        float newEndValue = viewState.getYTranslation();
+        if (previousTween >= 0 && mTweenEngine.getEndValue(previousTween) == newEndValue) {
             return;
         }
-        ObjectAnimator previousAnimator = getChildTag(child, TAG_ANIMATOR_TRANSLATION_Y);
-        if (!mAnimationFilter.animateY) {
+        if (!mAnimationFilter.has(AnimationFilter.ANIMATE_Y)) {
             // just a local update was performed
-            if (previousAnimator != null) {
-                // we need to increase all animation keyframes of the previous animator by the
-                // relative change to the end value
-                PropertyValuesHolder[] values = previousAnimator.getValues();
-                float relativeDiff = newEndValue - previousEndValue;
-                float newStartValue = previousStartValue + relativeDiff;
-                values[0].setFloatValues(newStartValue, newEndValue);
-                child.setTag(TAG_START_TRANSLATION_Y, newStartValue);
-                child.setTag(TAG_END_TRANSLATION_Y, newEndValue);
-                previousAnimator.setCurrentPlayTime(previousAnimator.getCurrentPlayTime());
+            if (previousTween >= 0) {
+                retargetTween(previousTween, newEndValue);
                 return;
             } else {
                 // no new animation needed, let's just apply the value
@@ -424,52 +453,22 @@ public class StackStateAnimator {
             }
         }
 
-        ObjectAnimator animator = ObjectAnimator.ofFloat(child, View.TRANSLATION_Y,
-                child.getTranslationY(), newEndValue);
-        animator.setInterpolator(mFastOutSlowInInterpolator);
-        long newDuration = cancelAnimatorAndGetNewDuration(duration, previousAnimator);
-        animator.setDuration(newDuration);
-        if (delay > 0 && (previousAnimator == null || !previousAnimator.isRunning())) {
-            animator.setStartDelay(delay);
-        }
-        animator.addListener(getGlobalAnimationFinishedListener());
-        // remove the tag when the animation is finished
-        animator.addListener(new AnimatorListenerAdapter() {
-            @Override
-            public void onAnimationEnd(Animator animation) {
-                child.setTag(TAG_ANIMATOR_TRANSLATION_Y, null);
-                child.setTag(TAG_START_TRANSLATION_Y, null);
-                child.setTag(TAG_END_TRANSLATION_Y, null);
-            }
-        });
-        startAnimator(animator);
-        child.setTag(TAG_ANIMATOR_TRANSLATION_Y, animator);
-        child.setTag(TAG_START_TRANSLATION_Y, child.getTranslationY());
-        child.setTag(TAG_END_TRANSLATION_Y, newEndValue);
+        long newDuration = cancelTweenAndGetNewDuration(duration, previousTween);
+        startTween(child, StackTweenEngine.PROPERTY_Y_TRANSLATION, child.getTranslationY(),
+                newEndValue, newDuration, delay);
     }
 
     private void startScaleAnimation(final NotificationView child,
             StackScrollState.ViewState viewState, long duration) {
-        Float previousStartValue = getChildTag(child, TAG_START_SCALE);
-        Float previousEndValue = getChildTag(child, TAG_END_SCALE);
-        float newEndValue = viewState.scale;
-        if (previousEndValue != null && previousEndValue == newEndValue) {
+        int previousTween = getTween(child, StackTweenEngine.PROPERTY_SCALE);
+        float newEndValue = viewState.getScale();
+        if (previousTween >= 0 && mTweenEngine.getEndValue(previousTween) == newEndValue) {
             return;
         }
-        ObjectAnimator previousAnimator = getChildTag(child, TAG_ANIMATOR_SCALE);
-        if (!mAnimationFilter.animateScale) {
+        if (!mAnimationFilter.has(AnimationFilter.ANIMATE_SCALE)) {
             // just a local update was performed
-            if (previousAnimator != null) {
-                // we need to increase all animation keyframes of the previous animator by the
-                // relative change to the end value
-                PropertyValuesHolder[] values = previousAnimator.getValues();
-                float relativeDiff = newEndValue - previousEndValue;
-                float newStartValue = previousStartValue + relativeDiff;
-                values[0].setFloatValues(newStartValue, newEndValue);
-                values[1].setFloatValues(newStartValue, newEndValue);
-                child.setTag(TAG_START_SCALE, newStartValue);
-                child.setTag(TAG_END_SCALE, newEndValue);
-                previousAnimator.setCurrentPlayTime(previousAnimator.getCurrentPlayTime());
+            if (previousTween >= 0) {
+                retargetTween(previousTween, newEndValue);
                 return;
             } else {
                 // no new animation needed, let's just apply the value
@@ -478,88 +477,147 @@ public class StackStateAnimator {
             }
         }
 
-        PropertyValuesHolder holderX =
-                PropertyValuesHolder.ofFloat(View.SCALE_X, child.getScaleX(), newEndValue);
-        PropertyValuesHolder holderY =
-                PropertyValuesHolder.ofFloat(View.SCALE_Y, child.getScaleY(), newEndValue);
-        ObjectAnimator animator = ObjectAnimator.ofPropertyValuesHolder(child, holderX, holderY);
-        animator.setInterpolator(mFastOutSlowInInterpolator);
-        long newDuration = cancelAnimatorAndGetNewDuration(duration, previousAnimator);
-        animator.setDuration(newDuration);
-        animator.addListener(getGlobalAnimationFinishedListener());
-        // remove the tag when the animation is finished
-        animator.addListener(new AnimatorListenerAdapter() {
-            @Override
-            public void onAnimationEnd(Animator animation) {
-                child.setTag(TAG_ANIMATOR_SCALE, null);
-                child.setTag(TAG_START_SCALE, null);
-                child.setTag(TAG_END_SCALE, null);
-            }
-        });
-        startAnimator(animator);
-        child.setTag(TAG_ANIMATOR_SCALE, animator);
-        child.setTag(TAG_START_SCALE, child.getScaleX());
-        child.setTag(TAG_END_SCALE, newEndValue);
+        long newDuration = cancelTweenAndGetNewDuration(duration, previousTween);
+        startTween(child, StackTweenEngine.PROPERTY_SCALE, child.getScaleX(), newEndValue,
+                newDuration, 0);
     }
 
-    private void startAnimator(ValueAnimator animator) {
-        mAnimatorSet.add(animator);
-        animator.start();
+    /**
+     * Move a running animation to a new end value. The start value is increased by the relative
+     * change to the end value, so the animation keeps its progress.
+     */
+    private void retargetTween(int tween, float newEndValue) {
+        float relativeDiff = newEndValue - mTweenEngine.getEndValue(tween);
+        float newStartValue = mTweenEngine.getStartValue(tween) + relativeDiff;
+        mTweenEngine.retarget(tween, newStartValue, newEndValue);
     }
 
     /**
-     * @return an adapter which ensures that onAnimationFinished is called once no animation is
-     *         running anymore
+     * Cancel all running property animations of a child, e.g. before its view is recycled.
      */
-    private AnimatorListenerAdapter getGlobalAnimationFinishedListener() {
-        if (!mAnimationListenerPool.empty()) {
-            return mAnimationListenerPool.pop();
+    public void cancelAnimations(View child) {
+        StackChild stackChild = (StackChild) child;
+        for (int property = 0; property < StackTweenEngine.PROPERTY_COUNT; property++) {
+            int tween = getTween(stackChild, property);
+            if (tween >= 0) {
+                mTweenEngine.cancel(tween);
+            }
         }
+    }
 
-        // We need to create a new one, no reusable ones found
-        return new AnimatorListenerAdapter() {
-            private boolean mWasCancelled;
+    private void startTween(StackChild child, int property, float from, float to, long duration,
+            long delay) {
+        mStartedAnimatorCount++;
+        int tween = mTweenEngine.start(child, property, from, to, duration, delay,
+                StackTweenEngine.INTERPOLATOR_DECELERATE);
+        int record = getRecord(child);
+        if (record < 0) {
+            record = obtainRecord(child);
+        }
+        mRecordTweens[record * StackTweenEngine.PROPERTY_COUNT + property] = tween;
+    }
 
-            @Override
-            public void onAnimationEnd(Animator animation) {
-                mAnimatorSet.remove(animation);
-                if (mAnimatorSet.isEmpty() && !mWasCancelled) {
-                    onAnimationFinished();
-                }
-                mAnimationListenerPool.push(this);
+    /**
+     * @return the id of the running animation of a property of the child, or -1
+     */
+    private int getTween(StackChild child, int property) {
+        int record = getRecord(child);
+        return record < 0 ? -1 : mRecordTweens[record * StackTweenEngine.PROPERTY_COUNT + property];
+    }
+
+    private int getRecord(StackChild child) {
+        int record = child.getAnimationSlot();
+        return record >= 0 && record < mRecordCount && mRecordChildren[record] == child
+                ? record : -1;
+    }
+
+    private int obtainRecord(StackChild child) {
+        int record;
+        if (mFreeRecordCount > 0) {
+            record = mFreeRecords[--mFreeRecordCount];
+        } else {
+            if (mRecordCount == mRecordChildren.length) {
+                int capacity = mRecordCount * 2;
+                mRecordChildren = Arrays.copyOf(mRecordChildren, capacity);
+                mRecordTweens = Arrays.copyOf(mRecordTweens,
+                        capacity * StackTweenEngine.PROPERTY_COUNT);
+                mFreeRecords = Arrays.copyOf(mFreeRecords, capacity);
             }
+            record = mRecordCount++;
+        }
+        mRecordChildren[record] = child;
+        Arrays.fill(mRecordTweens, record * StackTweenEngine.PROPERTY_COUNT,
+                (record + 1) * StackTweenEngine.PROPERTY_COUNT, -1);
+        child.setAnimationSlot(record);
+        return record;
+    }
 
-            @Override
-            public void onAnimationCancel(Animator animation) {
-                mWasCancelled = true;
+    /**
+     * Clear the animation of a property of the child and release its record once no property is
+     * animating anymore.
+     */
+    private void clearTween(StackChild child, int property) {
+        int record = getRecord(child);
+        if (record < 0) {
+            return;
+        }
+        int offset = record * StackTweenEngine.PROPERTY_COUNT;
+        mRecordTweens[offset + property] = -1;
+        for (int i = 0; i < StackTweenEngine.PROPERTY_COUNT; i++) {
+            if (mRecordTweens[offset + i] >= 0) {
+                return;
             }
+        }
+        mRecordChildren[record] = null;
+        child.setAnimationSlot(-1);
+        mFreeRecords[mFreeRecordCount++] = record;
+    }
 
-            @Override
-            public void onAnimationStart(Animator animation) {
-                mWasCancelled = false;
+    @Override
+    public void scheduleFrame() {
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        mDegradationPolicy.onFrame(frameTimeNanos);
+        mTweenEngine.doFrame(frameTimeNanos / 1000000);
+        if (mTweenEngine.getActiveCount() == 0) {
+            mDegradationPolicy.onIdle();
+        }
+    }
+
+    @Override
+    public void onTweenEnd(StackChild child, int property, float endValue, boolean cancelled) {
+        clearTween(child, property);
+        if (property == StackTweenEngine.PROPERTY_ALPHA) {
+            mLayerManager.release(child, HardwareLayerManager.OWNER_ALPHA_ANIMATION);
+            if (endValue == 0 && !cancelled) {
+                child.setVisibility(StackChild.VISIBILITY_INVISIBLE);
             }
-        };
+        }
     }
 
-    private static <T> T getChildTag(View child, int tag) {
-        return (T) child.getTag(tag);
+    @Override
+    public void onAllTweensFinished() {
+        onAnimationFinished();
     }
 
     /**
-     * Cancel the previous animator and get the duration of the new animation.
+     * Cancel the previous animation and get the duration of the new animation.
      *
      * @param duration the new duration
-     * @param previousAnimator the animator which was running before
+     * @param previousTween the id of the animation which was running before, or -1
      * @return the new duration
      */
-    private long cancelAnimatorAndGetNewDuration(long duration, ValueAnimator previousAnimator) {
+    private long cancelTweenAndGetNewDuration(long duration, int previousTween) {
         long newDuration = duration;
-        if (previousAnimator != null) {
+        if (previousTween >= 0) {
             // We take either the desired length of the new animation or the remaining time of
-            // the previous animator, whichever is longer.
-            newDuration = Math.max(previousAnimator.getDuration()
-                    - previousAnimator.getCurrentPlayTime(), newDuration);
-            previousAnimator.cancel();
+            // the previous animation, whichever is longer.
+            newDuration = Math.max(mTweenEngine.getDuration(previousTween)
+                    - mTweenEngine.getPlayTime(previousTween), newDuration);
+            mTweenEngine.cancel(previousTween);
         }
         return newDuration;
     }
@@ -575,12 +633,12 @@ public class StackStateAnimator {
      * @param finalState the final state to animate to
      */
     private void processAnimationEvents(
-            ArrayList<NotificationScrollLayout.AnimationEvent> animationEvents,
+            ArrayList<AnimationEvent> animationEvents,
             StackScrollState finalState) {
-        for (NotificationScrollLayout.AnimationEvent event : animationEvents) {
+        for (AnimationEvent event : animationEvents) {
             final NotificationView changingView = (NotificationView) event.changingView;
             if (event.animationType ==
-                    NotificationScrollLayout.AnimationEvent.ANIMATION_TYPE_ADD) {
+                    AnimationEvent.ANIMATION_TYPE_ADD) {
 
                 // This item is added, initialize it's properties.
                 StackScrollState.ViewState viewState = finalState
@@ -594,13 +652,13 @@ public class StackStateAnimator {
                     finalState.removeViewStateForView(changingView);
                     continue;
                 }
-                changingView.setAlpha(viewState.alpha);
-                changingView.setTranslationY(viewState.yTranslation);
+                changingView.setAlpha(viewState.getAlpha());
+                changingView.setTranslationY(viewState.getYTranslation());
 //                ViewCompat.setTranslationZ(changingView, viewState.zTranslation);
                 mNewAddChildren.add(changingView);
 
             } else if (event.animationType ==
-                    NotificationScrollLayout.AnimationEvent.ANIMATION_TYPE_REMOVE) {
+                    AnimationEvent.ANIMATION_TYPE_REMOVE) {
                 if (changingView.getVisibility() == View.GONE) {
 //                    mHostLayout.getOverlay().remove(changingView);
                     continue;
@@ -616,22 +674,30 @@ public class StackStateAnimator {
                 if (viewState != null) {
                     // there was a view after this one, Approximate the distance the next child
                     // travelled
-                    translationDirection = ((viewState.yTranslation
+                    translationDirection = ((viewState.getYTranslation()
                             - (changingView.getTranslationY() + actualHeight / 2.0f)) * 2 /
                             actualHeight);
                     translationDirection = Math.max(Math.min(translationDirection, 1.0f), -1.0f);
 
                 }
-                changingView.performRemoveAnimation(ANIMATION_DURATION_APPEAR_DISAPPEAR,
-                        translationDirection, new Runnable() {
-                    @Override
-                    public void run() {
-                        // remove the temporary overlay
-//                        mHostLayout.getOverlay().remove(changingView);
-                    }
-                });
+                if (!mInstantApply) {
+                    changingView.performRemoveAnimation(ANIMATION_DURATION_APPEAR_DISAPPEAR,
+                            translationDirection, new Runnable() {
+                        @Override
+                        public void run() {
+                            // remove the temporary overlay
+//                            mHostLayout.getOverlay().remove(changingView);
+                        }
+                    });
+                }
             }
             mNewEvents.add(event);
+            mNewEventTypes |= 1 << event.animationType;
+            if (event.hasCustomLength()) {
+                mNewCustomLength = Math.max(mNewCustomLength, event.length);
+            } else {
+                mNewLengthTypes |= 1 << event.animationType;
+            }
         }
     }
 
@@ -26,8 +26,8 @@ import android.content.Context;
 import android.graphics.RectF;
 import android.os.Handler;
 import android.util.Log;
+import android.view.Choreographer;
 import android.view.MotionEvent;
-import android.view.VelocityTracker;
 import android.view.View;
 import android.view.ViewConfiguration;
 import android.view.accessibility.AccessibilityEvent;
@@ -68,7 +68,25 @@ public class SwipeHelper implements Gefingerpoken {
     private Callback mCallback;
     private Handler mHandler;
     private int mSwipeDirection;
-    private VelocityTracker mVelocityTracker;
+    private final TouchTracker mTouchTracker = new TouchTracker();
+
+    /**
+     * Whether a swipe follows the position of the pointer resampled to the time of the frame.
+     */
+    private boolean mTouchResamplingEnabled;
+    private boolean mSwipeUpdateScheduled;
+    private final Choreographer.FrameCallback mSwipeUpdateCallback =
+            new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            mSwipeUpdateScheduled = false;
+            if (mDragging && mCurrView != null) {
+                mTouchTracker.resample(MotionEventSamples.getResampleTime(frameTimeNanos));
+                updateSwipe(mSwipeDirection == X ? mTouchTracker.getResampledX()
+                        : mTouchTracker.getResampledY());
+            }
+        }
+    };
 
     private float mInitialTouchPos;
     private boolean mDragging;
@@ -79,6 +97,7 @@ public class SwipeHelper implements Gefingerpoken {
 
     private boolean mLongPressSent;
     private LongPressListener mLongPressListener;
+    private HardwareLayerManager mLayerManager;
     private Runnable mWatchLongPress;
     private long mLongPressTimeout;
 
@@ -90,7 +109,6 @@ public class SwipeHelper implements Gefingerpoken {
         mCallback = callback;
         mHandler = new Handler();
         mSwipeDirection = swipeDirection;
-        mVelocityTracker = VelocityTracker.obtain();
         mDensityScale =  context.getResources().getDisplayMetrics().density;
         mPagingTouchSlop = ViewConfiguration.get(context).getScaledPagingTouchSlop();
 
@@ -103,6 +121,21 @@ public class SwipeHelper implements Gefingerpoken {
         mLongPressListener = listener;
     }
 
+    /**
+     * Let the manager decide about the layers of the swiped children, without one every fading
+     * child gets a layer.
+     */
+    public void setLayerManager(HardwareLayerManager layerManager) {
+        mLayerManager = layerManager;
+    }
+
+    public void setTouchResamplingEnabled(boolean touchResamplingEnabled) {
+        mTouchResamplingEnabled = touchResamplingEnabled;
+        if (!touchResamplingEnabled) {
+            cancelSwipeUpdate();
+        }
+    }
+
     public void setDensityScale(float densityScale) {
         mDensityScale = densityScale;
     }
@@ -119,9 +152,9 @@ public class SwipeHelper implements Gefingerpoken {
         return mSwipeDirection == X ? v.getTranslationX() : v.getTranslationY();
     }
 
-    private float getVelocity(VelocityTracker vt) {
-        return mSwipeDirection == X ? vt.getXVelocity() :
-                vt.getYVelocity();
+    private float getVelocity(TouchTracker tracker) {
+        return mSwipeDirection == X ? tracker.getXVelocity() :
+                tracker.getYVelocity();
     }
 
     private ObjectAnimator createTranslationAnimation(View v, float newPos) {
@@ -130,9 +163,9 @@ public class SwipeHelper implements Gefingerpoken {
         return anim;
     }
 
-    private float getPerpendicularVelocity(VelocityTracker vt) {
-        return mSwipeDirection == X ? vt.getYVelocity() :
-                vt.getXVelocity();
+    private float getPerpendicularVelocity(TouchTracker tracker) {
+        return mSwipeDirection == X ? tracker.getYVelocity() :
+                tracker.getXVelocity();
     }
 
     private void setTranslation(View v, float translate) {
@@ -175,9 +208,9 @@ public class SwipeHelper implements Gefingerpoken {
             if (FADE_OUT_DURING_SWIPE && dismissable) {
                 float alpha = swipeProgress;
                 if (alpha != 0f && alpha != 1f) {
-                    animView.setLayerType(View.LAYER_TYPE_HARDWARE, null);
+                    acquireLayer(animView, HardwareLayerManager.DURATION_UNTIL_RELEASED);
                 } else {
-                    animView.setLayerType(View.LAYER_TYPE_NONE, null);
+                    releaseLayer(animView);
                 }
                 animView.setAlpha(getSwipeProgressForOffset(animView));
             }
@@ -185,6 +218,22 @@ public class SwipeHelper implements Gefingerpoken {
         invalidateGlobalRegion(animView);
     }
 
+    private void acquireLayer(View view, long duration) {
+        if (mLayerManager != null && view instanceof StackChild) {
+            mLayerManager.acquire((StackChild) view, HardwareLayerManager.OWNER_SWIPE, duration);
+        } else {
+            view.setLayerType(View.LAYER_TYPE_HARDWARE, null);
+        }
+    }
+
+    private void releaseLayer(View view) {
+        if (mLayerManager != null && view instanceof StackChild) {
+            mLayerManager.release((StackChild) view, HardwareLayerManager.OWNER_SWIPE);
+        } else {
+            view.setLayerType(View.LAYER_TYPE_NONE, null);
+        }
+    }
+
     // invalidate the view's own bounds all the way up the view hierarchy
     public static void invalidateGlobalRegion(View view) {
         invalidateGlobalRegion(
@@ -231,11 +280,12 @@ public class SwipeHelper implements Gefingerpoken {
                 mDragging = false;
                 mLongPressSent = false;
                 mCurrView = mCallback.getChildAtPosition(ev);
-                mVelocityTracker.clear();
+                cancelSwipeUpdate();
+                mTouchTracker.clear();
                 if (mCurrView != null) {
                     mCurrAnimView = mCallback.getChildContentView(mCurrView);
                     mCanCurrViewBeDimissed = mCallback.canChildBeDismissed(mCurrView);
-                    mVelocityTracker.addMovement(ev);
+                    MotionEventSamples.addMovement(mTouchTracker, ev, 0);
                     mInitialTouchPos = getPos(ev);
 
                     if (mLongPressListener != null) {
@@ -263,7 +313,7 @@ public class SwipeHelper implements Gefingerpoken {
 
             case MotionEvent.ACTION_MOVE:
                 if (mCurrView != null && !mLongPressSent) {
-                    mVelocityTracker.addMovement(ev);
+                    MotionEventSamples.addMovement(mTouchTracker, ev, 0);
                     float pos = getPos(ev);
                     float delta = pos - mInitialTouchPos;
                     if (Math.abs(delta) > mPagingTouchSlop) {
@@ -336,7 +386,7 @@ public class SwipeHelper implements Gefingerpoken {
             duration = fixedDuration;
         }
 
-        animView.setLayerType(View.LAYER_TYPE_HARDWARE, null);
+        acquireLayer(animView, duration);
         ObjectAnimator anim = createTranslationAnimation(animView, newPos);
         if (useAccelerateInterpolator) {
             anim.setInterpolator(mFastOutLinearInInterpolator);
@@ -353,7 +403,7 @@ public class SwipeHelper implements Gefingerpoken {
                 if (endAction != null) {
                     endAction.run();
                 }
-                animView.setLayerType(View.LAYER_TYPE_NONE, null);
+                releaseLayer(animView);
             }
         });
         anim.addUpdateListener(new AnimatorUpdateListener() {
@@ -405,41 +455,32 @@ public class SwipeHelper implements Gefingerpoken {
             }
         }
 
-        mVelocityTracker.addMovement(ev);
+        MotionEventSamples.addMovement(mTouchTracker, ev, 0);
         final int action = ev.getAction();
         switch (action) {
             case MotionEvent.ACTION_OUTSIDE:
             case MotionEvent.ACTION_MOVE:
                 if (mCurrView != null) {
-                    float delta = getPos(ev) - mInitialTouchPos;
-                    float absDelta = Math.abs(delta);
-                    if (absDelta >= getFalsingThreshold()) {
-                        mTouchAboveFalsingThreshold = true;
-                    }
-                    // don't let items that can't be dismissed be dragged more than
-                    // maxScrollDistance
-                    if (CONSTRAIN_SWIPE && !mCallback.canChildBeDismissed(mCurrView)) {
-                        float size = getSize(mCurrAnimView);
-                        float maxScrollDistance = 0.15f * size;
-                        if (absDelta >= size) {
-                            delta = delta > 0 ? maxScrollDistance : -maxScrollDistance;
-                        } else {
-                            delta = maxScrollDistance * (float) Math.sin((delta/size)*(Math.PI/2));
-                        }
+                    if (mTouchResamplingEnabled) {
+                        scheduleSwipeUpdate();
+                    } else {
+                        updateSwipe(getPos(ev));
                     }
-                    setTranslation(mCurrAnimView, delta);
-
-                    updateSwipeProgressFromOffset(mCurrAnimView, mCanCurrViewBeDimissed);
                 }
                 break;
             case MotionEvent.ACTION_UP:
             case MotionEvent.ACTION_CANCEL:
                 if (mCurrView != null) {
+                    cancelSwipeUpdate();
+                    if (mTouchResamplingEnabled && action == MotionEvent.ACTION_UP) {
+                        // the swipe ends where the pointer was lifted
+                        updateSwipe(getPos(ev));
+                    }
                     float maxVelocity = MAX_DISMISS_VELOCITY * mDensityScale;
-                    mVelocityTracker.computeCurrentVelocity(1000 /* px/sec */, maxVelocity);
+                    mTouchTracker.computeCurrentVelocity(1000 /* px/sec */, maxVelocity);
                     float escapeVelocity = SWIPE_ESCAPE_VELOCITY * mDensityScale;
-                    float velocity = getVelocity(mVelocityTracker);
-                    float perpendicularVelocity = getPerpendicularVelocity(mVelocityTracker);
+                    float velocity = getVelocity(mTouchTracker);
+                    float perpendicularVelocity = getPerpendicularVelocity(mTouchTracker);
 
                     // Decide whether to dismiss the current view
                     boolean childSwipedFarEnough = DISMISS_IF_SWIPED_FAR_ENOUGH &&
@@ -467,6 +508,45 @@ public class SwipeHelper implements Gefingerpoken {
         return true;
     }
 
+    /**
+     * Move the swiped child to follow the pointer to the given position.
+     */
+    private void updateSwipe(float pos) {
+        float delta = pos - mInitialTouchPos;
+        float absDelta = Math.abs(delta);
+        if (absDelta >= getFalsingThreshold()) {
+            mTouchAboveFalsingThreshold = true;
+        }
+        // don't let items that can't be dismissed be dragged more than
+        // maxScrollDistance
+        if (CONSTRAIN_SWIPE && !mCallback.canChildBeDismissed(mCurrView)) {
+            float size = getSize(mCurrAnimView);
+            float maxScrollDistance = 0.15f * size;
+            if (absDelta >= size) {
+                delta = delta > 0 ? maxScrollDistance : -maxScrollDistance;
+            } else {
+                delta = maxScrollDistance * (float) Math.sin((delta/size)*(Math.PI/2));
+            }
+        }
+        setTranslation(mCurrAnimView, delta);
+
+        updateSwipeProgressFromOffset(mCurrAnimView, mCanCurrViewBeDimissed);
+    }
+
+    private void scheduleSwipeUpdate() {
+        if (!mSwipeUpdateScheduled) {
+            mSwipeUpdateScheduled = true;
+            Choreographer.getInstance().postFrameCallback(mSwipeUpdateCallback);
+        }
+    }
+
+    private void cancelSwipeUpdate() {
+        if (mSwipeUpdateScheduled) {
+            mSwipeUpdateScheduled = false;
+            Choreographer.getInstance().removeFrameCallback(mSwipeUpdateCallback);
+        }
+    }
+
     private int getFalsingThreshold() {
         float factor = mCallback.getFalsingThresholdFactor();
         return (int) (mFalsingThreshold * factor);
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.androidl.welen.androidl;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of combining the filters and lengths of a batch of {@link AnimationEvent}s with
+ * seeded random types, either from the event list or from the set of their types.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms512m", "-Xmx512m", "-XX:+UseSerialGC"})
+public class AnimationBenchmark {
+
+    private static final long SEED = 0x5eedL;
+
+    @Param({"1", "10", "100"})
+    public int eventCount;
+
+    private final ArrayList<AnimationEvent> mEvents = new ArrayList<AnimationEvent>();
+    private final AnimationFilter mFilter = new AnimationFilter();
+    private int mEventTypes;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(SEED);
+        mEvents.clear();
+        for (int i = 0; i < eventCount; i++) {
+            int type = random.nextInt(AnimationEvent.FILTERS.length);
+            mEvents.add(new AnimationEvent(null, type));
+        }
+        mEventTypes = AnimationEvent.getTypes(mEvents);
+    }
+
+    @Benchmark
+    public AnimationFilter applyCombination() {
+        mFilter.applyCombination(mEvents);
+        return mFilter;
+    }
+
+    @Benchmark
+    public long combineLength() {
+        return AnimationEvent.combineLength(mEvents);
+    }
+
+    @Benchmark
+    public int combineEventTypes() {
+        mFilter.applyCombination(mEventTypes);
+        return mFilter.flags + (int) AnimationEvent.combineLength(mEventTypes);
+    }
+}
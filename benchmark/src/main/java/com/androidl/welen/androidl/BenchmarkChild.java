@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.androidl.welen.androidl;
+
+/**
+ * A headless {@link StackChild} which only stores its properties.
+ */
+class BenchmarkChild implements StackChild {
+
+    private static final int WIDTH = 1080;
+
+    private final int mHeight;
+    private int mVisibility;
+    private float mAlpha = 1f;
+    private float mTranslationY;
+    private float mScaleX = 1f;
+    private float mScaleY = 1f;
+    private int mLayerType = LAYER_NONE;
+    private int mStackStateSlot = -1;
+    private int mAnimationSlot = -1;
+    private int mLayerSlot = -1;
+
+    BenchmarkChild(int height, boolean gone) {
+        mHeight = height;
+        mVisibility = gone ? VISIBILITY_GONE : VISIBILITY_VISIBLE;
+    }
+
+    @Override
+    public int getWidth() {
+        return WIDTH;
+    }
+
+    @Override
+    public int getHeight() {
+        return mHeight;
+    }
+
+    @Override
+    public int getVisibility() {
+        return mVisibility;
+    }
+
+    @Override
+    public void setVisibility(int visibility) {
+        mVisibility = visibility;
+    }
+
+    @Override
+    public float getAlpha() {
+        return mAlpha;
+    }
+
+    @Override
+    public void setAlpha(float alpha) {
+        mAlpha = alpha;
+    }
+
+    @Override
+    public float getTranslationX() {
+        return 0;
+    }
+
+    @Override
+    public float getTranslationY() {
+        return mTranslationY;
+    }
+
+    @Override
+    public void setTranslationY(float translationY) {
+        mTranslationY = translationY;
+    }
+
+    @Override
+    public float getScaleX() {
+        return mScaleX;
+    }
+
+    @Override
+    public void setScaleX(float scaleX) {
+        mScaleX = scaleX;
+    }
+
+    @Override
+    public void setScaleY(float scaleY) {
+        mScaleY = scaleY;
+    }
+
+    @Override
+    public int getLayerType() {
+        return mLayerType;
+    }
+
+    @Override
+    public boolean hasOverlappingRendering() {
+        return true;
+    }
+
+    @Override
+    public void applyLayerType(int layerType) {
+        mLayerType = layerType;
+    }
+
+    @Override
+    public int getStackStateSlot() {
+        return mStackStateSlot;
+    }
+
+    @Override
+    public void setStackStateSlot(int stackStateSlot) {
+        mStackStateSlot = stackStateSlot;
+    }
+
+    @Override
+    public int getAnimationSlot() {
+        return mAnimationSlot;
+    }
+
+    @Override
+    public void setAnimationSlot(int animationSlot) {
+        mAnimationSlot = animationSlot;
+    }
+
+    @Override
+    public int getLayerSlot() {
+        return mLayerSlot;
+    }
+
+    @Override
+    public void setLayerSlot(int layerSlot) {
+        mLayerSlot = layerSlot;
+    }
+}
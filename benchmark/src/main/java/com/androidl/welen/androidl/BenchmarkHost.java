@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.androidl.welen.androidl;
+
+import java.util.Random;
+
+/**
+ * A headless {@link StackHost} with a fixed list of children and the height index over them.
+ */
+class BenchmarkHost implements StackHost {
+
+    static final int PADDING_BETWEEN_ELEMENTS = 16;
+    static final int WINDOW_MARGIN = 128;
+    static final int LAYOUT_HEIGHT = 1920;
+
+    private static final int MIN_CHILD_HEIGHT = 64;
+    private static final int MAX_CHILD_HEIGHT = 256;
+
+    private final BenchmarkChild[] mChildren;
+    private final HeightIndex mHeightIndex = new HeightIndex();
+
+    /**
+     * Create a host with random child heights. Every tenth child on average is gone.
+     *
+     * @param seed the seed of the heights, the same seed always creates the same children
+     */
+    BenchmarkHost(int childCount, long seed) {
+        Random random = new Random(seed);
+        mChildren = new BenchmarkChild[childCount];
+        mHeightIndex.setPaddingBetweenElements(PADDING_BETWEEN_ELEMENTS);
+        mHeightIndex.reset(childCount);
+        for (int i = 0; i < childCount; i++) {
+            int height = MIN_CHILD_HEIGHT + random.nextInt(MAX_CHILD_HEIGHT - MIN_CHILD_HEIGHT);
+            boolean gone = random.nextInt(10) == 0;
+            mChildren[i] = new BenchmarkChild(height, gone);
+            mHeightIndex.put(i, height, gone);
+        }
+        mHeightIndex.rebuild();
+    }
+
+    @Override
+    public int getChildCount() {
+        return mChildren.length;
+    }
+
+    @Override
+    public StackChild getStackChildAt(int index) {
+        return mChildren[index];
+    }
+
+    HeightIndex getHeightIndex() {
+        return mHeightIndex;
+    }
+}
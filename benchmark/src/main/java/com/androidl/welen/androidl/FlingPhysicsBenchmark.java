@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.androidl.welen.androidl;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks whole flings of a {@link PhysicsScroller}, stepped frame by frame with a simulated
+ * clock until they come to rest. The short range makes the fast flings hit the end and spring
+ * back from it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms512m", "-Xmx512m", "-XX:+UseSerialGC"})
+public class FlingPhysicsBenchmark {
+
+    private static final long FRAME_INTERVAL = 16;
+    private static final float DENSITY = 3f;
+    private static final int SCROLL_RANGE = 5000;
+
+    @Param({"spline", "exponential"})
+    public String curve;
+
+    /**
+     * The initial velocity in pixels per second.
+     */
+    @Param({"2000", "8000", "20000"})
+    public int velocity;
+
+    private PhysicsScroller mScroller;
+
+    @Setup
+    public void setUp() {
+        FlingCurve flingCurve = "spline".equals(curve)
+                ? new SplineFlingCurve(DENSITY, SplineFlingCurve.DEFAULT_FRICTION)
+                : new ExponentialFlingCurve(ExponentialFlingCurve.DEFAULT_FRICTION,
+                        ExponentialFlingCurve.DEFAULT_REST_VELOCITY);
+        mScroller = new PhysicsScroller(flingCurve);
+    }
+
+    @Benchmark
+    public int fling() {
+        long time = 0;
+        mScroller.fling(0, velocity, 0, SCROLL_RANGE, time);
+        int position = 0;
+        while (mScroller.computeScrollOffset(time += FRAME_INTERVAL)) {
+            position += mScroller.getCurrY();
+        }
+        return position;
+    }
+}
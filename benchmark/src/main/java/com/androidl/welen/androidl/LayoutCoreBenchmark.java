@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.androidl.welen.androidl;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the {@link StackLayoutCore} alone, laying out all children of a model with seeded
+ * random heights.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms512m", "-Xmx512m", "-XX:+UseSerialGC"})
+public class LayoutCoreBenchmark {
+
+    private static final long SEED = 0x5eedL;
+
+    @Param({"10", "100", "1000", "5000"})
+    public int childCount;
+
+    @Param({"true", "false"})
+    public boolean revert;
+
+    private StackLayoutCore mCore;
+    private int mScrollY;
+
+    @Setup
+    public void setUp() {
+        mCore = new StackLayoutCore(BenchmarkHost.PADDING_BETWEEN_ELEMENTS,
+                BenchmarkHost.WINDOW_MARGIN);
+        mCore.setOrientation(StackOrientation.of(revert));
+        mCore.setLayoutHeight(BenchmarkHost.LAYOUT_HEIGHT);
+        mCore.setFullWindow(childCount);
+        Random random = new Random(SEED);
+        for (int i = 0; i < childCount; i++) {
+            mCore.setChild(i, 64 + random.nextInt(192), random.nextInt(10) == 0);
+        }
+    }
+
+    @Benchmark
+    public float layout() {
+        mScrollY = (mScrollY + 1) & 1023;
+        mCore.setScrollState(mScrollY, 0f, 0f, 0);
+        mCore.layout();
+        return mCore.getYTranslation(childCount - 1);
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.androidl.welen.androidl;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of a layout pass of the {@link StackScrollAlgorithm} and of resetting and applying
+ * the resulting {@link StackScrollState}, on headless children with seeded random heights.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms512m", "-Xmx512m", "-XX:+UseSerialGC"})
+public class StackLayoutBenchmark {
+
+    private static final long SEED = 0x5eedL;
+
+    @Param({"10", "100", "1000", "5000"})
+    public int childCount;
+
+    @Param({"true", "false"})
+    public boolean revert;
+
+    @Param({"0", "1", "10"})
+    public int draggedCount;
+
+    private BenchmarkHost mHost;
+    private AmbientState mAmbientState;
+    private StackScrollAlgorithm mAlgorithm;
+    private StackScrollState mState;
+
+    /**
+     * Two scroll positions the passes alternate between, so that every pass changes the states.
+     */
+    private final int[] mScrollPositions = new int[2];
+    private int mScrollRange;
+    private int mNextScrollPosition;
+    private int mNextHitPosition;
+
+    @Setup
+    public void setUp() {
+        mHost = new BenchmarkHost(childCount, SEED);
+        HeightIndex heightIndex = mHost.getHeightIndex();
+
+        mAmbientState = new AmbientState();
+        mAmbientState.setHeightIndex(heightIndex, 0);
+        Random random = new Random(SEED);
+        int dragged = Math.min(draggedCount, childCount);
+        for (int i = 0; i < dragged; i++) {
+            mAmbientState.onBeginDrag(mHost.getStackChildAt(random.nextInt(childCount)));
+        }
+
+        mScrollRange = Math.max(0,
+                heightIndex.getContentHeight() - BenchmarkHost.LAYOUT_HEIGHT);
+        mScrollPositions[0] = mScrollRange / 3;
+        mScrollPositions[1] = mScrollRange * 2 / 3;
+
+        mAlgorithm = new StackScrollAlgorithm(BenchmarkHost.PADDING_BETWEEN_ELEMENTS,
+                BenchmarkHost.WINDOW_MARGIN);
+        mAlgorithm.setOrientation(StackOrientation.of(revert));
+        mAlgorithm.setLayoutHeight(BenchmarkHost.LAYOUT_HEIGHT);
+        mState = new StackScrollState(mHost);
+        layout();
+        mState.apply();
+    }
+
+    private int layout() {
+        mAmbientState.setScrollY(mScrollPositions[mNextScrollPosition]);
+        mNextScrollPosition ^= 1;
+        mAlgorithm.getStackScrollState(mAmbientState, mState, mScrollRange);
+        return mNextScrollPosition;
+    }
+
+    @Benchmark
+    public int layoutPass() {
+        return layout();
+    }
+
+    @Benchmark
+    public StackScrollState resetViewStates() {
+        mState.resetViewStates();
+        return mState;
+    }
+
+    @Benchmark
+    public StackScrollState layoutAndApply() {
+        layout();
+        mState.apply();
+        return mState;
+    }
+
+    @Benchmark
+    public StackChild findChildAt() {
+        // the pass of the setup is still in the index, look up a position in the viewport
+        mNextHitPosition = (mNextHitPosition + 97) % BenchmarkHost.LAYOUT_HEIGHT;
+        return mAlgorithm.getPositionIndex().findChildAt(mNextHitPosition);
+    }
+
+    @Benchmark
+    public StackScrollState applyAll() {
+        mState.markAllDirty();
+        mState.apply();
+        return mState;
+    }
+}
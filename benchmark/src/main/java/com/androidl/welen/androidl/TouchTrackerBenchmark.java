@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.androidl.welen.androidl;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks one frame of a drag on a {@link TouchTracker}: the samples the touch panel batched
+ * since the last frame, the resampled position and the velocity a fling would start with.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms512m", "-Xmx512m", "-XX:+UseSerialGC"})
+public class TouchTrackerBenchmark {
+
+    private static final long FRAME_INTERVAL = 16;
+
+    /**
+     * The rate of the touch panel in samples per second.
+     */
+    @Param({"60", "120", "240"})
+    public int sampleRate;
+
+    private TouchTracker mTracker;
+    private long mTime;
+    private long mFrameTime;
+
+    @Setup
+    public void setUp() {
+        mTracker = new TouchTracker();
+        mTime = 0;
+        mFrameTime = 0;
+    }
+
+    @Benchmark
+    public float frame() {
+        mFrameTime += FRAME_INTERVAL;
+        long interval = Math.max(1, 1000 / sampleRate);
+        for (; mTime < mFrameTime; mTime += interval) {
+            mTracker.addSample(mTime, mTime * 0.5f, (mTime % 4000) * 2f);
+        }
+        mTracker.resample(mFrameTime - 5);
+        mTracker.computeCurrentVelocity(1000, Float.MAX_VALUE);
+        return mTracker.getResampledY() + mTracker.getYVelocity();
+    }
+}
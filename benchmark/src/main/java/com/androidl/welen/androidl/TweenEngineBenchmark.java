@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.androidl.welen.androidl;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks one frame of a {@link StackTweenEngine} animating the translation, scale and alpha
+ * of every child. All tweens are started again once they finished.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms512m", "-Xmx512m", "-XX:+UseSerialGC"})
+public class TweenEngineBenchmark implements StackTweenEngine.FrameScheduler,
+        StackTweenEngine.Listener {
+
+    private static final long SEED = 0x5eedL;
+    private static final long FRAME_INTERVAL = 16;
+
+    @Param({"10", "100", "1000"})
+    public int childCount;
+
+    private StackTweenEngine mEngine;
+    private BenchmarkChild[] mChildren;
+    private long mFrameTime;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(SEED);
+        mEngine = new StackTweenEngine(this, this);
+        mChildren = new BenchmarkChild[childCount];
+        for (int i = 0; i < childCount; i++) {
+            mChildren[i] = new BenchmarkChild(100 + random.nextInt(200), false);
+        }
+        mFrameTime = 0;
+        startTweens();
+    }
+
+    @Benchmark
+    public int frame() {
+        if (mEngine.getActiveCount() == 0) {
+            startTweens();
+        }
+        mFrameTime += FRAME_INTERVAL;
+        mEngine.doFrame(mFrameTime);
+        return mEngine.getActiveCount();
+    }
+
+    private void startTweens() {
+        for (int i = 0; i < childCount; i++) {
+            BenchmarkChild child = mChildren[i];
+            long delay = (i % 3) * AnimationEvent.ANIMATION_DURATION_STANDARD / 10;
+            mEngine.start(child, StackTweenEngine.PROPERTY_Y_TRANSLATION,
+                    child.getTranslationY(), i * 64 - child.getTranslationY(),
+                    AnimationEvent.ANIMATION_DURATION_STANDARD, delay,
+                    StackTweenEngine.INTERPOLATOR_DECELERATE);
+            mEngine.start(child, StackTweenEngine.PROPERTY_SCALE, child.getScaleX(),
+                    child.getScaleX() == 1f ? 0.9f : 1f,
+                    AnimationEvent.ANIMATION_DURATION_STANDARD, 0,
+                    StackTweenEngine.INTERPOLATOR_DECELERATE);
+            mEngine.start(child, StackTweenEngine.PROPERTY_ALPHA, child.getAlpha(),
+                    child.getAlpha() == 1f ? 0.5f : 1f,
+                    AnimationEvent.ANIMATION_DURATION_STANDARD, delay,
+                    StackTweenEngine.INTERPOLATOR_DECELERATE);
+        }
+    }
+
+    @Override
+    public void scheduleFrame() {
+    }
+
+    @Override
+    public void onTweenEnd(StackChild child, int property, float endValue, boolean cancelled) {
+    }
+
+    @Override
+    public void onAllTweensFinished() {
+    }
+}
@@ -16,9 +16,6 @@
 
 package com.androidl.welen.androidl;
 
-import android.view.View;
-
-
 import java.util.ArrayList;
 
 /**
@@ -26,10 +23,13 @@ import java.util.ArrayList;
  * 目前会保留当前滑动的view,滑动距离,上下滑动超出距离
  */
 public class AmbientState {
-    private ArrayList<View> mDraggedViews = new ArrayList<View>();
+    private ArrayList<StackChild> mDraggedViews = new ArrayList<StackChild>();
     private int mScrollY;
     private float mOverScrollTopAmount;
     private float mOverScrollBottomAmount;
+    private int mFirstChildPosition;
+    private HeightIndex mHeightIndex;
+    private int mFirstChildIndex;
 
     public int getScrollY() {
         return mScrollY;
@@ -39,15 +39,46 @@ public class AmbientState {
         this.mScrollY = scrollY;
     }
 
-    public void onBeginDrag(View view) {
+    /**
+     * @return the linear layout position of the first child attached to the host. This is not 0
+     *         when rows before it are only kept as records by a {@link NotificationRecycler}.
+     */
+    public int getFirstChildPosition() {
+        return mFirstChildPosition;
+    }
+
+    public void setFirstChildPosition(int firstChildPosition) {
+        mFirstChildPosition = firstChildPosition;
+    }
+
+    /**
+     * @return the height index over the children, or null if there is none
+     */
+    public HeightIndex getHeightIndex() {
+        return mHeightIndex;
+    }
+
+    /**
+     * @return the entry of the first child in the {@link #getHeightIndex() height index}
+     */
+    public int getFirstChildIndex() {
+        return mFirstChildIndex;
+    }
+
+    public void setHeightIndex(HeightIndex heightIndex, int firstChildIndex) {
+        mHeightIndex = heightIndex;
+        mFirstChildIndex = firstChildIndex;
+    }
+
+    public void onBeginDrag(StackChild view) {
         mDraggedViews.add(view);
     }
 
-    public void onDragFinished(View view) {
+    public void onDragFinished(StackChild view) {
         mDraggedViews.remove(view);
     }
 
-    public ArrayList<View> getDraggedViews() {
+    public ArrayList<StackChild> getDraggedViews() {
         return mDraggedViews;
     }
 
@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.androidl.welen.androidl;
+
+/**
+ * Decides when the stack gives up animating children and snaps them to their final state
+ * instead. A child is snapped when
+ * <ul>
+ *     <li>it is outside of the viewport before and after the change,</li>
+ *     <li>too many property animations are running already, or</li>
+ *     <li>the last frames exceeded the frame budget, then every child of the following passes is
+ *     snapped for a while.</li>
+ * </ul>
+ * Each rule can be switched off through its setter.
+ */
+public class AnimationDegradationPolicy {
+
+    public static final int DEFAULT_MAX_RUNNING_ANIMATIONS = 150;
+    public static final long DEFAULT_FRAME_BUDGET_NANOS = 32000000L;
+    public static final int DEFAULT_OVER_BUDGET_FRAMES = 3;
+    public static final long DEFAULT_INSTANT_APPLY_NANOS = 1000000000L;
+
+    private boolean mSkipOffscreen = true;
+    private int mMaxRunningAnimations = DEFAULT_MAX_RUNNING_ANIMATIONS;
+    private long mFrameBudgetNanos = DEFAULT_FRAME_BUDGET_NANOS;
+    private int mOverBudgetFrames = DEFAULT_OVER_BUDGET_FRAMES;
+    private long mInstantApplyNanos = DEFAULT_INSTANT_APPLY_NANOS;
+
+    private long mLastFrameTimeNanos = -1;
+    private int mSlowFrames;
+    private long mInstantApplyUntilNanos = Long.MIN_VALUE;
+    private int mSnappedChildCount;
+
+    /**
+     * @return a policy which animates every child
+     */
+    public static AnimationDegradationPolicy createDisabled() {
+        return new AnimationDegradationPolicy()
+                .setSkipOffscreen(false)
+                .setMaxRunningAnimations(Integer.MAX_VALUE)
+                .setFrameBudgetNanos(Long.MAX_VALUE);
+    }
+
+    /**
+     * Snap children which are outside of the viewport before and after the change.
+     */
+    public AnimationDegradationPolicy setSkipOffscreen(boolean skipOffscreen) {
+        mSkipOffscreen = skipOffscreen;
+        return this;
+    }
+
+    /**
+     * Snap children once this many property animations are running.
+     */
+    public AnimationDegradationPolicy setMaxRunningAnimations(int maxRunningAnimations) {
+        mMaxRunningAnimations = maxRunningAnimations;
+        return this;
+    }
+
+    /**
+     * Snap all children for instantApplyNanos once overBudgetFrames frames in a row took longer
+     * than frameBudgetNanos.
+     */
+    public AnimationDegradationPolicy setFrameBudgetNanos(long frameBudgetNanos) {
+        mFrameBudgetNanos = frameBudgetNanos;
+        return this;
+    }
+
+    public AnimationDegradationPolicy setOverBudgetFrames(int overBudgetFrames) {
+        mOverBudgetFrames = overBudgetFrames;
+        return this;
+    }
+
+    public AnimationDegradationPolicy setInstantApplyNanos(long instantApplyNanos) {
+        mInstantApplyNanos = instantApplyNanos;
+        return this;
+    }
+
+    /**
+     * Report an animation frame.
+     *
+     * @param frameTimeNanos the time of the frame in the System.nanoTime() time base
+     */
+    public void onFrame(long frameTimeNanos) {
+        if (mLastFrameTimeNanos >= 0 && frameTimeNanos - mLastFrameTimeNanos > mFrameBudgetNanos) {
+            mSlowFrames++;
+            if (mSlowFrames >= mOverBudgetFrames) {
+                mInstantApplyUntilNanos = frameTimeNanos + mInstantApplyNanos;
+                mSlowFrames = 0;
+            }
+        } else {
+            mSlowFrames = 0;
+        }
+        mLastFrameTimeNanos = frameTimeNanos;
+    }
+
+    /**
+     * Report that no animation is running anymore, the next frame starts a new measurement.
+     */
+    public void onIdle() {
+        mLastFrameTimeNanos = -1;
+        mSlowFrames = 0;
+    }
+
+    /**
+     * @return whether all children of a pass starting now should be snapped
+     */
+    public boolean isInstantApply(long nowNanos) {
+        return nowNanos < mInstantApplyUntilNanos;
+    }
+
+    /**
+     * @param fromTop the current top of the child on screen, its layout top plus its translation
+     * @param toTop the top of the child on screen once it reached its state
+     * @return whether a child moving from one position to another is outside of the viewport at
+     *         both of them and may be snapped
+     */
+    public boolean isOffscreen(float fromTop, float toTop, int height, int viewportHeight) {
+        if (!mSkipOffscreen) {
+            return false;
+        }
+        return isOutside(fromTop, height, viewportHeight)
+                && isOutside(toTop, height, viewportHeight);
+    }
+
+    private static boolean isOutside(float top, int height, int viewportHeight) {
+        return top + height <= 0 || top >= viewportHeight;
+    }
+
+    /**
+     * @return whether another animation may be started while the given number is running
+     */
+    public boolean canStartAnimation(int runningAnimations) {
+        return runningAnimations < mMaxRunningAnimations;
+    }
+
+    void onChildSnapped() {
+        mSnappedChildCount++;
+    }
+
+    /**
+     * @return the number of children which were snapped instead of animated
+     */
+    public int getSnappedChildCount() {
+        return mSnappedChildCount;
+    }
+}
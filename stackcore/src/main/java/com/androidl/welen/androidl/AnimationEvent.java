@@ -0,0 +1,309 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.androidl.welen.androidl;
+
+import java.util.ArrayList;
+
+/**
+ * An event which triggers an animation of the stack, with the filter and the length of the
+ * animation defined by its type.
+ */
+class AnimationEvent {
+
+    static final int ANIMATION_DURATION_STANDARD = 360;
+    static final int ANIMATION_DURATION_GO_TO_FULL_SHADE = 448;
+    static final int ANIMATION_DURATION_APPEAR_DISAPPEAR = 464;
+    static final int ANIMATION_DURATION_DIMMED_ACTIVATED = 220;
+
+    static AnimationFilter[] FILTERS = new AnimationFilter[] {
+
+            // ANIMATION_TYPE_ADD
+            new AnimationFilter()
+                    .animateAlpha()
+                    .animateHeight()
+                    .animateTopInset()
+                    .animateY()
+                    .animateZ()
+                    .hasDelays(),
+
+            // ANIMATION_TYPE_REMOVE
+            new AnimationFilter()
+                    .animateAlpha()
+                    .animateHeight()
+                    .animateTopInset()
+                    .animateY()
+                    .animateZ()
+                    .hasDelays(),
+
+            // ANIMATION_TYPE_REMOVE_SWIPED_OUT
+            new AnimationFilter()
+                    .animateAlpha()
+                    .animateHeight()
+                    .animateTopInset()
+                    .animateY()
+                    .animateZ()
+                    .hasDelays(),
+
+            // ANIMATION_TYPE_TOP_PADDING_CHANGED
+            new AnimationFilter()
+                    .animateAlpha()
+                    .animateHeight()
+                    .animateTopInset()
+                    .animateY()
+                    .animateDimmed()
+                    .animateScale()
+                    .animateZ(),
+
+            // ANIMATION_TYPE_START_DRAG
+            new AnimationFilter()
+                    .animateAlpha(),
+
+            // ANIMATION_TYPE_SNAP_BACK
+            new AnimationFilter()
+                    .animateAlpha()
+                    .animateHeight(),
+
+            // ANIMATION_TYPE_ACTIVATED_CHILD
+            new AnimationFilter()
+                    .animateScale()
+                    .animateAlpha(),
+
+            // ANIMATION_TYPE_DIMMED
+            new AnimationFilter()
+                    .animateY()
+                    .animateScale()
+                    .animateDimmed(),
+
+            // ANIMATION_TYPE_CHANGE_POSITION
+            new AnimationFilter()
+                    .animateAlpha()
+                    .animateHeight()
+                    .animateTopInset()
+                    .animateY()
+                    .animateZ(),
+
+            // ANIMATION_TYPE_DARK
+            new AnimationFilter()
+                    .animateDark(),
+
+            // ANIMATION_TYPE_GO_TO_FULL_SHADE
+            new AnimationFilter()
+                    .animateAlpha()
+                    .animateHeight()
+                    .animateTopInset()
+                    .animateY()
+                    .animateDimmed()
+                    .animateScale()
+                    .animateZ()
+                    .hasDelays(),
+
+            // ANIMATION_TYPE_HIDE_SENSITIVE
+            new AnimationFilter()
+                    .animateHideSensitive(),
+
+            // ANIMATION_TYPE_VIEW_RESIZE
+            new AnimationFilter()
+                    .animateAlpha()
+                    .animateHeight()
+                    .animateTopInset()
+                    .animateY()
+                    .animateZ(),
+
+            // ANIMATION_TYPE_EVERYTHING
+            new AnimationFilter()
+                    .animateAlpha()
+                    .animateDark()
+                    .animateScale()
+                    .animateDimmed()
+                    .animateHideSensitive()
+                    .animateHeight()
+                    .animateTopInset()
+                    .animateY()
+                    .animateZ(),
+    };
+
+    static int[] LENGTHS = new int[] {
+
+            // ANIMATION_TYPE_ADD
+            ANIMATION_DURATION_APPEAR_DISAPPEAR,
+
+            // ANIMATION_TYPE_REMOVE
+            ANIMATION_DURATION_APPEAR_DISAPPEAR,
+
+            // ANIMATION_TYPE_REMOVE_SWIPED_OUT
+            ANIMATION_DURATION_STANDARD,
+
+            // ANIMATION_TYPE_TOP_PADDING_CHANGED
+            ANIMATION_DURATION_STANDARD,
+
+            // ANIMATION_TYPE_START_DRAG
+            ANIMATION_DURATION_STANDARD,
+
+            // ANIMATION_TYPE_SNAP_BACK
+            ANIMATION_DURATION_STANDARD,
+
+            // ANIMATION_TYPE_ACTIVATED_CHILD
+            ANIMATION_DURATION_DIMMED_ACTIVATED,
+
+            // ANIMATION_TYPE_DIMMED
+            ANIMATION_DURATION_DIMMED_ACTIVATED,
+
+            // ANIMATION_TYPE_CHANGE_POSITION
+            ANIMATION_DURATION_STANDARD,
+
+            // ANIMATION_TYPE_DARK
+            ANIMATION_DURATION_STANDARD,
+
+            // ANIMATION_TYPE_GO_TO_FULL_SHADE
+            ANIMATION_DURATION_GO_TO_FULL_SHADE,
+
+            // ANIMATION_TYPE_HIDE_SENSITIVE
+            ANIMATION_DURATION_STANDARD,
+
+            // ANIMATION_TYPE_VIEW_RESIZE
+            ANIMATION_DURATION_STANDARD,
+
+            // ANIMATION_TYPE_EVERYTHING
+            ANIMATION_DURATION_STANDARD,
+    };
+
+    static final int ANIMATION_TYPE_ADD = 0;
+    static final int ANIMATION_TYPE_REMOVE = 1;
+    static final int ANIMATION_TYPE_REMOVE_SWIPED_OUT = 2;
+    static final int ANIMATION_TYPE_TOP_PADDING_CHANGED = 3;
+    static final int ANIMATION_TYPE_START_DRAG = 4;
+    static final int ANIMATION_TYPE_SNAP_BACK = 5;
+    static final int ANIMATION_TYPE_CHANGE_POSITION = 8;
+    static final int ANIMATION_TYPE_VIEW_RESIZE = 12;
+    static final int ANIMATION_TYPE_EVERYTHING = 13;
+
+    /**
+     * The combined filter flags and lengths of every set of event types. A set is a bit per type,
+     * the tables are split into the lower and the upper {@link #TYPE_TABLE_BITS} types so each
+     * half only needs 128 entries.
+     */
+    private static final int TYPE_TABLE_BITS = 7;
+    private static final int TYPE_TABLE_MASK = (1 << TYPE_TABLE_BITS) - 1;
+    private static final int[] LOW_FILTERS = new int[1 << TYPE_TABLE_BITS];
+    private static final int[] HIGH_FILTERS = new int[1 << TYPE_TABLE_BITS];
+    private static final int[] LOW_LENGTHS = new int[1 << TYPE_TABLE_BITS];
+    private static final int[] HIGH_LENGTHS = new int[1 << TYPE_TABLE_BITS];
+
+    static {
+        fillTypeTables(LOW_FILTERS, LOW_LENGTHS, 0);
+        fillTypeTables(HIGH_FILTERS, HIGH_LENGTHS, TYPE_TABLE_BITS);
+    }
+
+    StackChild changingView;
+    int animationType;
+    AnimationFilter filter;
+    long length;
+    StackChild viewAfterChangingView;
+
+    AnimationEvent(StackChild view, int type) {
+        this(view, type, LENGTHS[type]);
+    }
+
+    AnimationEvent(StackChild view, int type, long length) {
+        set(view, type, length);
+    }
+
+    /**
+     * Reinitialize a pooled event.
+     */
+    void set(StackChild view, int type, long length) {
+        changingView = view;
+        animationType = type;
+        filter = FILTERS[type];
+        this.length = length;
+        viewAfterChangingView = null;
+    }
+
+    /**
+     * @return whether the event was created with a length other than the one of its type
+     */
+    boolean hasCustomLength() {
+        return length != LENGTHS[animationType];
+    }
+
+    /**
+     * @return the set of the types of the events, one bit per type
+     */
+    static int getTypes(ArrayList<AnimationEvent> events) {
+        int types = 0;
+        int size = events.size();
+        for (int i = 0; i < size; i++) {
+            types |= 1 << events.get(i).animationType;
+        }
+        return types;
+    }
+
+    /**
+     * @return the filter flags of a set of event types, combined with or
+     */
+    static int combineFilter(int types) {
+        return LOW_FILTERS[types & TYPE_TABLE_MASK] | HIGH_FILTERS[types >>> TYPE_TABLE_BITS];
+    }
+
+    /**
+     * @return the combined length of a set of event types
+     */
+    static long combineLength(int types) {
+        return Math.max(LOW_LENGTHS[types & TYPE_TABLE_MASK],
+                HIGH_LENGTHS[types >>> TYPE_TABLE_BITS]);
+    }
+
+    /**
+     * Combines the length of several animation events into a single value.
+     *
+     * @param events The events of the lengths to combine.
+     * @return The combined length. Depending on the event types, this might be the maximum of
+     *         all events or the length of a specific event.
+     */
+    static long combineLength(ArrayList<AnimationEvent> events) {
+        int types = 0;
+        long customLength = 0;
+        int size = events.size();
+        for (int i = 0; i < size; i++) {
+            AnimationEvent event = events.get(i);
+            if (event.hasCustomLength()) {
+                customLength = Math.max(customLength, event.length);
+            } else {
+                types |= 1 << event.animationType;
+            }
+        }
+        return Math.max(combineLength(types), customLength);
+    }
+
+    /**
+     * Fill the tables of all sets of the {@link #TYPE_TABLE_BITS} types starting at firstType.
+     * Every set extends the set without its lowest type, so each entry is a single or and max.
+     */
+    private static void fillTypeTables(int[] filters, int[] lengths, int firstType) {
+        for (int set = 1; set < filters.length; set++) {
+            int type = firstType + Integer.numberOfTrailingZeros(set);
+            int rest = set & (set - 1);
+            if (type < FILTERS.length) {
+                filters[set] = filters[rest] | FILTERS[type].flags;
+                lengths[set] = Math.max(lengths[rest], LENGTHS[type]);
+            } else {
+                filters[set] = filters[rest];
+                lengths[set] = lengths[rest];
+            }
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.androidl.welen.androidl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Merges the redundant {@link AnimationEvent}s of one animation pass and pools the event objects.
+ * Within a pass
+ * <ul>
+ *     <li>an event is only kept once per view and type, and global events once per type,</li>
+ *     <li>a view which was removed and added again is only added, the remove animation would
+ *     run on a view which is attached again,</li>
+ *     <li>position changes of added or removed views and drag or snap back events of removed
+ *     views are dropped,</li>
+ *     <li>view resize and top padding events are dropped when everything is animated.</li>
+ * </ul>
+ * The order of the remaining events is kept.
+ */
+class AnimationEventCoalescer {
+
+    private static final int REMOVE_TYPES = 1 << AnimationEvent.ANIMATION_TYPE_REMOVE
+            | 1 << AnimationEvent.ANIMATION_TYPE_REMOVE_SWIPED_OUT;
+    private static final int ADD_TYPES = 1 << AnimationEvent.ANIMATION_TYPE_ADD;
+    private static final int EVERYTHING_SUBSUMED_TYPES =
+            1 << AnimationEvent.ANIMATION_TYPE_VIEW_RESIZE
+            | 1 << AnimationEvent.ANIMATION_TYPE_TOP_PADDING_CHANGED;
+
+    private final ArrayList<AnimationEvent> mPool = new ArrayList<AnimationEvent>();
+
+    /**
+     * The views of the events of the pass, for each of them the set of its event types and the
+     * set of the types which were kept already.
+     */
+    private final OrderedIdentitySet<StackChild> mViews = new OrderedIdentitySet<StackChild>();
+    private int[] mViewTypes = new int[16];
+    private int[] mKeptViewTypes = new int[16];
+
+    /**
+     * @return a pooled event for the view with the default length of the type
+     */
+    AnimationEvent obtain(StackChild view, int type) {
+        return obtain(view, type, AnimationEvent.LENGTHS[type]);
+    }
+
+    AnimationEvent obtain(StackChild view, int type, long length) {
+        int size = mPool.size();
+        if (size == 0) {
+            return new AnimationEvent(view, type, length);
+        }
+        AnimationEvent event = mPool.remove(size - 1);
+        event.set(view, type, length);
+        return event;
+    }
+
+    /**
+     * Drop the redundant events of a pass from the list and recycle them.
+     */
+    void coalesce(ArrayList<AnimationEvent> events) {
+        int size = events.size();
+        if (size < 2) {
+            return;
+        }
+        int globalTypes = 0;
+        for (int i = 0; i < size; i++) {
+            AnimationEvent event = events.get(i);
+            if (event.changingView == null) {
+                globalTypes |= 1 << event.animationType;
+            } else {
+                mViews.add(event.changingView);
+                int index = mViews.indexOf(event.changingView);
+                if (index >= mViewTypes.length) {
+                    mViewTypes = Arrays.copyOf(mViewTypes, mViewTypes.length * 2);
+                    mKeptViewTypes = Arrays.copyOf(mKeptViewTypes, mViewTypes.length);
+                }
+                mViewTypes[index] |= 1 << event.animationType;
+            }
+        }
+
+        int seenGlobalTypes = 0;
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            AnimationEvent event = events.get(i);
+            int type = 1 << event.animationType;
+            boolean keep;
+            if (event.changingView == null) {
+                keep = (seenGlobalTypes & type) == 0;
+                if ((globalTypes & 1 << AnimationEvent.ANIMATION_TYPE_EVERYTHING) != 0
+                        && (EVERYTHING_SUBSUMED_TYPES & type) != 0) {
+                    keep = false;
+                }
+                seenGlobalTypes |= type;
+            } else {
+                int index = mViews.indexOf(event.changingView);
+                keep = (mKeptViewTypes[index] & type) == 0
+                        && isKept(event.animationType, mViewTypes[index]);
+                mKeptViewTypes[index] |= type;
+            }
+            if (keep) {
+                events.set(kept++, event);
+            } else {
+                recycle(event);
+            }
+        }
+        for (int i = size - 1; i >= kept; i--) {
+            events.remove(i);
+        }
+        Arrays.fill(mViewTypes, 0, mViews.size(), 0);
+        Arrays.fill(mKeptViewTypes, 0, mViews.size(), 0);
+        mViews.clear();
+    }
+
+    /**
+     * Recycle all events of the list and clear it. The events must not be used afterwards.
+     */
+    void recycle(ArrayList<AnimationEvent> events) {
+        int size = events.size();
+        for (int i = 0; i < size; i++) {
+            recycle(events.get(i));
+        }
+        events.clear();
+    }
+
+    private void recycle(AnimationEvent event) {
+        event.changingView = null;
+        event.viewAfterChangingView = null;
+        mPool.add(event);
+    }
+
+    /**
+     * @return whether an event of the type is kept for a view with all the given event types
+     */
+    private static boolean isKept(int animationType, int viewTypes) {
+        switch (animationType) {
+            case AnimationEvent.ANIMATION_TYPE_REMOVE:
+            case AnimationEvent.ANIMATION_TYPE_REMOVE_SWIPED_OUT:
+                return (viewTypes & ADD_TYPES) == 0;
+            case AnimationEvent.ANIMATION_TYPE_CHANGE_POSITION:
+                return (viewTypes & (ADD_TYPES | REMOVE_TYPES)) == 0;
+            case AnimationEvent.ANIMATION_TYPE_START_DRAG:
+            case AnimationEvent.ANIMATION_TYPE_SNAP_BACK:
+                return (viewTypes & REMOVE_TYPES) == 0;
+            default:
+                return true;
+        }
+    }
+}
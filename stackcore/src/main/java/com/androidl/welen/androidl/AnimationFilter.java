@@ -19,106 +19,95 @@ package com.androidl.welen.androidl;
 import java.util.ArrayList;
 
 /**
- * Filters the animations for only a certain type of properties.
+ * Filters the animations for only a certain type of properties. The properties are kept as bits
+ * of one int, so filters combine with a single or.
  */
 public class AnimationFilter {
-    boolean animateAlpha;
-    boolean animateY;
-    boolean animateZ;
-    boolean animateScale;
-    boolean animateHeight;
-    boolean animateTopInset;
-    boolean animateDimmed;
-    boolean animateDark;
-    boolean animateHideSensitive;
-    boolean hasDelays;
+    static final int ANIMATE_ALPHA = 1;
+    static final int ANIMATE_Y = 1 << 1;
+    static final int ANIMATE_Z = 1 << 2;
+    static final int ANIMATE_SCALE = 1 << 3;
+    static final int ANIMATE_HEIGHT = 1 << 4;
+    static final int ANIMATE_TOP_INSET = 1 << 5;
+    static final int ANIMATE_DIMMED = 1 << 6;
+    static final int ANIMATE_DARK = 1 << 7;
+    static final int ANIMATE_HIDE_SENSITIVE = 1 << 8;
+    static final int HAS_DELAYS = 1 << 9;
+
+    int flags;
 
     public AnimationFilter animateAlpha() {
-        animateAlpha = true;
+        flags |= ANIMATE_ALPHA;
         return this;
     }
 
     public AnimationFilter animateY() {
-        animateY = true;
+        flags |= ANIMATE_Y;
         return this;
     }
 
     public AnimationFilter hasDelays() {
-        hasDelays = true;
+        flags |= HAS_DELAYS;
         return this;
     }
 
     public AnimationFilter animateZ() {
-        animateZ = true;
+        flags |= ANIMATE_Z;
         return this;
     }
 
     public AnimationFilter animateScale() {
-        animateScale = true;
+        flags |= ANIMATE_SCALE;
         return this;
     }
 
     public AnimationFilter animateHeight() {
-        animateHeight = true;
+        flags |= ANIMATE_HEIGHT;
         return this;
     }
 
     public AnimationFilter animateTopInset() {
-        animateTopInset = true;
+        flags |= ANIMATE_TOP_INSET;
         return this;
     }
 
     public AnimationFilter animateDimmed() {
-        animateDimmed = true;
+        flags |= ANIMATE_DIMMED;
         return this;
     }
 
     public AnimationFilter animateDark() {
-        animateDark = true;
+        flags |= ANIMATE_DARK;
         return this;
     }
 
     public AnimationFilter animateHideSensitive() {
-        animateHideSensitive = true;
+        flags |= ANIMATE_HIDE_SENSITIVE;
         return this;
     }
 
+    /**
+     * @return whether all of the given flags are set
+     */
+    boolean has(int flag) {
+        return (flags & flag) == flag;
+    }
+
     /**
      * Combines multiple filters into {@code this} filter, using or as the operand .
      *
      * @param events The animation events from the filters to combine.
      */
-    public void applyCombination(ArrayList<NotificationScrollLayout.AnimationEvent> events) {
-        reset();
-        int size = events.size();
-        for (int i = 0; i < size; i++) {
-            combineFilter(events.get(i).filter);
-        }
+    public void applyCombination(ArrayList<AnimationEvent> events) {
+        applyCombination(AnimationEvent.getTypes(events));
     }
 
-    private void combineFilter(AnimationFilter filter) {
-        animateAlpha |= filter.animateAlpha;
-        animateY |= filter.animateY;
-        animateZ |= filter.animateZ;
-        animateScale |= filter.animateScale;
-        animateHeight |= filter.animateHeight;
-        animateTopInset |= filter.animateTopInset;
-        animateDimmed |= filter.animateDimmed;
-        animateDark |= filter.animateDark;
-        animateHideSensitive |= filter.animateHideSensitive;
-        hasDelays |= filter.hasDelays;
-    }
-
-    private void reset() {
-        animateAlpha = false;
-        animateY = false;
-        animateZ = false;
-        animateScale = false;
-        animateHeight = false;
-        animateTopInset = false;
-        animateDimmed = false;
-        animateDark = false;
-        animateHideSensitive = false;
-        hasDelays = false;
+    /**
+     * Replaces {@code this} filter with the combined filter of a set of event types.
+     *
+     * @param eventTypes the event types as returned by {@link AnimationEvent#getTypes}
+     */
+    public void applyCombination(int eventTypes) {
+        flags = AnimationEvent.combineFilter(eventTypes);
     }
 }
@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.androidl.welen.androidl;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Computes the layout of {@link StackLayoutModel}s on a worker and publishes the results on
+ * another executor, usually the UI thread. Every model carries a version, only the result of the
+ * latest version is published and everything older is dropped, both before it is computed and
+ * before it is published.
+ */
+public class BackgroundStackLayout {
+
+    public interface Callback {
+
+        /**
+         * Called on the publishing executor with the result of the latest version.
+         */
+        void onLayoutComputed(StackLayoutResult result);
+    }
+
+    private final Executor mWorker;
+    private final Executor mPublisher;
+    private final Callback mCallback;
+    private final AtomicInteger mVersion = new AtomicInteger();
+
+    public BackgroundStackLayout(Executor worker, Executor publisher, Callback callback) {
+        mWorker = worker;
+        mPublisher = publisher;
+        mCallback = callback;
+    }
+
+    /**
+     * @return the version for the next model, which makes all earlier versions stale
+     */
+    public int nextVersion() {
+        return mVersion.incrementAndGet();
+    }
+
+    /**
+     * Make all submitted models stale, for when the layout is computed synchronously instead.
+     */
+    public void invalidate() {
+        mVersion.incrementAndGet();
+    }
+
+    public boolean isLatest(int version) {
+        return mVersion.get() == version;
+    }
+
+    public void submit(final StackLayoutModel model) {
+        mWorker.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (!isLatest(model.version)) {
+                    return;
+                }
+                final StackLayoutResult result = model.compute();
+                mPublisher.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (isLatest(result.getVersion())) {
+                            mCallback.onLayoutComputed(result);
+                        }
+                    }
+                });
+            }
+        });
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.androidl.welen.androidl;
+
+import java.util.Arrays;
+
+/**
+ * Computes the staggered start delays of the children of an animation pass in one sweep over
+ * the not gone indices, instead of visiting every event for every child.
+ *
+ * A child close to an inserted child starts late, up to {@link #MAX_INDEX_DIFFERENCE} children
+ * away. A child far from a removed child starts late, the delay grows with the distance to the
+ * child after the removed one and is capped at the same difference. Since the remove delay only
+ * grows with the distance, the largest one of all removes is the one of the farthest removal,
+ * so the lowest and highest removal index per delay per element are enough.
+ */
+class CascadeDelays {
+
+    static final int MAX_INDEX_DIFFERENCE = 2;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final long mInsertDelayPerElement;
+    private boolean[] mInserted = new boolean[INITIAL_CAPACITY];
+    private int mInsertedEnd;
+    private boolean mHasInsertions;
+
+    /**
+     * The removals, grouped by their delay per element. Only the lowest and highest index of the
+     * child after the removed one are kept for each group.
+     */
+    private long[] mRemoveDelayPerElement = new long[2];
+    private int[] mRemoveMinIndex = new int[2];
+    private int[] mRemoveMaxIndex = new int[2];
+    private int mRemoveGroupCount;
+
+    private long[] mDelays = new long[INITIAL_CAPACITY];
+    private int mDelayCount;
+
+    CascadeDelays(long insertDelayPerElement) {
+        mInsertDelayPerElement = insertDelayPerElement;
+    }
+
+    void reset() {
+        Arrays.fill(mInserted, 0, mInsertedEnd, false);
+        mInsertedEnd = 0;
+        mHasInsertions = false;
+        mRemoveGroupCount = 0;
+        mDelayCount = 0;
+    }
+
+    /**
+     * @param notGoneIndex the index of the inserted child
+     */
+    void addInsertion(int notGoneIndex) {
+        if (notGoneIndex < 0) {
+            return;
+        }
+        if (notGoneIndex >= mInserted.length) {
+            mInserted = Arrays.copyOf(mInserted, Math.max(notGoneIndex + 1,
+                    mInserted.length * 2));
+        }
+        mInserted[notGoneIndex] = true;
+        mInsertedEnd = Math.max(mInsertedEnd, notGoneIndex + 1);
+        mHasInsertions = true;
+    }
+
+    /**
+     * @param nextNotGoneIndex the index of the child after the removed one
+     * @param delayPerElement the delay per child of the distance
+     */
+    void addRemoval(int nextNotGoneIndex, long delayPerElement) {
+        for (int i = 0; i < mRemoveGroupCount; i++) {
+            if (mRemoveDelayPerElement[i] == delayPerElement) {
+                mRemoveMinIndex[i] = Math.min(mRemoveMinIndex[i], nextNotGoneIndex);
+                mRemoveMaxIndex[i] = Math.max(mRemoveMaxIndex[i], nextNotGoneIndex);
+                return;
+            }
+        }
+        if (mRemoveGroupCount == mRemoveDelayPerElement.length) {
+            int capacity = mRemoveGroupCount * 2;
+            mRemoveDelayPerElement = Arrays.copyOf(mRemoveDelayPerElement, capacity);
+            mRemoveMinIndex = Arrays.copyOf(mRemoveMinIndex, capacity);
+            mRemoveMaxIndex = Arrays.copyOf(mRemoveMaxIndex, capacity);
+        }
+        mRemoveDelayPerElement[mRemoveGroupCount] = delayPerElement;
+        mRemoveMinIndex[mRemoveGroupCount] = nextNotGoneIndex;
+        mRemoveMaxIndex[mRemoveGroupCount] = nextNotGoneIndex;
+        mRemoveGroupCount++;
+    }
+
+    /**
+     * Compute the delays of the children with the not gone indices below count.
+     */
+    void compute(int count) {
+        if (count > mDelays.length) {
+            mDelays = new long[Math.max(count, mDelays.length * 2)];
+        }
+        mDelayCount = count;
+        for (int i = 0; i < count; i++) {
+            mDelays[i] = calculateDelay(i);
+        }
+    }
+
+    /**
+     * @return the delay of the child with the given not gone index
+     */
+    long getDelay(int notGoneIndex) {
+        if (notGoneIndex >= 0 && notGoneIndex < mDelayCount) {
+            return mDelays[notGoneIndex];
+        }
+        return calculateDelay(notGoneIndex);
+    }
+
+    private long calculateDelay(int ownIndex) {
+        long delay = 0;
+        if (mHasInsertions) {
+            int distance = getInsertionDistance(ownIndex);
+            if (distance <= MAX_INDEX_DIFFERENCE) {
+                int difference = Math.max(0, distance - 1);
+                delay = (MAX_INDEX_DIFFERENCE - difference) * mInsertDelayPerElement;
+            }
+        }
+        for (int i = 0; i < mRemoveGroupCount; i++) {
+            int difference = Math.max(getRemovalDifference(ownIndex, mRemoveMinIndex[i]),
+                    getRemovalDifference(ownIndex, mRemoveMaxIndex[i]));
+            delay = Math.max(delay, difference * mRemoveDelayPerElement[i]);
+        }
+        return delay;
+    }
+
+    /**
+     * @return the distance to the closest insertion, or more than {@link #MAX_INDEX_DIFFERENCE}
+     */
+    private int getInsertionDistance(int ownIndex) {
+        for (int distance = 0; distance <= MAX_INDEX_DIFFERENCE; distance++) {
+            if (isInserted(ownIndex - distance) || isInserted(ownIndex + distance)) {
+                return distance;
+            }
+        }
+        return MAX_INDEX_DIFFERENCE + 1;
+    }
+
+    private boolean isInserted(int index) {
+        return index >= 0 && index < mInsertedEnd && mInserted[index];
+    }
+
+    private static int getRemovalDifference(int ownIndex, int nextIndex) {
+        if (ownIndex >= nextIndex) {
+            // we only have the view afterwards
+            ownIndex++;
+        }
+        int difference = Math.abs(ownIndex - nextIndex);
+        return Math.max(0, Math.min(MAX_INDEX_DIFFERENCE, difference - 1));
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.androidl.welen.androidl;
+
+/**
+ * A fling whose velocity decays exponentially, v(t) = v0 * e^(-friction * t), until it drops
+ * below a rest velocity. It glides longer than the {@link SplineFlingCurve} for the same
+ * velocity, with a softer stop.
+ */
+public class ExponentialFlingCurve implements FlingCurve {
+
+    public static final float DEFAULT_FRICTION = 4.2f;
+    public static final float DEFAULT_REST_VELOCITY = 50f;
+
+    /**
+     * The decay rate per second.
+     */
+    private final float mFriction;
+    private final float mRestVelocity;
+
+    /**
+     * @param friction the decay rate of the velocity per second
+     * @param restVelocity the velocity in pixels per second below which the fling ends
+     */
+    public ExponentialFlingCurve(float friction, float restVelocity) {
+        mFriction = friction;
+        mRestVelocity = restVelocity;
+    }
+
+    @Override
+    public long getDuration(float velocity) {
+        float speed = Math.abs(velocity);
+        if (speed <= mRestVelocity) {
+            return 0;
+        }
+        return (long) (1000.0 * Math.log(speed / mRestVelocity) / mFriction);
+    }
+
+    @Override
+    public float getDistance(float velocity) {
+        return getOffset(velocity, getDuration(velocity));
+    }
+
+    @Override
+    public float getOffset(float velocity, long time) {
+        time = Math.min(time, getDuration(velocity));
+        return (float) (velocity / mFriction * (1.0 - Math.exp(-mFriction * time / 1000.0)));
+    }
+
+    @Override
+    public float getVelocity(float velocity, long time) {
+        if (time >= getDuration(velocity)) {
+            return 0;
+        }
+        return (float) (velocity * Math.exp(-mFriction * time / 1000.0));
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.androidl.welen.androidl;
+
+/**
+ * How a fling decelerates until it comes to rest, as a function of its initial velocity. The
+ * velocities are in pixels per second and signed, the times are in milliseconds since the start
+ * of the fling. A curve has no state, the {@link PhysicsScroller} keeps the fling.
+ */
+public interface FlingCurve {
+
+    /**
+     * @return the time until a fling with this initial velocity comes to rest
+     */
+    long getDuration(float velocity);
+
+    /**
+     * @return the distance a fling with this initial velocity travels until it comes to rest,
+     *         with the sign of the velocity
+     */
+    float getDistance(float velocity);
+
+    /**
+     * @return the distance traveled at the given time, which is clamped to the duration
+     */
+    float getOffset(float velocity, long time);
+
+    /**
+     * @return the velocity at the given time, 0 once the fling came to rest
+     */
+    float getVelocity(float velocity, long time);
+}
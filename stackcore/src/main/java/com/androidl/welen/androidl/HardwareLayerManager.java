@@ -0,0 +1,315 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.androidl.welen.androidl;
+
+import java.util.Arrays;
+
+/**
+ * Decides which children get a hardware layer while their alpha changes. Every user of a layer
+ * is an owner bit, so the stack state, the alpha animation and a swipe of the same child share
+ * one layer and acquiring or releasing twice has no effect.
+ *
+ * A child is only promoted if it renders overlapping content, the change lasts at least
+ * {@link #setMinDuration(long) the minimum duration} and the layer fits into
+ * {@link #setMaxLayerBytes(long) the memory budget}. A layer without owners is kept for
+ * {@link #setLingerDuration(long) a short while}, so consecutive animations of the same child
+ * reuse it, and dropped when trimmed or when its memory is needed.
+ *
+ * Records are found through {@link StackChild#getLayerSlot()}.
+ */
+public class HardwareLayerManager {
+
+    public static final int OWNER_STATE = 1;
+    public static final int OWNER_ALPHA_ANIMATION = 1 << 1;
+    public static final int OWNER_SWIPE = 1 << 2;
+
+    /**
+     * The duration of a change which lasts until the owner releases the layer.
+     */
+    public static final long DURATION_UNTIL_RELEASED = Long.MAX_VALUE;
+
+    public static final long DEFAULT_MIN_DURATION = 100;
+    public static final long DEFAULT_LINGER_DURATION = 250;
+    public static final long DEFAULT_MAX_LAYER_BYTES = 16 * 1024 * 1024;
+
+    private static final int BYTES_PER_PIXEL = 4;
+    private static final int INITIAL_CAPACITY = 16;
+
+    public interface TrimScheduler {
+
+        /**
+         * Call {@link #trim()} after the given delay. A pending call may be replaced.
+         */
+        void scheduleTrim(long delayMillis);
+    }
+
+    private TrimScheduler mTrimScheduler;
+    private long mMinDuration = DEFAULT_MIN_DURATION;
+    private long mLingerDuration = DEFAULT_LINGER_DURATION;
+    private long mMaxLayerBytes = DEFAULT_MAX_LAYER_BYTES;
+
+    private StackChild[] mChildren = new StackChild[INITIAL_CAPACITY];
+    private int[] mOwners = new int[INITIAL_CAPACITY];
+
+    /**
+     * The estimated size of the layer of a record, 0 if it has none.
+     */
+    private long[] mLayerBytes = new long[INITIAL_CAPACITY];
+
+    /**
+     * The time since when the layer of a record has no owner.
+     */
+    private long[] mReleaseTimes = new long[INITIAL_CAPACITY];
+    private int mRecordCount;
+    private int[] mFreeRecords = new int[INITIAL_CAPACITY];
+    private int mFreeRecordCount;
+
+    private long mTotalLayerBytes;
+    private int mLayerCount;
+    private int mLingeringCount;
+
+    private int mLayerCreations;
+    private int mLayerReuses;
+    private int mSkippedPromotions;
+    private int mDeniedPromotions;
+
+    public void setTrimScheduler(TrimScheduler trimScheduler) {
+        mTrimScheduler = trimScheduler;
+    }
+
+    /**
+     * Changes shorter than this in milliseconds are not worth the cost of building a layer.
+     */
+    public void setMinDuration(long minDuration) {
+        mMinDuration = minDuration;
+    }
+
+    /**
+     * How long in milliseconds a layer without owners is kept for reuse.
+     */
+    public void setLingerDuration(long lingerDuration) {
+        mLingerDuration = lingerDuration;
+    }
+
+    /**
+     * The estimated memory all layers together may use.
+     */
+    public void setMaxLayerBytes(long maxLayerBytes) {
+        mMaxLayerBytes = maxLayerBytes;
+    }
+
+    /**
+     * Acquire a layer for a change of the alpha of the child.
+     *
+     * @param owner the owner bit of the caller
+     * @param duration the duration of the change in milliseconds
+     * @return whether the child has a layer now
+     */
+    public boolean acquire(StackChild child, int owner, long duration) {
+        int record = getRecord(child);
+        if (record < 0) {
+            record = obtainRecord(child);
+        }
+        if ((mOwners[record] & owner) != 0) {
+            return mLayerBytes[record] > 0;
+        }
+        boolean hadOwners = mOwners[record] != 0;
+        mOwners[record] |= owner;
+        if (mLayerBytes[record] > 0) {
+            if (!hadOwners) {
+                // a lingering layer is reused
+                mLingeringCount--;
+                mLayerReuses++;
+            }
+            return true;
+        }
+        if (duration < mMinDuration || !child.hasOverlappingRendering()) {
+            mSkippedPromotions++;
+            return false;
+        }
+        long bytes = Math.max(1L, (long) child.getWidth() * child.getHeight() * BYTES_PER_PIXEL);
+        if (mTotalLayerBytes + bytes > mMaxLayerBytes) {
+            dropLingeringLayers(Long.MAX_VALUE, mMaxLayerBytes - bytes);
+            if (mTotalLayerBytes + bytes > mMaxLayerBytes) {
+                mDeniedPromotions++;
+                return false;
+            }
+        }
+        child.applyLayerType(StackChild.LAYER_HARDWARE);
+        mLayerBytes[record] = bytes;
+        mTotalLayerBytes += bytes;
+        mLayerCount++;
+        mLayerCreations++;
+        return true;
+    }
+
+    /**
+     * Release the layer of the child for an owner. The layer is kept for a while if no other
+     * owner uses it.
+     */
+    public void release(StackChild child, int owner) {
+        int record = getRecord(child);
+        if (record < 0 || (mOwners[record] & owner) == 0) {
+            return;
+        }
+        mOwners[record] &= ~owner;
+        if (mOwners[record] != 0) {
+            return;
+        }
+        if (mLayerBytes[record] == 0) {
+            freeRecord(record);
+            return;
+        }
+        mReleaseTimes[record] = now();
+        mLingeringCount++;
+        if (mTrimScheduler != null) {
+            mTrimScheduler.scheduleTrim(mLingerDuration);
+        }
+    }
+
+    /**
+     * Drop the layer and all owners of the child right away, e.g. before it is recycled.
+     */
+    public void clear(StackChild child) {
+        int record = getRecord(child);
+        if (record < 0) {
+            return;
+        }
+        if (mLayerBytes[record] > 0 && mOwners[record] == 0) {
+            mLingeringCount--;
+        }
+        mOwners[record] = 0;
+        dropLayer(record);
+    }
+
+    /**
+     * Drop the layers which are without owner for longer than the linger duration.
+     */
+    public void trim() {
+        if (mLingeringCount == 0) {
+            return;
+        }
+        dropLingeringLayers(now() - mLingerDuration, -1);
+        if (mLingeringCount > 0 && mTrimScheduler != null) {
+            mTrimScheduler.scheduleTrim(mLingerDuration);
+        }
+    }
+
+    /**
+     * Drop the lingering layers released before the given time, oldest first, until the total
+     * size is at most maxBytes.
+     */
+    private void dropLingeringLayers(long releasedBefore, long maxBytes) {
+        while (mLingeringCount > 0 && mTotalLayerBytes > maxBytes) {
+            int oldest = -1;
+            for (int i = 0; i < mRecordCount; i++) {
+                if (mChildren[i] != null && mOwners[i] == 0 && mLayerBytes[i] > 0
+                        && (oldest < 0 || mReleaseTimes[i] < mReleaseTimes[oldest])) {
+                    oldest = i;
+                }
+            }
+            if (oldest < 0 || mReleaseTimes[oldest] >= releasedBefore) {
+                return;
+            }
+            mLingeringCount--;
+            dropLayer(oldest);
+        }
+    }
+
+    private void dropLayer(int record) {
+        if (mLayerBytes[record] > 0) {
+            mChildren[record].applyLayerType(StackChild.LAYER_NONE);
+            mTotalLayerBytes -= mLayerBytes[record];
+            mLayerBytes[record] = 0;
+            mLayerCount--;
+        }
+        freeRecord(record);
+    }
+
+    public int getLayerCount() {
+        return mLayerCount;
+    }
+
+    public long getLayerBytes() {
+        return mTotalLayerBytes;
+    }
+
+    /**
+     * @return the number of layers which were built
+     */
+    public int getLayerCreations() {
+        return mLayerCreations;
+    }
+
+    /**
+     * @return the number of times a kept layer was used by a new owner instead of building one
+     */
+    public int getLayerReuses() {
+        return mLayerReuses;
+    }
+
+    /**
+     * @return the number of changes which were too short or did not need a layer
+     */
+    public int getSkippedPromotions() {
+        return mSkippedPromotions;
+    }
+
+    /**
+     * @return the number of layers which did not fit into the memory budget
+     */
+    public int getDeniedPromotions() {
+        return mDeniedPromotions;
+    }
+
+    private int getRecord(StackChild child) {
+        int record = child.getLayerSlot();
+        return record >= 0 && record < mRecordCount && mChildren[record] == child ? record : -1;
+    }
+
+    private int obtainRecord(StackChild child) {
+        int record;
+        if (mFreeRecordCount > 0) {
+            record = mFreeRecords[--mFreeRecordCount];
+        } else {
+            if (mRecordCount == mChildren.length) {
+                int capacity = mRecordCount * 2;
+                mChildren = Arrays.copyOf(mChildren, capacity);
+                mOwners = Arrays.copyOf(mOwners, capacity);
+                mLayerBytes = Arrays.copyOf(mLayerBytes, capacity);
+                mReleaseTimes = Arrays.copyOf(mReleaseTimes, capacity);
+                mFreeRecords = Arrays.copyOf(mFreeRecords, capacity);
+            }
+            record = mRecordCount++;
+        }
+        mChildren[record] = child;
+        mOwners[record] = 0;
+        mLayerBytes[record] = 0;
+        child.setLayerSlot(record);
+        return record;
+    }
+
+    private void freeRecord(int record) {
+        mChildren[record].setLayerSlot(-1);
+        mChildren[record] = null;
+        mFreeRecords[mFreeRecordCount++] = record;
+    }
+
+    private static long now() {
+        return System.nanoTime() / 1000000;
+    }
+}
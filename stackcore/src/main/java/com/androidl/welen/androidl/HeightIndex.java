@@ -0,0 +1,261 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.androidl.welen.androidl;
+
+/**
+ * A prefix sum index over the heights of the entries of a linear stack. Every entry which is not
+ * gone occupies its height plus the padding between elements. Backed by two Fenwick trees, one
+ * over the occupied space and one over the number of entries which are not gone, so the content
+ * height is O(1) and the position of an entry, the entry at a position and a single height change
+ * are O(log n).
+ */
+public class HeightIndex {
+
+    private int mCount;
+    private int mPaddingBetweenElements;
+    private int[] mHeights = new int[0];
+    private boolean[] mGone = new boolean[0];
+
+    /**
+     * Whether the entries are shared with a {@link StackLayoutModel} and have to be copied before
+     * they change.
+     */
+    private boolean mEntriesShared;
+
+    /**
+     * The Fenwick trees, 1-based.
+     */
+    private int[] mSpaceTree = new int[1];
+    private int[] mNotGoneTree = new int[1];
+    private int mTotalSpace;
+    private int mNotGoneCount;
+
+    public void setPaddingBetweenElements(int paddingBetweenElements) {
+        if (mPaddingBetweenElements != paddingBetweenElements) {
+            mPaddingBetweenElements = paddingBetweenElements;
+            rebuild();
+        }
+    }
+
+    public int getPaddingBetweenElements() {
+        return mPaddingBetweenElements;
+    }
+
+    /**
+     * Clear the index and resize it to the given amount of entries, all with a height of zero.
+     * Fill it with {@link #put} and call {@link #rebuild()} afterwards.
+     */
+    public void reset(int count) {
+        if (mHeights.length < count) {
+            int capacity = Math.max(count, mHeights.length * 2);
+            mHeights = new int[capacity];
+            mGone = new boolean[capacity];
+            mSpaceTree = new int[capacity + 1];
+            mNotGoneTree = new int[capacity + 1];
+        } else if (mEntriesShared) {
+            mHeights = new int[mHeights.length];
+            mGone = new boolean[mGone.length];
+        }
+        mEntriesShared = false;
+        mCount = count;
+        for (int i = 0; i < count; i++) {
+            mHeights[i] = 0;
+            mGone[i] = false;
+        }
+        rebuild();
+    }
+
+    /**
+     * Set an entry without updating the trees, used to fill the index in bulk.
+     */
+    public void put(int index, int height, boolean gone) {
+        unshareEntries();
+        mHeights[index] = height;
+        mGone[index] = gone;
+    }
+
+    /**
+     * Build the trees from the entries in O(n).
+     */
+    public void rebuild() {
+        for (int i = 1; i <= mCount; i++) {
+            mSpaceTree[i] = getSpace(i - 1);
+            mNotGoneTree[i] = mGone[i - 1] ? 0 : 1;
+        }
+        mTotalSpace = 0;
+        mNotGoneCount = 0;
+        for (int i = 1; i <= mCount; i++) {
+            mTotalSpace += getSpace(i - 1);
+            mNotGoneCount += mGone[i - 1] ? 0 : 1;
+            int parent = i + (i & -i);
+            if (parent <= mCount) {
+                mSpaceTree[parent] += mSpaceTree[i];
+                mNotGoneTree[parent] += mNotGoneTree[i];
+            }
+        }
+    }
+
+    /**
+     * Update a single entry in O(log n).
+     *
+     * @return whether the entry changed
+     */
+    public boolean update(int index, int height, boolean gone) {
+        if (mHeights[index] == height && mGone[index] == gone) {
+            return false;
+        }
+        unshareEntries();
+        int spaceDelta = -getSpace(index);
+        int notGoneDelta = mGone[index] ? 0 : -1;
+        mHeights[index] = height;
+        mGone[index] = gone;
+        spaceDelta += getSpace(index);
+        notGoneDelta += gone ? 0 : 1;
+        mTotalSpace += spaceDelta;
+        mNotGoneCount += notGoneDelta;
+        for (int i = index + 1; i <= mCount; i += i & -i) {
+            mSpaceTree[i] += spaceDelta;
+            mNotGoneTree[i] += notGoneDelta;
+        }
+        return true;
+    }
+
+    public int getCount() {
+        return mCount;
+    }
+
+    public int getHeight(int index) {
+        return mHeights[index];
+    }
+
+    public boolean isGone(int index) {
+        return mGone[index];
+    }
+
+    public int getNotGoneCount() {
+        return mNotGoneCount;
+    }
+
+    /**
+     * @return the height of all entries which are not gone, including the padding between them
+     */
+    public int getContentHeight() {
+        return mNotGoneCount > 0 ? mTotalSpace - mPaddingBetweenElements : 0;
+    }
+
+    /**
+     * @return the linear layout position of the top of the given entry
+     */
+    public int getPosition(int index) {
+        int result = 0;
+        for (int i = index; i > 0; i -= i & -i) {
+            result += mSpaceTree[i];
+        }
+        return result;
+    }
+
+    /**
+     * @return the number of entries before the given one which are not gone
+     */
+    public int getNotGoneIndex(int index) {
+        int result = 0;
+        for (int i = index; i > 0; i -= i & -i) {
+            result += mNotGoneTree[i];
+        }
+        return result;
+    }
+
+    /**
+     * @return the entry which contains the given linear layout position, clamped to the entries,
+     *         or -1 if the index is empty
+     */
+    public int getIndexAtPosition(int position) {
+        if (mCount == 0) {
+            return -1;
+        }
+        if (position < 0) {
+            return 0;
+        }
+        // descend the tree to the longest prefix whose space still fits into the position
+        int index = 0;
+        int remaining = position;
+        for (int step = Integer.highestOneBit(mCount); step > 0; step >>= 1) {
+            int next = index + step;
+            if (next <= mCount && mSpaceTree[next] <= remaining) {
+                index = next;
+                remaining -= mSpaceTree[next];
+            }
+        }
+        return Math.min(index, mCount - 1);
+    }
+
+    /**
+     * @return the entry which is the given number of not gone entries from the start, the
+     *         inverse of {@link #getNotGoneIndex(int)} for entries which are not gone, or -1 if
+     *         there are not that many not gone entries
+     */
+    public int getIndexOfNotGone(int notGoneIndex) {
+        if (notGoneIndex < 0 || notGoneIndex >= mNotGoneCount) {
+            return -1;
+        }
+        // descend the tree to the longest prefix with exactly notGoneIndex not gone entries
+        int index = 0;
+        int remaining = notGoneIndex;
+        for (int step = Integer.highestOneBit(mCount); step > 0; step >>= 1) {
+            int next = index + step;
+            if (next <= mCount && mNotGoneTree[next] <= remaining) {
+                index = next;
+                remaining -= mNotGoneTree[next];
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Hand the entries to a {@link StackLayoutModel} without copying them, the next change
+     * copies them instead. Read them with {@link #getHeights()} and {@link #getGoneFlags()}.
+     */
+    void shareEntries() {
+        mEntriesShared = true;
+    }
+
+    /**
+     * @return the heights of the entries, the array may be longer than the count
+     */
+    int[] getHeights() {
+        return mHeights;
+    }
+
+    /**
+     * @return whether the entries are gone, the array may be longer than the count
+     */
+    boolean[] getGoneFlags() {
+        return mGone;
+    }
+
+    private void unshareEntries() {
+        if (mEntriesShared) {
+            mHeights = mHeights.clone();
+            mGone = mGone.clone();
+            mEntriesShared = false;
+        }
+    }
+
+    private int getSpace(int index) {
+        return mGone[index] ? 0 : mHeights[index] + mPaddingBetweenElements;
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.androidl.welen.androidl;
+
+import java.util.Arrays;
+
+/**
+ * A set which compares its items by identity and keeps them in insertion order. Membership tests,
+ * adds and removes are O(1) through an open addressing table from the item to its position.
+ *
+ * Removed items leave a hole which is compacted before the items are read by position again, so
+ * items must not be removed while iterating over {@link #get(int)}.
+ */
+public class OrderedIdentitySet<T> {
+
+    private static final Object REMOVED = new Object();
+    private static final int INITIAL_CAPACITY = 8;
+
+    /**
+     * The items in insertion order, null where an item was removed.
+     */
+    private Object[] mItems = new Object[INITIAL_CAPACITY];
+    private int mEnd;
+    private int mSize;
+
+    /**
+     * The open addressing table from an item to its index in mItems. It holds one entry per
+     * index below mEnd, removed items are marked with REMOVED.
+     */
+    private Object[] mTableKeys = new Object[INITIAL_CAPACITY * 2];
+    private int[] mTableValues = new int[INITIAL_CAPACITY * 2];
+
+    /**
+     * @return whether the item was added, false if it was part of the set already
+     */
+    public boolean add(T item) {
+        if (findSlot(item) >= 0) {
+            return false;
+        }
+        if ((mEnd + 1) * 2 > mTableKeys.length) {
+            rebuild();
+        }
+        if (mEnd == mItems.length) {
+            mItems = Arrays.copyOf(mItems, mEnd * 2);
+        }
+        int mask = mTableKeys.length - 1;
+        int slot = hash(item) & mask;
+        while (mTableKeys[slot] != null) {
+            slot = (slot + 1) & mask;
+        }
+        mTableKeys[slot] = item;
+        mTableValues[slot] = mEnd;
+        mItems[mEnd++] = item;
+        mSize++;
+        return true;
+    }
+
+    /**
+     * @return whether the item was part of the set
+     */
+    public boolean remove(Object item) {
+        int slot = findSlot(item);
+        if (slot < 0) {
+            return false;
+        }
+        mItems[mTableValues[slot]] = null;
+        mTableKeys[slot] = REMOVED;
+        mSize--;
+        return true;
+    }
+
+    public boolean contains(Object item) {
+        return findSlot(item) >= 0;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    /**
+     * @return the item at the given position in insertion order
+     */
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+        if (mSize != mEnd) {
+            rebuild();
+        }
+        return (T) mItems[index];
+    }
+
+    /**
+     * @return the position of the item in insertion order, or -1 if it is not part of the set
+     */
+    public int indexOf(Object item) {
+        if (mSize != mEnd) {
+            rebuild();
+        }
+        int slot = findSlot(item);
+        return slot < 0 ? -1 : mTableValues[slot];
+    }
+
+    public void clear() {
+        if (mEnd == 0) {
+            return;
+        }
+        Arrays.fill(mItems, 0, mEnd, null);
+        Arrays.fill(mTableKeys, null);
+        mEnd = 0;
+        mSize = 0;
+    }
+
+    private int findSlot(Object item) {
+        if (item == null) {
+            return -1;
+        }
+        int mask = mTableKeys.length - 1;
+        int slot = hash(item) & mask;
+        Object key;
+        while ((key = mTableKeys[slot]) != null) {
+            if (key == item) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Drop the holes of removed items and refill the table, growing it if it would be more than
+     * half full afterwards.
+     */
+    private void rebuild() {
+        int size = 0;
+        for (int i = 0; i < mEnd; i++) {
+            Object item = mItems[i];
+            if (item != null) {
+                mItems[size++] = item;
+            }
+        }
+        Arrays.fill(mItems, size, mEnd, null);
+        mEnd = size;
+        int capacity = mTableKeys.length;
+        while ((size + 1) * 2 > capacity) {
+            capacity *= 2;
+        }
+        if (capacity != mTableKeys.length) {
+            mTableKeys = new Object[capacity];
+            mTableValues = new int[capacity];
+        } else {
+            Arrays.fill(mTableKeys, null);
+        }
+        int mask = capacity - 1;
+        for (int i = 0; i < size; i++) {
+            int slot = hash(mItems[i]) & mask;
+            while (mTableKeys[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            mTableKeys[slot] = mItems[i];
+            mTableValues[slot] = i;
+        }
+    }
+
+    private static int hash(Object item) {
+        int h = System.identityHashCode(item);
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.androidl.welen.androidl;
+
+/**
+ * Flings and springs back a scroll position on one axis. The time is passed into every call, so
+ * it runs with the animation clock of a view as well as with a simulated one.
+ *
+ * A fling decelerates along a {@link FlingCurve}. If it reaches an edge of the range before it
+ * comes to rest, it continues past it with the velocity it had there on a critically damped
+ * spring, which carries it out and back to the edge without oscillating. A spring back from
+ * outside of the range uses the same spring. Nothing is allocated while it runs.
+ */
+public class PhysicsScroller {
+
+    /**
+     * The angular frequency of the spring in radians per second. The spring settles a distance
+     * of 100 pixels in about 300ms.
+     */
+    public static final float DEFAULT_SPRING_FREQUENCY = 25f;
+
+    private static final int STATE_FINISHED = 0;
+    private static final int STATE_FLING = 1;
+    private static final int STATE_SPRING = 2;
+
+    /**
+     * The spring is at rest once it is closer than this to the edge and slower than
+     * {@link #REST_VELOCITY}.
+     */
+    private static final float REST_DISTANCE = 0.5f;
+    private static final float REST_VELOCITY = 10f;
+
+    private FlingCurve mFlingCurve;
+    private float mSpringFrequency = DEFAULT_SPRING_FREQUENCY;
+
+    private int mState = STATE_FINISHED;
+    private long mStartTime;
+    private int mMin;
+    private int mMax;
+
+    // the fling: its start, initial velocity and the time at which it reaches an edge, or -1
+    private float mStart;
+    private float mVelocity;
+    private long mDuration;
+    private long mEdgeTime = -1;
+
+    // the spring: its edge and the start offset and velocity relative to it
+    private int mEdge;
+    private float mSpringOffset;
+    private float mSpringVelocity;
+
+    private float mCurrPosition;
+    private float mCurrVelocity;
+    private int mFinal;
+
+    public PhysicsScroller(FlingCurve flingCurve) {
+        mFlingCurve = flingCurve;
+    }
+
+    /**
+     * The curve of the next fling, a running one is not affected.
+     */
+    public void setFlingCurve(FlingCurve flingCurve) {
+        mFlingCurve = flingCurve;
+    }
+
+    public FlingCurve getFlingCurve() {
+        return mFlingCurve;
+    }
+
+    /**
+     * @param springFrequency the angular frequency in radians per second of the spring which
+     *                        brings the position back to an edge, higher is faster
+     */
+    public void setSpringFrequency(float springFrequency) {
+        mSpringFrequency = springFrequency;
+    }
+
+    /**
+     * Start a fling.
+     *
+     * @param start the current position
+     * @param velocity the initial velocity in pixels per second
+     * @param min the lowest position the fling comes to rest at
+     * @param max the highest position the fling comes to rest at
+     * @param time the current time in milliseconds
+     */
+    public void fling(int start, float velocity, int min, int max, long time) {
+        mStartTime = time;
+        mMin = min;
+        mMax = Math.max(min, max);
+        if (start < mMin || start > mMax) {
+            // past an edge the spring decides whether it comes back or is thrown back in
+            startSpring(start, velocity, start < mMin ? mMin : mMax, time);
+            return;
+        }
+        mState = STATE_FLING;
+        mStart = start;
+        mVelocity = velocity;
+        mCurrPosition = start;
+        mCurrVelocity = velocity;
+        mDuration = mFlingCurve.getDuration(velocity);
+        float end = start + mFlingCurve.getDistance(velocity);
+        mEdgeTime = -1;
+        if (end > mMax || end < mMin) {
+            mEdge = end > mMax ? mMax : mMin;
+            mEdgeTime = findEdgeTime(mEdge - start);
+        }
+        // rounded like the positions, so the last step doesn't move back
+        mFinal = Math.round(Math.max(mMin, Math.min(mMax, end)));
+    }
+
+    /**
+     * Bring a position outside of the range back to the nearest edge.
+     *
+     * @return whether the position was outside of the range and a spring was started
+     */
+    public boolean springBack(int start, int min, int max, long time) {
+        mMin = min;
+        mMax = Math.max(min, max);
+        if (start >= mMin && start <= mMax) {
+            return false;
+        }
+        startSpring(start, 0, start < mMin ? mMin : mMax, time);
+        return true;
+    }
+
+    /**
+     * Advance to the given time.
+     *
+     * @return false if nothing was running anymore, true if the position was updated, which
+     *         includes the step in which it comes to rest
+     */
+    public boolean computeScrollOffset(long time) {
+        if (mState == STATE_FINISHED) {
+            return false;
+        }
+        long elapsed = Math.max(0, time - mStartTime);
+        if (mState == STATE_FLING) {
+            if (mEdgeTime >= 0 && elapsed >= mEdgeTime) {
+                // continue past the edge with the velocity it is reached with
+                float velocity = mFlingCurve.getVelocity(mVelocity, mEdgeTime);
+                startSpring(mEdge, velocity, mEdge, mStartTime + mEdgeTime);
+                return computeScrollOffset(time);
+            }
+            if (elapsed >= mDuration) {
+                mCurrPosition = mFinal;
+                mCurrVelocity = 0;
+                mState = STATE_FINISHED;
+                return true;
+            }
+            mCurrPosition = mStart + mFlingCurve.getOffset(mVelocity, elapsed);
+            mCurrVelocity = mFlingCurve.getVelocity(mVelocity, elapsed);
+            return true;
+        }
+        // a critically damped spring: x(t) = (x0 + (v0 + w * x0) * t) * e^(-w * t)
+        float w = mSpringFrequency;
+        float t = elapsed / 1000f;
+        float decay = (float) Math.exp(-w * t);
+        float b = mSpringVelocity + w * mSpringOffset;
+        float offset = (mSpringOffset + b * t) * decay;
+        float velocity = (mSpringVelocity - w * b * t) * decay;
+        float outside = mEdge == mMax ? 1 : -1;
+        if (offset * outside < 0 && velocity * outside < 0 && mMin < mMax) {
+            // thrown back into the range, the rest is a fling
+            fling(mEdge + Math.round(offset), velocity, mMin, mMax, time);
+            return true;
+        }
+        if (Math.abs(offset) < REST_DISTANCE && Math.abs(velocity) < REST_VELOCITY) {
+            mCurrPosition = mEdge;
+            mCurrVelocity = 0;
+            mState = STATE_FINISHED;
+            return true;
+        }
+        mCurrPosition = mEdge + offset;
+        mCurrVelocity = velocity;
+        return true;
+    }
+
+    public int getCurrY() {
+        return Math.round(mCurrPosition);
+    }
+
+    /**
+     * @return the current velocity in pixels per second, with its direction
+     */
+    public float getCurrVelocity() {
+        return mCurrVelocity;
+    }
+
+    /**
+     * @return where the current fling or spring comes to rest
+     */
+    public int getFinalY() {
+        return mFinal;
+    }
+
+    public boolean isFinished() {
+        return mState == STATE_FINISHED;
+    }
+
+    /**
+     * Stop at the current position.
+     */
+    public void forceFinished() {
+        mState = STATE_FINISHED;
+        mCurrVelocity = 0;
+    }
+
+    private void startSpring(int start, float velocity, int edge, long time) {
+        mState = STATE_SPRING;
+        mStartTime = time;
+        mEdge = edge;
+        mSpringOffset = start - edge;
+        mSpringVelocity = velocity;
+        mCurrPosition = start;
+        mCurrVelocity = velocity;
+        mFinal = edge;
+    }
+
+    /**
+     * @return the first time at which the current fling has traveled the given distance, which
+     *         it travels before it comes to rest
+     */
+    private long findEdgeTime(float distance) {
+        long low = 0;
+        long high = mDuration;
+        while (low < high) {
+            long mid = (low + high) >>> 1;
+            if (Math.abs(mFlingCurve.getOffset(mVelocity, mid)) >= Math.abs(distance)) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+}
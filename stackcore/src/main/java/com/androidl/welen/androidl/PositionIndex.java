@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.androidl.welen.androidl;
+
+import java.util.Arrays;
+
+/**
+ * The children laid out by the last pass, sorted by their position, so the child under a touch
+ * is found in O(log n). Positions are in content space relative to the scroll position of the
+ * pass: a child covers [start, start + height] in the direction the content grows, see
+ * {@link StackOrientation}. In that space the children are sorted by their index in both
+ * orientations. Gone children are not part of the index.
+ */
+public class PositionIndex {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private StackChild[] mChildren = new StackChild[INITIAL_CAPACITY];
+    private float[] mStarts = new float[INITIAL_CAPACITY];
+    private float[] mEnds = new float[INITIAL_CAPACITY];
+    private int mCount;
+
+    public void clear() {
+        Arrays.fill(mChildren, 0, mCount, null);
+        mCount = 0;
+    }
+
+    /**
+     * Append a child, children have to be added in the order of their positions.
+     */
+    public void add(StackChild child, float start, int height) {
+        if (mCount == mChildren.length) {
+            int capacity = mCount * 2;
+            mChildren = Arrays.copyOf(mChildren, capacity);
+            mStarts = Arrays.copyOf(mStarts, capacity);
+            mEnds = Arrays.copyOf(mEnds, capacity);
+        }
+        mChildren[mCount] = child;
+        mStarts[mCount] = start;
+        mEnds[mCount] = start + height;
+        mCount++;
+    }
+
+    public int size() {
+        return mCount;
+    }
+
+    /**
+     * @return the child covering the given position, the first one if two children touch there,
+     *         or null if it is in a gap or outside of all children
+     */
+    public StackChild findChildAt(float position) {
+        // the first child which ends at or after the position
+        int low = 0;
+        int high = mCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (mEnds[mid] < position) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low < mCount && mStarts[low] <= position ? mChildren[low] : null;
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.androidl.welen.androidl;
+
+/**
+ * Maps the pixels a finger or a fling moved past an edge to the overscroll amount which is
+ * shown, and back.
+ */
+public abstract class RubberBand {
+
+    /**
+     * @param pixels the raw distance past the edge, not negative
+     * @return the overscroll amount which is shown for it
+     */
+    public abstract float getAmount(float pixels);
+
+    /**
+     * The inverse of {@link #getAmount(float)}.
+     */
+    public abstract float getPixels(float amount);
+
+    /**
+     * The amount is the pixels times a constant factor.
+     */
+    public static RubberBand linear(final float factor) {
+        return new RubberBand() {
+            @Override
+            public float getAmount(float pixels) {
+                return pixels * factor;
+            }
+
+            @Override
+            public float getPixels(float amount) {
+                return amount / factor;
+            }
+        };
+    }
+
+    /**
+     * The amount starts with the slope of the factor and approaches the limit, so the content
+     * can never be pulled further than the limit.
+     */
+    public static RubberBand asymptotic(final float factor, final float limit) {
+        return new RubberBand() {
+            @Override
+            public float getAmount(float pixels) {
+                return limit * (1.0f - 1.0f / (1.0f + factor * pixels / limit));
+            }
+
+            @Override
+            public float getPixels(float amount) {
+                // the limit itself is never reached
+                amount = Math.min(amount, limit * 0.999f);
+                return limit * amount / (factor * (limit - amount));
+            }
+        };
+    }
+}
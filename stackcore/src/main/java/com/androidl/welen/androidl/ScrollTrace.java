@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.androidl.welen.androidl;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A ring buffer of primitive scroll events. Recording stores a few numbers into preallocated
+ * arrays and never allocates, once the buffer is full the oldest events are overwritten.
+ *
+ * The buffer is written by {@link #writeTo(OutputStream)} in a big endian binary format: the
+ * magic {@link #MAGIC}, the format {@link #VERSION} and the event count as ints, followed by the
+ * events from the oldest to the newest, each as the long timestamp in nanoseconds, the int type,
+ * the int scroll position, the float velocity, the float overscroll amount and the int flags.
+ */
+public class ScrollTrace {
+
+    public static final int MAGIC = 0x53545243; // "STRC"
+    public static final int VERSION = 1;
+
+    public static final int EVENT_COMPUTE_SCROLL = 1;
+    public static final int EVENT_OVER_SCROLL_BY = 2;
+    public static final int EVENT_FLING = 3;
+    public static final int EVENT_FLING_REVERT = 4;
+    public static final int EVENT_SPRING_BACK = 5;
+    public static final int EVENT_SPRING_BACK_CANCEL = 6;
+    public static final int EVENT_OVER_SCROLL_AMOUNT = 7;
+
+    /**
+     * The scroll position was clamped to the scroll range plus the allowed overscroll.
+     */
+    public static final int FLAG_CLAMPED = 1;
+
+    /**
+     * The overscroll amount of the event is at the top.
+     */
+    public static final int FLAG_ON_TOP = 1 << 1;
+
+    private final long[] mTimes;
+    private final int[] mTypes;
+    private final int[] mScrollYs;
+    private final float[] mVelocities;
+    private final float[] mAmounts;
+    private final int[] mFlags;
+
+    /**
+     * The index the next event is written to and the number of valid events.
+     */
+    private int mNext;
+    private int mCount;
+
+    public ScrollTrace(int capacity) {
+        mTimes = new long[capacity];
+        mTypes = new int[capacity];
+        mScrollYs = new int[capacity];
+        mVelocities = new float[capacity];
+        mAmounts = new float[capacity];
+        mFlags = new int[capacity];
+    }
+
+    public void record(int type, int scrollY, float velocity, float amount, int flags) {
+        int index = mNext;
+        mTimes[index] = System.nanoTime();
+        mTypes[index] = type;
+        mScrollYs[index] = scrollY;
+        mVelocities[index] = velocity;
+        mAmounts[index] = amount;
+        mFlags[index] = flags;
+        mNext = index + 1 == mTimes.length ? 0 : index + 1;
+        if (mCount < mTimes.length) {
+            mCount++;
+        }
+    }
+
+    public int getCount() {
+        return mCount;
+    }
+
+    public void clear() {
+        mNext = 0;
+        mCount = 0;
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(mCount);
+        int capacity = mTimes.length;
+        int index = (mNext - mCount + capacity) % capacity;
+        for (int i = 0; i < mCount; i++) {
+            data.writeLong(mTimes[index]);
+            data.writeInt(mTypes[index]);
+            data.writeInt(mScrollYs[index]);
+            data.writeFloat(mVelocities[index]);
+            data.writeFloat(mAmounts[index]);
+            data.writeInt(mFlags[index]);
+            index = index + 1 == capacity ? 0 : index + 1;
+        }
+        data.flush();
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.androidl.welen.androidl;
+
+/**
+ * The deceleration of the platform {@code android.widget.OverScroller}: the distance and the
+ * duration follow from a friction and the density of the display, the progress over time
+ * follows a spline sampled into a table.
+ */
+public class SplineFlingCurve implements FlingCurve {
+
+    /**
+     * The friction {@code ViewConfiguration.getScrollFriction()} returns.
+     */
+    public static final float DEFAULT_FRICTION = 0.015f;
+
+    private static final float GRAVITY_EARTH = 9.80665f;
+    private static final float INCHES_PER_METER = 39.37f;
+    private static final float DECELERATION_RATE = (float) (Math.log(0.78) / Math.log(0.9));
+    private static final float INFLEXION = 0.35f; // Tension lines cross at (INFLEXION, 1)
+    private static final float START_TENSION = 0.5f;
+    private static final float END_TENSION = 1.0f;
+    private static final float P1 = START_TENSION * INFLEXION;
+    private static final float P2 = 1.0f - END_TENSION * (1.0f - INFLEXION);
+
+    private static final int NB_SAMPLES = 100;
+    private static final float[] SPLINE_POSITION = new float[NB_SAMPLES + 1];
+
+    static {
+        float xMin = 0.0f;
+        for (int i = 0; i < NB_SAMPLES; i++) {
+            final float alpha = (float) i / NB_SAMPLES;
+            float xMax = 1.0f;
+            float x, tx, coef;
+            while (true) {
+                x = xMin + (xMax - xMin) / 2.0f;
+                coef = 3.0f * x * (1.0f - x);
+                tx = coef * ((1.0f - x) * P1 + x * P2) + x * x * x;
+                if (Math.abs(tx - alpha) < 1E-5) break;
+                if (tx > alpha) xMax = x;
+                else xMin = x;
+            }
+            SPLINE_POSITION[i] = coef * ((1.0f - x) * START_TENSION + x) + x * x * x;
+        }
+        SPLINE_POSITION[NB_SAMPLES] = 1.0f;
+    }
+
+    /**
+     * The friction times the deceleration of gravity in pixels per second squared.
+     */
+    private final float mFrictionCoeff;
+
+    /**
+     * @param density the density of the display, 1 for 160 pixels per inch
+     * @param friction the friction, see {@link #DEFAULT_FRICTION}
+     */
+    public SplineFlingCurve(float density, float friction) {
+        float ppi = density * 160.0f;
+        mFrictionCoeff = friction * GRAVITY_EARTH * INCHES_PER_METER * ppi * 0.84f;
+    }
+
+    @Override
+    public long getDuration(float velocity) {
+        if (velocity == 0) {
+            return 0;
+        }
+        return (long) (1000.0 * Math.exp(getDeceleration(velocity) / (DECELERATION_RATE - 1.0)));
+    }
+
+    @Override
+    public float getDistance(float velocity) {
+        if (velocity == 0) {
+            return 0;
+        }
+        double distance = mFrictionCoeff * Math.exp(DECELERATION_RATE
+                / (DECELERATION_RATE - 1.0) * getDeceleration(velocity));
+        return (float) Math.copySign(distance, velocity);
+    }
+
+    @Override
+    public float getOffset(float velocity, long time) {
+        long duration = getDuration(velocity);
+        if (time >= duration) {
+            return getDistance(velocity);
+        }
+        float t = (float) time / duration;
+        int index = (int) (NB_SAMPLES * t);
+        float tInf = (float) index / NB_SAMPLES;
+        float dInf = SPLINE_POSITION[index];
+        float velocityCoef = (SPLINE_POSITION[index + 1] - dInf) * NB_SAMPLES;
+        return (dInf + (t - tInf) * velocityCoef) * getDistance(velocity);
+    }
+
+    @Override
+    public float getVelocity(float velocity, long time) {
+        long duration = getDuration(velocity);
+        if (time >= duration) {
+            return 0;
+        }
+        int index = (int) (NB_SAMPLES * ((float) time / duration));
+        float velocityCoef = (SPLINE_POSITION[index + 1] - SPLINE_POSITION[index]) * NB_SAMPLES;
+        return velocityCoef * getDistance(velocity) / duration * 1000.0f;
+    }
+
+    private double getDeceleration(float velocity) {
+        return Math.log(INFLEXION * Math.abs(velocity) / mFrictionCoeff);
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.androidl.welen.androidl;
+
+/**
+ * A child of a {@link StackHost} as seen by the stack algorithm and {@link StackScrollState}. The
+ * getters and setters have the signatures of their android.view.View counterparts, so a view
+ * only needs to implement the stack specific methods.
+ */
+public interface StackChild {
+
+    /**
+     * The values of android.view.View#VISIBLE, #INVISIBLE and #GONE.
+     */
+    int VISIBILITY_VISIBLE = 0;
+    int VISIBILITY_INVISIBLE = 4;
+    int VISIBILITY_GONE = 8;
+
+    /**
+     * The values of android.view.View#LAYER_TYPE_NONE and #LAYER_TYPE_HARDWARE.
+     */
+    int LAYER_NONE = 0;
+    int LAYER_HARDWARE = 2;
+
+    int getWidth();
+
+    int getHeight();
+
+    int getVisibility();
+
+    void setVisibility(int visibility);
+
+    float getAlpha();
+
+    void setAlpha(float alpha);
+
+    float getTranslationX();
+
+    float getTranslationY();
+
+    void setTranslationY(float translationY);
+
+    float getScaleX();
+
+    void setScaleX(float scaleX);
+
+    void setScaleY(float scaleY);
+
+    int getLayerType();
+
+    /**
+     * @return whether the child draws overlapping content and needs a layer to fade correctly
+     */
+    boolean hasOverlappingRendering();
+
+    /**
+     * Set the layer type of the child without a layer paint.
+     */
+    void applyLayerType(int layerType);
+
+    /**
+     * @return the slot of the child in the {@link StackScrollState} of its host, or -1
+     */
+    int getStackStateSlot();
+
+    void setStackStateSlot(int stackStateSlot);
+
+    /**
+     * @return the slot of the animation record of the child in the animator of its host, or -1
+     */
+    int getAnimationSlot();
+
+    void setAnimationSlot(int animationSlot);
+
+    /**
+     * @return the slot of the child in the {@link HardwareLayerManager} of its host, or -1
+     */
+    int getLayerSlot();
+
+    void setLayerSlot(int layerSlot);
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.androidl.welen.androidl;
+
+import java.util.Arrays;
+
+/**
+ * The layout math of the {@link StackScrollAlgorithm} on a compact model. The children are only
+ * described by their heights and gone flags, the result is the y translation and the not gone
+ * index of every child inside the window, both kept in primitive arrays indexed by child.
+ *
+ * A pass is {@link #setScrollState}, one of the window methods, {@link #setChild} for every child
+ * inside the window and {@link #layout()}. No objects are allocated once the arrays are large
+ * enough, so it can run on any thread.
+ */
+public class StackLayoutCore {
+
+    private int mPaddingBetweenElements;
+    private int mWindowMargin;
+    private int mLayoutHeight;
+    private StackOrientation mOrientation = StackOrientation.REVERT;
+
+    /**
+     * The scroll position of the pass, relative to the first child and including the overscroll.
+     */
+    private int mScrollY;
+
+    // the window, both inclusive, and where it starts
+    private int mWindowFirst;
+    private int mWindowLast = -1;
+    private int mWindowPosition;
+    private int mWindowNotGoneIndex;
+
+    private int[] mHeights = new int[0];
+    private boolean[] mGone = new boolean[0];
+    private float[] mYTranslations = new float[0];
+    private int[] mNotGoneIndices = new int[0];
+
+    /**
+     * @param paddingBetweenElements the space between two children
+     * @param windowMargin the distance above and below the viewport which belongs to the window
+     */
+    public StackLayoutCore(int paddingBetweenElements, int windowMargin) {
+        mPaddingBetweenElements = paddingBetweenElements;
+        mWindowMargin = windowMargin;
+    }
+
+    public void setOrientation(StackOrientation orientation) {
+        mOrientation = orientation;
+    }
+
+    public StackOrientation getOrientation() {
+        return mOrientation;
+    }
+
+    public void setLayoutHeight(int layoutHeight) {
+        mLayoutHeight = layoutHeight;
+    }
+
+    public int getPaddingBetweenElements() {
+        return mPaddingBetweenElements;
+    }
+
+    public int getWindowMargin() {
+        return mWindowMargin;
+    }
+
+    /**
+     * @param scrollY the scroll position of the host, negative values are ignored
+     * @param topOverScroll the current overscroll amount at the top
+     * @param bottomOverScroll the current overscroll amount at the bottom
+     * @param firstChildPosition the linear layout position of the first child
+     */
+    public void setScrollState(int scrollY, float topOverScroll, float bottomOverScroll,
+            int firstChildPosition) {
+        // Due to the overScroller, the stackscroller can have negative scroll state. This is
+        // already accounted for by the top padding and doesn't need an additional adaption
+        scrollY = Math.max(0, scrollY);
+        mScrollY = mOrientation.getScrollWithOverScroll(scrollY, topOverScroll,
+                bottomOverScroll);
+        // Rows before the first child are not attached, the first child starts at its position
+        mScrollY -= firstChildPosition;
+    }
+
+    public int getScrollY() {
+        return mScrollY;
+    }
+
+    /**
+     * Lay out all children.
+     */
+    public void setFullWindow(int childCount) {
+        ensureCapacity(childCount);
+        mWindowFirst = 0;
+        mWindowLast = childCount - 1;
+        mWindowPosition = 0;
+        mWindowNotGoneIndex = 0;
+    }
+
+    /**
+     * Only lay out the children overlapping the viewport plus the window margin. The linear
+     * layout position of a child is its distance from the start of the content, so the window is
+     * the same range of positions in both orientations.
+     *
+     * @param heightIndex the index over the children
+     * @param firstIndex the entry of the first child in the index
+     * @param childCount the number of children
+     */
+    public void setWindow(HeightIndex heightIndex, int firstIndex, int childCount) {
+        ensureCapacity(childCount);
+        if (childCount == 0) {
+            setFullWindow(0);
+            return;
+        }
+        int lastIndex = firstIndex + childCount - 1;
+        int basePosition = heightIndex.getPosition(firstIndex);
+        int top = basePosition + mScrollY - mWindowMargin;
+        int bottom = basePosition + mScrollY + mLayoutHeight + mWindowMargin;
+        int first = Math.max(firstIndex, Math.min(lastIndex,
+                heightIndex.getIndexAtPosition(top)));
+        int last = Math.max(first, Math.min(lastIndex,
+                heightIndex.getIndexAtPosition(bottom)));
+        mWindowFirst = first - firstIndex;
+        mWindowLast = last - firstIndex;
+        mWindowPosition = heightIndex.getPosition(first) - basePosition;
+        mWindowNotGoneIndex = heightIndex.getNotGoneIndex(first)
+                - heightIndex.getNotGoneIndex(firstIndex);
+    }
+
+    public int getWindowFirst() {
+        return mWindowFirst;
+    }
+
+    public int getWindowLast() {
+        return mWindowLast;
+    }
+
+    /**
+     * Describe a child inside the window.
+     */
+    public void setChild(int index, int height, boolean gone) {
+        mHeights[index] = height;
+        mGone[index] = gone;
+    }
+
+    /**
+     * Compute the y translation and the not gone index of every child inside the window. All
+     * children are positioned relative to the linear layout position of the first one, which
+     * carries the scroll.
+     */
+    public void layout() {
+        // the translation is direction * (position - scrollY), see StackOrientation
+        int direction = mOrientation.getDirection();
+        int currentPosition = mWindowPosition;
+        int notGoneIndex = mWindowNotGoneIndex;
+        for (int i = mWindowFirst; i <= mWindowLast; i++) {
+            if (mGone[i]) {
+                mNotGoneIndices[i] = -1;
+                continue;
+            }
+            mNotGoneIndices[i] = notGoneIndex++;
+            mYTranslations[i] = direction * (currentPosition - mScrollY);
+            currentPosition += mHeights[i] + mPaddingBetweenElements;
+        }
+    }
+
+    public int getHeight(int index) {
+        return mHeights[index];
+    }
+
+    public boolean isGone(int index) {
+        return mGone[index];
+    }
+
+    public float getYTranslation(int index) {
+        return mYTranslations[index];
+    }
+
+    /**
+     * @return the number of children before this one which are not gone, or -1 if it is gone
+     */
+    public int getNotGoneIndex(int index) {
+        return mNotGoneIndices[index];
+    }
+
+    private void ensureCapacity(int childCount) {
+        if (mHeights.length < childCount) {
+            int capacity = Math.max(childCount, mHeights.length * 2);
+            mHeights = Arrays.copyOf(mHeights, capacity);
+            mGone = Arrays.copyOf(mGone, capacity);
+            mYTranslations = Arrays.copyOf(mYTranslations, capacity);
+            mNotGoneIndices = Arrays.copyOf(mNotGoneIndices, capacity);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.androidl.welen.androidl;
+
+/**
+ * An immutable snapshot of everything a layout pass over the whole stack depends on, so that it
+ * can be computed on another thread while the original model keeps changing.
+ */
+public class StackLayoutModel {
+
+    final int version;
+    final int count;
+    final int[] heights;
+    final boolean[] gone;
+    final int paddingBetweenElements;
+    final int maxLayoutHeight;
+    final StackOrientation orientation;
+    final int scrollY;
+    final float topOverScroll;
+    final float bottomOverScroll;
+
+    /**
+     * Share the entries of the height index, which copies them before its next change, and copy
+     * the scroll state.
+     *
+     * @param version the version of the layout this model belongs to, see
+     *                {@link BackgroundStackLayout#nextVersion()}
+     * @param maxLayoutHeight the height of the viewport
+     */
+    public StackLayoutModel(int version, HeightIndex heightIndex, int maxLayoutHeight,
+            StackOrientation orientation, int scrollY, float topOverScroll, float bottomOverScroll) {
+        this.version = version;
+        heightIndex.shareEntries();
+        count = heightIndex.getCount();
+        heights = heightIndex.getHeights();
+        gone = heightIndex.getGoneFlags();
+        paddingBetweenElements = heightIndex.getPaddingBetweenElements();
+        this.maxLayoutHeight = maxLayoutHeight;
+        this.orientation = orientation;
+        this.scrollY = scrollY;
+        this.topOverScroll = topOverScroll;
+        this.bottomOverScroll = bottomOverScroll;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Lay out all entries.
+     */
+    StackLayoutResult compute() {
+        StackLayoutCore core = new StackLayoutCore(paddingBetweenElements, 0);
+        core.setOrientation(orientation);
+        core.setLayoutHeight(maxLayoutHeight);
+        core.setScrollState(scrollY, topOverScroll, bottomOverScroll, 0);
+        core.setFullWindow(count);
+        for (int i = 0; i < count; i++) {
+            core.setChild(i, heights[i], gone[i]);
+        }
+        core.layout();
+        float[] yTranslations = new float[count];
+        int[] notGoneIndices = new int[count];
+        for (int i = 0; i < count; i++) {
+            notGoneIndices[i] = core.getNotGoneIndex(i);
+            yTranslations[i] = gone[i] ? 0 : core.getYTranslation(i);
+        }
+        return new StackLayoutResult(version, yTranslations, notGoneIndices,
+                orientation.getScrollWithOverScroll(Math.max(0, scrollY), topOverScroll,
+                        bottomOverScroll));
+    }
+
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.androidl.welen.androidl;
+
+/**
+ * The layout of a {@link StackLayoutModel}, the y translation and the not gone index of every
+ * entry and the scroll position it was computed for.
+ */
+public class StackLayoutResult {
+
+    private final int mVersion;
+    private final float[] mYTranslations;
+    private final int[] mNotGoneIndices;
+    private final int mScrollPosition;
+
+    StackLayoutResult(int version, float[] yTranslations, int[] notGoneIndices,
+            int scrollPosition) {
+        mVersion = version;
+        mYTranslations = yTranslations;
+        mNotGoneIndices = notGoneIndices;
+        mScrollPosition = scrollPosition;
+    }
+
+    public int getVersion() {
+        return mVersion;
+    }
+
+    public int getCount() {
+        return mYTranslations.length;
+    }
+
+    public float getYTranslation(int index) {
+        return mYTranslations[index];
+    }
+
+    /**
+     * @return the number of entries before this one which are not gone, or -1 if it is gone
+     */
+    public int getNotGoneIndex(int index) {
+        return mNotGoneIndices[index];
+    }
+
+    /**
+     * @return the scroll position including the overscroll of the model, which may differ from
+     *         the current one once the result is published
+     */
+    public int getScrollPosition() {
+        return mScrollPosition;
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.androidl.welen.androidl;
+
+/**
+ * Receives the timings and counts of the layout passes of a stack. Callers only measure when
+ * {@link #isEnabled()} returns true, so the {@link #NOOP} metrics cost one call per pass and no
+ * allocation. All methods are called on the UI thread.
+ */
+public interface StackMetrics {
+
+    StackMetrics NOOP = new StackMetrics() {
+        @Override
+        public boolean isEnabled() {
+            return false;
+        }
+
+        @Override
+        public void onUpdateChildren(long durationNanos) {
+        }
+
+        @Override
+        public void onLayoutPass(long durationNanos, int childrenTouched) {
+        }
+
+        @Override
+        public void onApply(long durationNanos, int statesApplied) {
+        }
+
+        @Override
+        public void onAnimationStarted(long durationNanos, int animatorsStarted) {
+        }
+
+        @Override
+        public void onFlingFrame(long frameIntervalNanos, int droppedFrames) {
+        }
+    };
+
+    boolean isEnabled();
+
+    /**
+     * A complete update of the children, including the recycling, the layout pass and the apply
+     * or animation start.
+     */
+    void onUpdateChildren(long durationNanos);
+
+    /**
+     * @param childrenTouched the number of children whose states were computed
+     */
+    void onLayoutPass(long durationNanos, int childrenTouched);
+
+    /**
+     * @param statesApplied the number of states which were written to their children
+     */
+    void onApply(long durationNanos, int statesApplied);
+
+    /**
+     * @param animatorsStarted the number of property animators started for the events
+     */
+    void onAnimationStarted(long durationNanos, int animatorsStarted);
+
+    /**
+     * A frame drawn while flinging.
+     *
+     * @param frameIntervalNanos the time since the previous frame of the fling
+     * @param droppedFrames the number of frames which were missed in between
+     */
+    void onFlingFrame(long frameIntervalNanos, int droppedFrames);
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.androidl.welen.androidl;
+
+import java.io.PrintWriter;
+
+/**
+ * {@link StackMetrics} which keep counters and log2 bucketed histograms of all values, without
+ * allocating while recording. Recording can be switched on and off at runtime, the collected
+ * values are written by {@link #dump(PrintWriter)}.
+ */
+public class StackMetricsRecorder implements StackMetrics {
+
+    private volatile boolean mEnabled = true;
+
+    private final Histogram mUpdateChildren = new Histogram();
+    private final Histogram mLayoutPass = new Histogram();
+    private final Histogram mChildrenTouched = new Histogram();
+    private final Histogram mApply = new Histogram();
+    private final Histogram mStatesApplied = new Histogram();
+    private final Histogram mAnimationStart = new Histogram();
+    private final Histogram mAnimatorsStarted = new Histogram();
+    private final Histogram mFlingFrameInterval = new Histogram();
+    private long mDroppedFlingFrames;
+
+    public void setEnabled(boolean enabled) {
+        mEnabled = enabled;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return mEnabled;
+    }
+
+    @Override
+    public void onUpdateChildren(long durationNanos) {
+        mUpdateChildren.record(durationNanos);
+    }
+
+    @Override
+    public void onLayoutPass(long durationNanos, int childrenTouched) {
+        mLayoutPass.record(durationNanos);
+        mChildrenTouched.record(childrenTouched);
+    }
+
+    @Override
+    public void onApply(long durationNanos, int statesApplied) {
+        mApply.record(durationNanos);
+        mStatesApplied.record(statesApplied);
+    }
+
+    @Override
+    public void onAnimationStarted(long durationNanos, int animatorsStarted) {
+        mAnimationStart.record(durationNanos);
+        mAnimatorsStarted.record(animatorsStarted);
+    }
+
+    @Override
+    public void onFlingFrame(long frameIntervalNanos, int droppedFrames) {
+        mFlingFrameInterval.record(frameIntervalNanos);
+        mDroppedFlingFrames += droppedFrames;
+    }
+
+    public long getDroppedFlingFrames() {
+        return mDroppedFlingFrames;
+    }
+
+    public Histogram getLayoutPassHistogram() {
+        return mLayoutPass;
+    }
+
+    public void reset() {
+        mUpdateChildren.reset();
+        mLayoutPass.reset();
+        mChildrenTouched.reset();
+        mApply.reset();
+        mStatesApplied.reset();
+        mAnimationStart.reset();
+        mAnimatorsStarted.reset();
+        mFlingFrameInterval.reset();
+        mDroppedFlingFrames = 0;
+    }
+
+    public void dump(PrintWriter pw) {
+        pw.println("StackMetrics:");
+        mUpdateChildren.dump(pw, "updateChildren ns");
+        mLayoutPass.dump(pw, "layout pass ns");
+        mChildrenTouched.dump(pw, "children touched");
+        mApply.dump(pw, "apply ns");
+        mStatesApplied.dump(pw, "states applied");
+        mAnimationStart.dump(pw, "animation start ns");
+        mAnimatorsStarted.dump(pw, "animators started");
+        mFlingFrameInterval.dump(pw, "fling frame interval ns");
+        pw.println("  dropped fling frames: " + mDroppedFlingFrames);
+        pw.flush();
+    }
+
+    /**
+     * A histogram of non-negative values. Bucket i holds the values of bit length i, so bucket 0
+     * only holds 0 and bucket i the values from 2^(i-1) to 2^i - 1.
+     */
+    public static class Histogram {
+
+        private final long[] mBuckets = new long[64];
+        private long mCount;
+        private long mSum;
+        private long mMax;
+
+        public void record(long value) {
+            if (value < 0) {
+                value = 0;
+            }
+            mBuckets[64 - Long.numberOfLeadingZeros(value)]++;
+            mCount++;
+            mSum += value;
+            if (value > mMax) {
+                mMax = value;
+            }
+        }
+
+        public long getCount() {
+            return mCount;
+        }
+
+        public long getMax() {
+            return mMax;
+        }
+
+        public long getMean() {
+            return mCount > 0 ? mSum / mCount : 0;
+        }
+
+        /**
+         * @return an upper bound of the given percentile, the largest value of its bucket
+         */
+        public long getPercentile(int percentile) {
+            long rank = (mCount * percentile + 99) / 100;
+            long seen = 0;
+            for (int i = 0; i < mBuckets.length; i++) {
+                seen += mBuckets[i];
+                if (seen >= rank && seen > 0) {
+                    return Math.min(mMax, i == 0 ? 0 : (1L << i) - 1);
+                }
+            }
+            return mMax;
+        }
+
+        public void reset() {
+            for (int i = 0; i < mBuckets.length; i++) {
+                mBuckets[i] = 0;
+            }
+            mCount = 0;
+            mSum = 0;
+            mMax = 0;
+        }
+
+        void dump(PrintWriter pw, String name) {
+            pw.println("  " + name + ": count=" + mCount + " mean=" + getMean()
+                    + " p50<=" + getPercentile(50) + " p90<=" + getPercentile(90)
+                    + " p99<=" + getPercentile(99) + " max=" + mMax);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.androidl.welen.androidl;
+
+/**
+ * Maps the linear content of the stack onto the screen. The content grows downwards from the top
+ * of the layout in normal mode and upwards from its bottom in revert mode. Everything else, the
+ * layout math, the scroll position and its range, the overscroll and the flings, is computed in
+ * content space by the same code and only converted here.
+ *
+ * In content space the scroll position grows towards the end of the content and the start of the
+ * content is where the scroll position is 0. The start edge is the top of the screen in normal
+ * mode and the bottom in revert mode.
+ */
+public final class StackOrientation {
+
+    public static final StackOrientation NORMAL = new StackOrientation(1);
+    public static final StackOrientation REVERT = new StackOrientation(-1);
+
+    /**
+     * 1 if the content grows downwards on the screen, -1 if it grows upwards.
+     */
+    private final int mDirection;
+
+    private StackOrientation(int direction) {
+        mDirection = direction;
+    }
+
+    public static StackOrientation of(boolean revert) {
+        return revert ? REVERT : NORMAL;
+    }
+
+    public boolean isRevert() {
+        return mDirection < 0;
+    }
+
+    public int getDirection() {
+        return mDirection;
+    }
+
+    /**
+     * @return whether the start of the content is at the top of the screen
+     */
+    public boolean isStartOnTop() {
+        return mDirection > 0;
+    }
+
+    /**
+     * @param start the start edge of the content if true, the end edge otherwise
+     * @return whether the edge is the top one on the screen
+     */
+    public boolean isOnTop(boolean start) {
+        return start == isStartOnTop();
+    }
+
+    /**
+     * Convert a distance on the screen, positive downwards, into content space and back.
+     */
+    public int toContent(int screenDelta) {
+        return mDirection * screenDelta;
+    }
+
+    public float toContent(float screenDelta) {
+        return mDirection * screenDelta;
+    }
+
+    /**
+     * @return the scroll position including the overscroll, which pulls the content away from
+     *         the edge it is applied to
+     */
+    public int getScrollWithOverScroll(int scrollY, float topOverScroll,
+            float bottomOverScroll) {
+        return (int) (scrollY + mDirection * (bottomOverScroll - topOverScroll));
+    }
+
+    /**
+     * @return the y translation of a child at the given content position, relative to its
+     *         {@link #getChildTop layout top}
+     */
+    public float getTranslation(int position, int scrollY) {
+        return mDirection * (position - scrollY);
+    }
+
+    /**
+     * @return the top of a child in the layout before its translation is applied
+     */
+    public int getChildTop(int layoutHeight, int childHeight) {
+        return mDirection > 0 ? 0 : layoutHeight - childHeight;
+    }
+
+    /**
+     * The inverse of the {@link #getChildTop layout top} plus the
+     * {@link #getTranslation translation} of a child.
+     *
+     * @return the content position relative to the scroll position at the given y on the screen
+     */
+    public float getPosition(float screenY, int layoutHeight) {
+        return mDirection > 0 ? screenY : layoutHeight - screenY;
+    }
+}
@@ -0,0 +1,278 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.androidl.welen.androidl;
+
+import java.util.ArrayList;
+
+/**
+ * The Algorithm of the {@link com.android.systemui.statusbar.stack
+ * .NotificationStackScrollLayout} which can be queried for {@link com.android.systemui.statusbar
+ * .stack.StackScrollState}
+ */
+public class StackScrollAlgorithm {
+
+    /**
+     * The math of the pass, this class only moves the properties of the children into it and the
+     * results into the {@link StackScrollState}.
+     */
+    private final StackLayoutCore mLayoutCore;
+
+    private boolean mWindowedLayout = true;
+
+    /**
+     * Whether the last pass only computed the states of the children inside the window.
+     */
+    private boolean mLastPassWindowed;
+
+    /**
+     * The number of children whose states were computed by the last pass.
+     */
+    private int mChildrenTouched;
+
+    private StackScrollAlgorithmState mTempAlgorithmState = new StackScrollAlgorithmState();
+
+    /**
+     * The children laid out by the last pass by position, for hit testing.
+     */
+    private final PositionIndex mPositionIndex = new PositionIndex();
+
+    /**
+     * @param paddingBetweenElements the space between two children
+     * @param windowMargin the distance above and below the viewport in which states are computed
+     *                     in windowed mode
+     */
+    public StackScrollAlgorithm(int paddingBetweenElements, int windowMargin) {
+        mLayoutCore = new StackLayoutCore(paddingBetweenElements, windowMargin);
+    }
+
+    public StackOrientation getOrientation() {
+        return mLayoutCore.getOrientation();
+    }
+
+    public void setOrientation(StackOrientation orientation) {
+        mLayoutCore.setOrientation(orientation);
+    }
+
+    /**
+     * In windowed mode only the states of the children overlapping the viewport plus a margin are
+     * computed, all other children are marked as clipped. This requires a height index on the
+     * {@link AmbientState}, without one all children are computed.
+     */
+    public void setWindowedLayout(boolean windowedLayout) {
+        mWindowedLayout = windowedLayout;
+    }
+
+    public boolean isWindowedLayout() {
+        return mWindowedLayout;
+    }
+
+    public int getChildrenTouched() {
+        return mChildrenTouched;
+    }
+
+    /**
+     * @return the children which were laid out by the last pass and are not gone, sorted by
+     *         their position
+     */
+    public PositionIndex getPositionIndex() {
+        return mPositionIndex;
+    }
+
+    /**
+     * @return the scroll position including the overscroll a pass computes the states for
+     */
+    public int getScrollPosition(AmbientState ambientState) {
+        return mLayoutCore.getOrientation().getScrollWithOverScroll(
+                Math.max(0, ambientState.getScrollY()),
+                ambientState.getOverScrollAmount(true /* onTop */),
+                ambientState.getOverScrollAmount(false /* onTop */));
+    }
+
+    /**
+     * @return how far the scroll position may move away from the one of the last pass before
+     *         children whose states it did not compute become visible
+     */
+    public int getScrollSlack() {
+        return mLastPassWindowed ? mLayoutCore.getWindowMargin() : Integer.MAX_VALUE;
+    }
+
+    public void getStackScrollState(AmbientState ambientState, StackScrollState resultState, int range) {
+        // The state of the local variables are saved in an algorithmState to easily subdivide it
+        // into multiple phases.
+        StackScrollAlgorithmState algorithmState = mTempAlgorithmState;
+        StackLayoutCore core = mLayoutCore;
+        StackHost hostView = resultState.getHostView();
+        int childCount = hostView.getChildCount();
+
+        core.setScrollState(ambientState.getScrollY(),
+                ambientState.getOverScrollAmount(true /* onTop */),
+                ambientState.getOverScrollAmount(false /* onTop */),
+                ambientState.getFirstChildPosition());
+
+        // First we reset the view states to their default values.
+        HeightIndex heightIndex = ambientState.getHeightIndex();
+        mLastPassWindowed = mWindowedLayout && heightIndex != null;
+        if (mLastPassWindowed) {
+            core.setWindow(heightIndex, ambientState.getFirstChildIndex(), childCount);
+            resultState.resetViewStates(core.getWindowFirst(), core.getWindowLast());
+        } else {
+            core.setFullWindow(childCount);
+            resultState.resetViewStates();
+        }
+        mChildrenTouched = core.getWindowLast() - core.getWindowFirst() + 1;
+
+        updateVisibleChildren(resultState, algorithmState);
+        core.layout();
+        updatePositionsForState(resultState, algorithmState);
+
+        handleDraggedViews(ambientState, resultState, algorithmState);
+    }
+
+
+    /**
+     * Fill the result state from a layout which was computed in the background, instead of
+     * computing it here. The children of the host are the entries of the result starting at the
+     * {@link AmbientState#getFirstChildIndex() first child index}.
+     */
+    public void getStackScrollState(AmbientState ambientState, StackLayoutResult layoutResult,
+            StackScrollState resultState) {
+        StackScrollAlgorithmState algorithmState = mTempAlgorithmState;
+        StackHost hostView = resultState.getHostView();
+        int childCount = hostView.getChildCount();
+        int firstIndex = ambientState.getFirstChildIndex();
+        resultState.resetViewStates();
+        mLastPassWindowed = false;
+        mChildrenTouched = childCount;
+        algorithmState.visibleChildren.clear();
+        PositionIndex positionIndex = mPositionIndex;
+        positionIndex.clear();
+        int direction = mLayoutCore.getOrientation().getDirection();
+        for (int i = 0; i < childCount; i++) {
+            StackChild child = hostView.getStackChildAt(i);
+            int index = firstIndex + i;
+            if (child.getVisibility() == StackChild.VISIBILITY_GONE
+                    || index >= layoutResult.getCount()
+                    || layoutResult.getNotGoneIndex(index) < 0) {
+                continue;
+            }
+            StackScrollState.ViewState childViewState = resultState.getViewStateForView(child);
+            childViewState.setNotGoneIndex(layoutResult.getNotGoneIndex(index));
+            childViewState.setYTranslation(layoutResult.getYTranslation(index));
+            positionIndex.add(child, direction * layoutResult.getYTranslation(index),
+                    getChildHeight(child));
+            algorithmState.visibleChildren.add(child);
+        }
+
+        handleDraggedViews(ambientState, resultState, algorithmState);
+    }
+
+    /**
+     * Handle the special state when views are being dragged
+     */
+    private void handleDraggedViews(AmbientState ambientState, StackScrollState resultState,
+            StackScrollAlgorithmState algorithmState) {
+        ArrayList<StackChild> draggedViews = ambientState.getDraggedViews();
+        if(draggedViews.isEmpty())return;
+        // in windowed mode these are only the children inside the window
+        for(StackChild view : algorithmState.visibleChildren){
+            StackScrollState.ViewState viewState = resultState.getViewStateForView(
+                    view);
+            if(!draggedViews.contains(view)){
+                // The child below the dragged one must be fully visible
+                viewState.setAlpha(0.6f);
+            }else {
+                viewState.setAlpha(view.getAlpha());
+            }
+        }
+
+
+    }
+
+    /**
+     * Copy the children inside the window into the layout core and collect the visible ones.
+     */
+    private void updateVisibleChildren(StackScrollState resultState,
+            StackScrollAlgorithmState state) {
+        StackLayoutCore core = mLayoutCore;
+        StackHost hostView = resultState.getHostView();
+        int first = core.getWindowFirst();
+        int last = core.getWindowLast();
+        state.visibleChildren.clear();
+        state.visibleChildren.ensureCapacity(last - first + 1);
+        for (int i = first; i <= last; i++) {
+            StackChild v = hostView.getStackChildAt(i);
+            boolean gone = v.getVisibility() == StackChild.VISIBILITY_GONE;
+            core.setChild(i, getChildHeight(v), gone);
+            if (!gone) {
+                state.visibleChildren.add(v);
+            }
+        }
+    }
+
+    /**
+     * Move the positions computed by the layout core into the states of the visible children.
+     *
+     * @param resultState The result state to update if a change to the properties of a child occurs
+     * @param algorithmState The state in which the current pass of the algorithm is currently in
+     */
+    private void updatePositionsForState(StackScrollState resultState,
+            StackScrollAlgorithmState algorithmState) {
+        StackLayoutCore core = mLayoutCore;
+        PositionIndex positionIndex = mPositionIndex;
+        positionIndex.clear();
+        int direction = core.getOrientation().getDirection();
+        int index = core.getWindowFirst();
+        int childCount = algorithmState.visibleChildren.size();
+        for (int i = 0; i < childCount; i++) {
+            StackChild child = algorithmState.visibleChildren.get(i);
+            // the visible children are the window without the gone ones, in the same order
+            while (core.isGone(index)) {
+                index++;
+            }
+            StackScrollState.ViewState childViewState = resultState.getViewStateForView(child);
+            childViewState.setNotGoneIndex(core.getNotGoneIndex(index));
+            childViewState.setYTranslation(core.getYTranslation(index));
+            // the start of the child in content space, relative to the scroll position
+            positionIndex.add(child, direction * core.getYTranslation(index),
+                    core.getHeight(index));
+            index++;
+        }
+    }
+
+    private int getChildHeight(StackChild child) {
+        return child.getHeight();
+    }
+
+    public void setLayoutHeight(int layoutHeight) {
+        mLayoutCore.setLayoutHeight(layoutHeight);
+    }
+
+
+
+    public void onReset(StackChild view) {
+
+    }
+
+    class StackScrollAlgorithmState {
+
+        /**
+         * The children from the host view which are not gone.
+         */
+        public final ArrayList<StackChild> visibleChildren = new ArrayList<StackChild>();
+    }
+
+}
@@ -0,0 +1,487 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.androidl.welen.androidl;
+
+import java.util.Arrays;
+
+/**
+ * 这个类保存列表item的状态
+ *
+ * The states are kept in parallel primitive arrays indexed by a dense slot, which every child
+ * remembers in {@link StackChild#getStackStateSlot()}. Slots of removed children are
+ * reused. {@link ViewState} is only a handle on a slot.
+ */
+public class StackScrollState {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    static final int DIRTY_ALPHA = 1;
+    static final int DIRTY_Y_TRANSLATION = 1 << 1;
+    static final int DIRTY_SCALE = 1 << 2;
+    static final int DIRTY_VISIBILITY = 1 << 3;
+    static final int DIRTY_ALL = DIRTY_ALPHA | DIRTY_Y_TRANSLATION | DIRTY_SCALE
+            | DIRTY_VISIBILITY;
+
+    private final StackHost mHostView;
+
+    /**
+     * Owns the layers of the children with a fractional alpha, shared with the animations.
+     */
+    private HardwareLayerManager mLayerManager = new HardwareLayerManager();
+
+    /**
+     * The amount of slots ever used, slots below it are either in use or in the free list.
+     */
+    private int mSlotCount;
+    private StackChild[] mViews = new StackChild[INITIAL_CAPACITY];
+    private ViewState[] mHandles = new ViewState[INITIAL_CAPACITY];
+    private int[] mFreeSlots = new int[INITIAL_CAPACITY];
+    private int mFreeSlotCount;
+
+    // the target properties
+    private float[] mAlpha = new float[INITIAL_CAPACITY];
+    private float[] mYTranslation = new float[INITIAL_CAPACITY];
+    private float[] mScale = new float[INITIAL_CAPACITY];
+    private int[] mHeight = new int[INITIAL_CAPACITY];
+    private int[] mNotGoneIndex = new int[INITIAL_CAPACITY];
+    private long[] mGone = new long[bitsetLength(INITIAL_CAPACITY)];
+    private long[] mClipped = new long[bitsetLength(INITIAL_CAPACITY)];
+
+    // the properties last applied to the views, only valid if the bit in mAppliedValid is set
+    private long[] mAppliedValid = new long[bitsetLength(INITIAL_CAPACITY)];
+    private float[] mAppliedAlpha = new float[INITIAL_CAPACITY];
+    private float[] mAppliedYTranslation = new float[INITIAL_CAPACITY];
+    private float[] mAppliedScale = new float[INITIAL_CAPACITY];
+    private int[] mAppliedVisibility = new int[INITIAL_CAPACITY];
+
+    /**
+     * The properties which changed since the last apply and the slots with a non-empty mask, in
+     * the order they became dirty. A slot can be listed twice if it was reused in between.
+     */
+    private int[] mDirty = new int[INITIAL_CAPACITY];
+    private int[] mDirtySlots = new int[INITIAL_CAPACITY];
+    private int mDirtySlotCount;
+
+    /**
+     * The window of the last windowed pass, both inclusive.
+     */
+    private boolean mWindowed;
+    private boolean mFullPassRequired = true;
+    private int mWindowFirst;
+    private int mWindowLast = -1;
+
+    public StackScrollState(StackHost hostView) {
+        mHostView = hostView;
+    }
+
+    public StackHost getHostView() {
+        return mHostView;
+    }
+
+    public void setLayerManager(HardwareLayerManager layerManager) {
+        mLayerManager = layerManager;
+    }
+
+    public void resetViewStates() {
+        int numChildren = mHostView.getChildCount();
+        for (int i = 0; i < numChildren; i++) {
+            StackChild child = mHostView.getStackChildAt(i);
+            resetViewState(child, getOrCreateSlot(child));
+        }
+        mWindowed = false;
+    }
+
+    /**
+     * Reset only the states of the children inside the window, all others are marked as clipped
+     * and keep their fields. Only the children which left the window since the last pass are
+     * visited, unless a full pass was requested.
+     *
+     * @param first the index of the first child inside the window
+     * @param last the index of the last child inside the window, inclusive
+     */
+    public void resetViewStates(int first, int last) {
+        if (!mWindowed || mFullPassRequired) {
+            int numChildren = mHostView.getChildCount();
+            for (int i = 0; i < numChildren; i++) {
+                StackChild child = mHostView.getStackChildAt(i);
+                setClipped(getOrCreateSlot(child), true);
+            }
+            mFullPassRequired = false;
+        } else {
+            for (int i = mWindowFirst; i <= mWindowLast; i++) {
+                StackChild child = mHostView.getStackChildAt(i);
+                setClipped(child.getStackStateSlot(), true);
+            }
+        }
+        mWindowed = true;
+        mWindowFirst = first;
+        mWindowLast = last;
+        for (int i = first; i <= last; i++) {
+            StackChild child = mHostView.getStackChildAt(i);
+            resetViewState(child, getOrCreateSlot(child));
+        }
+    }
+
+    /**
+     * Visit all children with the next windowed pass, needed whenever children were added,
+     * removed or reordered.
+     */
+    public void requestFullPass() {
+        mFullPassRequired = true;
+    }
+
+    /**
+     * Forget what was applied to the given child, for when something else changed its properties.
+     * The next {@link #apply()} reads them from the view again.
+     */
+    public void markDirty(StackChild child) {
+        int slot = getSlot(child);
+        if (slot >= 0) {
+            invalidateAppliedValues(slot);
+        }
+    }
+
+    /**
+     * Forget what was applied to all children, for example after they were animated.
+     */
+    public void markAllDirty() {
+        for (int slot = 0; slot < mSlotCount; slot++) {
+            if (mViews[slot] != null) {
+                invalidateAppliedValues(slot);
+            }
+        }
+    }
+
+    private void resetViewState(StackChild child, int slot) {
+        // initialize with the default values of the view
+        mHeight[slot] = child.getHeight();
+        setGone(slot, child.getVisibility() == StackChild.VISIBILITY_GONE);
+        setAlpha(slot, 1);
+        setScale(slot, 1f);
+        mNotGoneIndex[slot] = -1;
+        setClipped(slot, false);
+    }
+
+    public ViewState getViewStateForView(StackChild requestedView) {
+        int slot = getSlot(requestedView);
+        return slot >= 0 ? mHandles[slot] : null;
+    }
+
+    public void removeViewStateForView(StackChild child) {
+        int slot = getSlot(child);
+        if (slot < 0) {
+            return;
+        }
+        child.setStackStateSlot(-1);
+        mLayerManager.release(child, HardwareLayerManager.OWNER_STATE);
+        mViews[slot] = null;
+        // it might still be in the dirty list, make apply() skip it
+        mDirty[slot] = 0;
+        mFreeSlots[mFreeSlotCount++] = slot;
+    }
+
+    /**
+     * @return the slot of the child in this state or -1 if it has none
+     */
+    private int getSlot(StackChild child) {
+        if (child == null) {
+            return -1;
+        }
+        int slot = child.getStackStateSlot();
+        return slot >= 0 && slot < mSlotCount && mViews[slot] == child ? slot : -1;
+    }
+
+    private int getOrCreateSlot(StackChild child) {
+        int slot = getSlot(child);
+        if (slot >= 0) {
+            return slot;
+        }
+        if (mFreeSlotCount > 0) {
+            slot = mFreeSlots[--mFreeSlotCount];
+        } else {
+            if (mSlotCount == mViews.length) {
+                grow(mSlotCount * 2);
+            }
+            slot = mSlotCount++;
+            mHandles[slot] = new ViewState(this, slot);
+        }
+        mViews[slot] = child;
+        child.setStackStateSlot(slot);
+        mAlpha[slot] = 1;
+        mYTranslation[slot] = 0;
+        mScale[slot] = 1f;
+        mHeight[slot] = 0;
+        mNotGoneIndex[slot] = -1;
+        setBit(mGone, slot, false);
+        setBit(mClipped, slot, false);
+        invalidateAppliedValues(slot);
+        return slot;
+    }
+
+    private void grow(int capacity) {
+        mViews = Arrays.copyOf(mViews, capacity);
+        mHandles = Arrays.copyOf(mHandles, capacity);
+        mFreeSlots = Arrays.copyOf(mFreeSlots, capacity);
+        mAlpha = Arrays.copyOf(mAlpha, capacity);
+        mYTranslation = Arrays.copyOf(mYTranslation, capacity);
+        mScale = Arrays.copyOf(mScale, capacity);
+        mHeight = Arrays.copyOf(mHeight, capacity);
+        mNotGoneIndex = Arrays.copyOf(mNotGoneIndex, capacity);
+        mGone = Arrays.copyOf(mGone, bitsetLength(capacity));
+        mClipped = Arrays.copyOf(mClipped, bitsetLength(capacity));
+        mAppliedValid = Arrays.copyOf(mAppliedValid, bitsetLength(capacity));
+        mAppliedAlpha = Arrays.copyOf(mAppliedAlpha, capacity);
+        mAppliedYTranslation = Arrays.copyOf(mAppliedYTranslation, capacity);
+        mAppliedScale = Arrays.copyOf(mAppliedScale, capacity);
+        mAppliedVisibility = Arrays.copyOf(mAppliedVisibility, capacity);
+        mDirty = Arrays.copyOf(mDirty, capacity);
+    }
+
+    /**
+     * Apply the properties of the states to the children of the {@link #mHostView}. Only the
+     * states which were changed since the last call are visited and the properties are only
+     * applied if they effectively changed.
+     *
+     * @return the number of states which were applied
+     */
+    public int apply() {
+        int applied = 0;
+        for (int i = 0; i < mDirtySlotCount; i++) {
+            int slot = mDirtySlots[i];
+            if (mDirty[slot] != 0) {
+                applyState(slot, mDirty[slot]);
+                mDirty[slot] = 0;
+                applied++;
+            }
+        }
+        mDirtySlotCount = 0;
+        return applied;
+    }
+
+    /**
+     * @param dirty the DIRTY_* flags of the properties which changed since they were applied
+     */
+    private void applyState(int slot, int dirty) {
+        StackChild child = mViews[slot];
+        if (child == null) {
+            // removed after it became dirty
+            return;
+        }
+        if (!getBit(mAppliedValid, slot)) {
+            // the view was changed by someone else, start from its current properties
+            mAppliedAlpha[slot] = child.getAlpha();
+            mAppliedYTranslation[slot] = child.getTranslationY();
+            mAppliedScale[slot] = child.getScaleX();
+            mAppliedVisibility[slot] = child.getVisibility();
+            setBit(mAppliedValid, slot, true);
+            dirty = DIRTY_ALL;
+        }
+        if (getBit(mClipped, slot)) {
+            // outside of the window, the other fields are stale
+            if (mAppliedVisibility[slot] == StackChild.VISIBILITY_VISIBLE) {
+                child.setVisibility(StackChild.VISIBILITY_INVISIBLE);
+                mAppliedVisibility[slot] = StackChild.VISIBILITY_INVISIBLE;
+            }
+            // the changes of the other fields are dropped, once it is back inside the window
+            // everything is applied again
+            setBit(mAppliedValid, slot, false);
+            return;
+        }
+        if (!getBit(mGone, slot)) {
+            float newAlpha = mAlpha[slot];
+            float newYTranslation = mYTranslation[slot];
+            float newScale = mScale[slot];
+            boolean becomesInvisible = newAlpha == 0.0f;
+            if ((dirty & DIRTY_ALPHA) != 0 && mAppliedAlpha[slot] != newAlpha
+                    && child.getTranslationX() == 0) {
+                // apply layer type
+                boolean becomesFullyVisible = newAlpha == 1.0f;
+                boolean newLayerTypeIsHardware = !becomesInvisible && !becomesFullyVisible;//newAlpha not 0 and 1,set hardware
+                if (newLayerTypeIsHardware) {
+                    // the alpha stays fractional until the next state changes it
+                    mLayerManager.acquire(child, HardwareLayerManager.OWNER_STATE,
+                            HardwareLayerManager.DURATION_UNTIL_RELEASED);
+                } else {
+                    mLayerManager.release(child, HardwareLayerManager.OWNER_STATE);
+                }
+
+                // apply alpha
+                if (!becomesInvisible) {//if newalpha is 0,setvisibility invisibility
+                    child.setAlpha(newAlpha);
+                }
+                // an invisible child keeps its alpha, but it is applied as far as the state goes
+                mAppliedAlpha[slot] = newAlpha;
+            }
+
+            // apply visibility
+            int newVisibility = becomesInvisible
+                    ? StackChild.VISIBILITY_INVISIBLE
+                    : StackChild.VISIBILITY_VISIBLE;
+            if ((dirty & (DIRTY_ALPHA | DIRTY_VISIBILITY)) != 0
+                    && newVisibility != mAppliedVisibility[slot]) {
+                child.setVisibility(newVisibility);
+                mAppliedVisibility[slot] = newVisibility;
+            }
+
+            // apply yTranslation
+            if ((dirty & DIRTY_Y_TRANSLATION) != 0
+                    && mAppliedYTranslation[slot] != newYTranslation) {
+                child.setTranslationY(newYTranslation);
+                mAppliedYTranslation[slot] = newYTranslation;
+            }
+
+            // apply scale
+            if ((dirty & DIRTY_SCALE) != 0 && mAppliedScale[slot] != newScale) {
+                child.setScaleX(newScale);
+                child.setScaleY(newScale);
+                mAppliedScale[slot] = newScale;
+            }
+        }
+    }
+
+    private void setAlpha(int slot, float alpha) {
+        mAlpha[slot] = alpha;
+        if (!getBit(mAppliedValid, slot) || alpha != mAppliedAlpha[slot]) {
+            markDirty(slot, DIRTY_ALPHA);
+        }
+    }
+
+    private void setYTranslation(int slot, float yTranslation) {
+        mYTranslation[slot] = yTranslation;
+        if (!getBit(mAppliedValid, slot) || yTranslation != mAppliedYTranslation[slot]) {
+            markDirty(slot, DIRTY_Y_TRANSLATION);
+        }
+    }
+
+    private void setScale(int slot, float scale) {
+        mScale[slot] = scale;
+        if (!getBit(mAppliedValid, slot) || scale != mAppliedScale[slot]) {
+            markDirty(slot, DIRTY_SCALE);
+        }
+    }
+
+    private void setGone(int slot, boolean gone) {
+        if (getBit(mGone, slot) != gone) {
+            setBit(mGone, slot, gone);
+            // nothing is applied to a gone child, all its properties may be stale
+            markDirty(slot, gone ? DIRTY_VISIBILITY : DIRTY_ALL);
+        }
+    }
+
+    private void setClipped(int slot, boolean clipped) {
+        if (getBit(mClipped, slot) != clipped) {
+            setBit(mClipped, slot, clipped);
+            markDirty(slot, DIRTY_VISIBILITY);
+        }
+    }
+
+    private void invalidateAppliedValues(int slot) {
+        setBit(mAppliedValid, slot, false);
+        markDirty(slot, DIRTY_ALL);
+    }
+
+    private void markDirty(int slot, int flags) {
+        if (mDirty[slot] == 0) {
+            if (mDirtySlotCount == mDirtySlots.length) {
+                mDirtySlots = Arrays.copyOf(mDirtySlots, mDirtySlotCount * 2);
+            }
+            mDirtySlots[mDirtySlotCount++] = slot;
+        }
+        mDirty[slot] |= flags;
+    }
+
+    private static int bitsetLength(int capacity) {
+        return (capacity + 63) >>> 6;
+    }
+
+    private static boolean getBit(long[] bitset, int index) {
+        return (bitset[index >>> 6] & (1L << index)) != 0;
+    }
+
+    private static void setBit(long[] bitset, int index, boolean value) {
+        if (value) {
+            bitset[index >>> 6] |= 1L << index;
+        } else {
+            bitset[index >>> 6] &= ~(1L << index);
+        }
+    }
+
+
+    /**
+     * A handle on the state of a child. The values live in the arrays of the owning
+     * {@link StackScrollState}, the setters record in a dirty mask what differs from the values
+     * last applied to the view.
+     */
+    public static class ViewState {
+
+        private final StackScrollState mOwner;
+        private final int mSlot;
+
+        ViewState(StackScrollState owner, int slot) {
+            mOwner = owner;
+            mSlot = slot;
+        }
+
+        public float getAlpha() {
+            return mOwner.mAlpha[mSlot];
+        }
+
+        public void setAlpha(float alpha) {
+            mOwner.setAlpha(mSlot, alpha);
+        }
+
+        public float getYTranslation() {
+            return mOwner.mYTranslation[mSlot];
+        }
+
+        public void setYTranslation(float yTranslation) {
+            mOwner.setYTranslation(mSlot, yTranslation);
+        }
+
+        public float getScale() {
+            return mOwner.mScale[mSlot];
+        }
+
+        public void setScale(float scale) {
+            mOwner.setScale(mSlot, scale);
+        }
+
+        public int getHeight() {
+            return mOwner.mHeight[mSlot];
+        }
+
+        public boolean isGone() {
+            return getBit(mOwner.mGone, mSlot);
+        }
+
+        public int getNotGoneIndex() {
+            return mOwner.mNotGoneIndex[mSlot];
+        }
+
+        public void setNotGoneIndex(int notGoneIndex) {
+            mOwner.mNotGoneIndex[mSlot] = notGoneIndex;
+        }
+
+        /**
+         * @return whether the child is outside of the window of a windowed pass. All other values
+         *         are left untouched in that case.
+         */
+        public boolean isClipped() {
+            return getBit(mOwner.mClipped, mSlot);
+        }
+    }
+}
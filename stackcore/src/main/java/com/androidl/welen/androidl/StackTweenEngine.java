@@ -0,0 +1,338 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.androidl.welen.androidl;
+
+import java.util.Arrays;
+
+/**
+ * Runs the property animations of the children of a stack. Every tween animates one property of
+ * one child, all tweens are kept in parallel primitive arrays and advanced together in
+ * {@link #doFrame(long)}, so the whole stack costs one frame callback no matter how many children
+ * are animating. A value is only written to its child if it changed since the last frame.
+ *
+ * Tweens are identified by an id, which is reused once the tween ended or was cancelled.
+ */
+public class StackTweenEngine {
+
+    public static final int PROPERTY_Y_TRANSLATION = 0;
+    public static final int PROPERTY_ALPHA = 1;
+
+    /**
+     * Both the x and the y scale.
+     */
+    public static final int PROPERTY_SCALE = 2;
+    public static final int PROPERTY_COUNT = 3;
+
+    public static final int INTERPOLATOR_LINEAR = 0;
+
+    /**
+     * The curve of android.view.animation.DecelerateInterpolator with a factor of 1.
+     */
+    public static final int INTERPOLATOR_DECELERATE = 1;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * The start time of a tween which did not see a frame yet.
+     */
+    private static final long NOT_STARTED = Long.MIN_VALUE;
+
+    public interface FrameScheduler {
+
+        /**
+         * Call {@link #doFrame(long)} with the time of the next frame.
+         */
+        void scheduleFrame();
+    }
+
+    public interface Listener {
+
+        /**
+         * A tween reached its end or was cancelled, its id is already free again.
+         */
+        void onTweenEnd(StackChild child, int property, float endValue, boolean cancelled);
+
+        /**
+         * The last running tween reached its end.
+         */
+        void onAllTweensFinished();
+    }
+
+    private final FrameScheduler mScheduler;
+    private final Listener mListener;
+    private boolean mFrameScheduled;
+
+    /**
+     * The time of the last frame in milliseconds, or -1 before the first one.
+     */
+    private long mFrameTime = -1;
+
+    private int mCapacity;
+    private StackChild[] mTargets = new StackChild[INITIAL_CAPACITY];
+    private int[] mProperties = new int[INITIAL_CAPACITY];
+    private int[] mInterpolators = new int[INITIAL_CAPACITY];
+    private float[] mStartValues = new float[INITIAL_CAPACITY];
+    private float[] mEndValues = new float[INITIAL_CAPACITY];
+    private float[] mLastValues = new float[INITIAL_CAPACITY];
+    private long[] mStartTimes = new long[INITIAL_CAPACITY];
+    private long[] mDelays = new long[INITIAL_CAPACITY];
+    private long[] mDurations = new long[INITIAL_CAPACITY];
+
+    /**
+     * The ids of the running tweens in no particular order and for every id its index in there,
+     * or -1 if the id is free.
+     */
+    private int[] mActive = new int[INITIAL_CAPACITY];
+    private int[] mActiveIndices = new int[INITIAL_CAPACITY];
+    private int mActiveCount;
+    private int[] mFreeIds = new int[INITIAL_CAPACITY];
+    private int mFreeCount;
+
+    /**
+     * The tweens which reached their end in the current frame. They are only reported once all
+     * tweens were advanced, as the listener may start and cancel tweens.
+     */
+    private int[] mEndedIds = new int[INITIAL_CAPACITY];
+
+    public StackTweenEngine(FrameScheduler scheduler, Listener listener) {
+        mScheduler = scheduler;
+        mListener = listener;
+    }
+
+    /**
+     * Start a tween, it begins with the next frame after the delay.
+     *
+     * @return the id of the tween
+     */
+    public int start(StackChild child, int property, float from, float to, long duration,
+            long delay, int interpolator) {
+        int id = obtainId();
+        mTargets[id] = child;
+        mProperties[id] = property;
+        mInterpolators[id] = interpolator;
+        mStartValues[id] = from;
+        mEndValues[id] = to;
+        mLastValues[id] = from;
+        mStartTimes[id] = NOT_STARTED;
+        mDelays[id] = delay;
+        mDurations[id] = duration;
+        mActiveIndices[id] = mActiveCount;
+        mActive[mActiveCount++] = id;
+        if (!mFrameScheduled) {
+            mFrameScheduled = true;
+            mScheduler.scheduleFrame();
+        }
+        return id;
+    }
+
+    /**
+     * Change the start and end value of a running tween without changing its timing. The value
+     * for the current play time is applied right away.
+     */
+    public void retarget(int id, float from, float to) {
+        mStartValues[id] = from;
+        mEndValues[id] = to;
+        if (mStartTimes[id] != NOT_STARTED && mFrameTime >= mStartTimes[id]) {
+            apply(id, getFraction(id, mFrameTime));
+        }
+    }
+
+    /**
+     * Stop a tween where it is. Cancelling never reports {@link Listener#onAllTweensFinished()}.
+     */
+    public void cancel(int id) {
+        if (isActive(id)) {
+            end(id, true);
+        }
+    }
+
+    public boolean isActive(int id) {
+        return id >= 0 && id < mCapacity && mActiveIndices[id] >= 0;
+    }
+
+    /**
+     * @return whether the tween is active and its delay is over
+     */
+    public boolean isRunning(int id) {
+        return isActive(id) && mStartTimes[id] != NOT_STARTED && mFrameTime >= mStartTimes[id];
+    }
+
+    public long getDuration(int id) {
+        return mDurations[id];
+    }
+
+    /**
+     * @return the time the tween is running already, 0 while it is delayed
+     */
+    public long getPlayTime(int id) {
+        if (!isRunning(id)) {
+            return 0;
+        }
+        return Math.min(mFrameTime - mStartTimes[id], mDurations[id]);
+    }
+
+    public float getStartValue(int id) {
+        return mStartValues[id];
+    }
+
+    public float getEndValue(int id) {
+        return mEndValues[id];
+    }
+
+    /**
+     * @return the number of active tweens
+     */
+    public int getActiveCount() {
+        return mActiveCount;
+    }
+
+    /**
+     * Advance all tweens to the given time and write their values.
+     *
+     * @param frameTime the time of the frame in milliseconds
+     */
+    public void doFrame(long frameTime) {
+        mFrameScheduled = false;
+        mFrameTime = frameTime;
+        int endedCount = 0;
+        int i = 0;
+        while (i < mActiveCount) {
+            int id = mActive[i];
+            if (mStartTimes[id] == NOT_STARTED) {
+                mStartTimes[id] = frameTime + mDelays[id];
+            }
+            if (frameTime < mStartTimes[id]) {
+                // still delayed
+                i++;
+                continue;
+            }
+            float fraction = getFraction(id, frameTime);
+            apply(id, fraction);
+            if (fraction >= 1f) {
+                // the last active tween takes this index, the id stays taken until reported
+                removeActive(id);
+                mEndedIds[endedCount++] = id;
+            } else {
+                i++;
+            }
+        }
+        for (int j = 0; j < endedCount; j++) {
+            notifyEnd(mEndedIds[j], false);
+        }
+        if (endedCount > 0 && mActiveCount == 0) {
+            mListener.onAllTweensFinished();
+        }
+        if (mActiveCount > 0 && !mFrameScheduled) {
+            mFrameScheduled = true;
+            mScheduler.scheduleFrame();
+        }
+    }
+
+    private float getFraction(int id, long frameTime) {
+        long duration = mDurations[id];
+        if (duration <= 0) {
+            return 1f;
+        }
+        float fraction = (float) (frameTime - mStartTimes[id]) / duration;
+        return Math.max(0f, Math.min(1f, fraction));
+    }
+
+    private void apply(int id, float fraction) {
+        float start = mStartValues[id];
+        float value = fraction >= 1f
+                ? mEndValues[id]
+                : start + (mEndValues[id] - start) * interpolate(mInterpolators[id], fraction);
+        if (value == mLastValues[id]) {
+            return;
+        }
+        mLastValues[id] = value;
+        StackChild child = mTargets[id];
+        switch (mProperties[id]) {
+            case PROPERTY_Y_TRANSLATION:
+                child.setTranslationY(value);
+                break;
+            case PROPERTY_ALPHA:
+                child.setAlpha(value);
+                break;
+            case PROPERTY_SCALE:
+                child.setScaleX(value);
+                child.setScaleY(value);
+                break;
+        }
+    }
+
+    static float interpolate(int interpolator, float input) {
+        switch (interpolator) {
+            case INTERPOLATOR_DECELERATE:
+                return 1f - (1f - input) * (1f - input);
+            default:
+                return input;
+        }
+    }
+
+    private void end(int id, boolean cancelled) {
+        removeActive(id);
+        notifyEnd(id, cancelled);
+    }
+
+    /**
+     * Remove the tween from the active ones, the last one takes its place.
+     */
+    private void removeActive(int id) {
+        int index = mActiveIndices[id];
+        int last = mActive[--mActiveCount];
+        mActive[index] = last;
+        mActiveIndices[last] = index;
+        mActiveIndices[id] = -1;
+    }
+
+    /**
+     * Free the id of a tween which was removed from the active ones and report it.
+     */
+    private void notifyEnd(int id, boolean cancelled) {
+        StackChild child = mTargets[id];
+        mTargets[id] = null;
+        mFreeIds[mFreeCount++] = id;
+        mListener.onTweenEnd(child, mProperties[id], mEndValues[id], cancelled);
+    }
+
+    private int obtainId() {
+        if (mFreeCount > 0) {
+            return mFreeIds[--mFreeCount];
+        }
+        if (mCapacity == mTargets.length) {
+            grow(mCapacity * 2);
+        }
+        return mCapacity++;
+    }
+
+    private void grow(int capacity) {
+        mTargets = Arrays.copyOf(mTargets, capacity);
+        mProperties = Arrays.copyOf(mProperties, capacity);
+        mInterpolators = Arrays.copyOf(mInterpolators, capacity);
+        mStartValues = Arrays.copyOf(mStartValues, capacity);
+        mEndValues = Arrays.copyOf(mEndValues, capacity);
+        mLastValues = Arrays.copyOf(mLastValues, capacity);
+        mStartTimes = Arrays.copyOf(mStartTimes, capacity);
+        mDelays = Arrays.copyOf(mDelays, capacity);
+        mDurations = Arrays.copyOf(mDurations, capacity);
+        mActive = Arrays.copyOf(mActive, capacity);
+        mActiveIndices = Arrays.copyOf(mActiveIndices, capacity);
+        mFreeIds = Arrays.copyOf(mFreeIds, capacity);
+        mEndedIds = Arrays.copyOf(mEndedIds, capacity);
+    }
+}
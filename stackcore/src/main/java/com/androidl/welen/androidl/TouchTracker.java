@@ -0,0 +1,239 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.androidl.welen.androidl;
+
+/**
+ * The recent positions of one pointer, including the historical samples a touch panel batches
+ * into one move event. It resamples the position to the time of a frame and estimates the
+ * velocity with a least squares fit, so both the scroll and the fling see every sample.
+ *
+ * The sample times are in milliseconds of the uptime clock the events are stamped with.
+ */
+public class TouchTracker {
+
+    /**
+     * Enough samples to cover the velocity horizon on a 240Hz touch panel.
+     */
+    private static final int HISTORY_SIZE = 32;
+
+    /**
+     * Only the samples this long before the newest one are used for the velocity.
+     */
+    private static final long HORIZON_MS = 100;
+
+    /**
+     * The position is only extrapolated if the last two samples are this far apart, and never
+     * further than {@link #MAX_PREDICTION_MS} or half their distance.
+     */
+    private static final long RESAMPLE_MIN_DELTA_MS = 2;
+    private static final long RESAMPLE_MAX_DELTA_MS = 20;
+    private static final long MAX_PREDICTION_MS = 8;
+
+    private final long[] mTimes = new long[HISTORY_SIZE];
+    private final float[] mX = new float[HISTORY_SIZE];
+    private final float[] mY = new float[HISTORY_SIZE];
+
+    /**
+     * The slot of the newest sample and the number of samples.
+     */
+    private int mHead;
+    private int mCount;
+
+    private float mResampledX;
+    private float mResampledY;
+    private float mXVelocity;
+    private float mYVelocity;
+
+    public void clear() {
+        mCount = 0;
+        mXVelocity = 0;
+        mYVelocity = 0;
+    }
+
+    /**
+     * Add the next position of the pointer. A sample older than the newest one is dropped, one at
+     * the same time replaces it.
+     */
+    public void addSample(long timeMillis, float x, float y) {
+        if (mCount > 0) {
+            long newestTime = mTimes[mHead];
+            if (timeMillis < newestTime) {
+                return;
+            }
+            if (timeMillis > newestTime) {
+                mHead = (mHead + 1) % HISTORY_SIZE;
+                mCount = Math.min(mCount + 1, HISTORY_SIZE);
+            }
+        } else {
+            mCount = 1;
+        }
+        mTimes[mHead] = timeMillis;
+        mX[mHead] = x;
+        mY[mHead] = y;
+    }
+
+    public int getSampleCount() {
+        return mCount;
+    }
+
+    public float getLatestX() {
+        return mCount > 0 ? mX[mHead] : 0;
+    }
+
+    public float getLatestY() {
+        return mCount > 0 ? mY[mHead] : 0;
+    }
+
+    /**
+     * Compute the position of the pointer at the given time into {@link #getResampledX()} and
+     * {@link #getResampledY()}. Between two samples it is interpolated, after the newest one it
+     * is extrapolated from the last two for a few milliseconds.
+     */
+    public void resample(long timeMillis) {
+        if (mCount == 0) {
+            mResampledX = 0;
+            mResampledY = 0;
+            return;
+        }
+        int newer = mHead;
+        if (timeMillis >= mTimes[newer]) {
+            mResampledX = mX[newer];
+            mResampledY = mY[newer];
+            if (mCount < 2) {
+                return;
+            }
+            int older = slot(1);
+            long delta = mTimes[newer] - mTimes[older];
+            if (delta < RESAMPLE_MIN_DELTA_MS || delta > RESAMPLE_MAX_DELTA_MS) {
+                return;
+            }
+            long prediction = Math.min(timeMillis - mTimes[newer],
+                    Math.min(MAX_PREDICTION_MS, delta / 2));
+            float alpha = (float) prediction / delta;
+            mResampledX += (mX[newer] - mX[older]) * alpha;
+            mResampledY += (mY[newer] - mY[older]) * alpha;
+            return;
+        }
+        for (int i = 1; i < mCount; i++) {
+            int older = slot(i);
+            if (mTimes[older] <= timeMillis) {
+                float alpha = (float) (timeMillis - mTimes[older])
+                        / (mTimes[newer] - mTimes[older]);
+                mResampledX = mX[older] + (mX[newer] - mX[older]) * alpha;
+                mResampledY = mY[older] + (mY[newer] - mY[older]) * alpha;
+                return;
+            }
+            newer = older;
+        }
+        // before the oldest sample
+        mResampledX = mX[newer];
+        mResampledY = mY[newer];
+    }
+
+    public float getResampledX() {
+        return mResampledX;
+    }
+
+    public float getResampledY() {
+        return mResampledY;
+    }
+
+    /**
+     * Estimate the velocity at the newest sample by fitting a quadratic through the samples of
+     * the last {@link #HORIZON_MS}, or a line if there are only two of them.
+     *
+     * @param units the units of the velocity in milliseconds, 1000 for pixels per second
+     * @param maxVelocity the highest absolute velocity which is reported
+     */
+    public void computeCurrentVelocity(int units, float maxVelocity) {
+        mXVelocity = 0;
+        mYVelocity = 0;
+        if (mCount < 2) {
+            return;
+        }
+        long newestTime = mTimes[mHead];
+        // the sums of the normal equations, the time is relative to the newest sample
+        double s1 = 0, s2 = 0, s3 = 0, s4 = 0;
+        double x0 = 0, x1 = 0, x2 = 0;
+        double y0 = 0, y1 = 0, y2 = 0;
+        int n = 0;
+        float newestX = mX[mHead];
+        float newestY = mY[mHead];
+        for (int i = 0; i < mCount; i++) {
+            int s = slot(i);
+            long age = newestTime - mTimes[s];
+            if (age > HORIZON_MS) {
+                break;
+            }
+            double t = -age;
+            double tt = t * t;
+            double x = mX[s] - newestX;
+            double y = mY[s] - newestY;
+            s1 += t;
+            s2 += tt;
+            s3 += tt * t;
+            s4 += tt * tt;
+            x0 += x;
+            x1 += x * t;
+            x2 += x * tt;
+            y0 += y;
+            y1 += y * t;
+            y2 += y * tt;
+            n++;
+        }
+        if (n < 2) {
+            return;
+        }
+        double xSlope;
+        double ySlope;
+        // the derivative at t = 0 of c + b * t + a * t^2 is b, solved with Cramer's rule
+        double det = n * (s2 * s4 - s3 * s3) - s1 * (s1 * s4 - s2 * s3)
+                + s2 * (s1 * s3 - s2 * s2);
+        if (n >= 3 && Math.abs(det) > 1e-6) {
+            xSlope = (n * (x1 * s4 - s3 * x2) - x0 * (s1 * s4 - s2 * s3)
+                    + s2 * (s1 * x2 - s2 * x1)) / det;
+            ySlope = (n * (y1 * s4 - s3 * y2) - y0 * (s1 * s4 - s2 * s3)
+                    + s2 * (s1 * y2 - s2 * y1)) / det;
+        } else {
+            double lineDet = n * s2 - s1 * s1;
+            if (lineDet == 0) {
+                return;
+            }
+            xSlope = (n * x1 - s1 * x0) / lineDet;
+            ySlope = (n * y1 - s1 * y0) / lineDet;
+        }
+        // the slope is per millisecond
+        mXVelocity = clamp((float) (xSlope * units), maxVelocity);
+        mYVelocity = clamp((float) (ySlope * units), maxVelocity);
+    }
+
+    public float getXVelocity() {
+        return mXVelocity;
+    }
+
+    public float getYVelocity() {
+        return mYVelocity;
+    }
+
+    private int slot(int age) {
+        return (mHead - age + HISTORY_SIZE) % HISTORY_SIZE;
+    }
+
+    private static float clamp(float velocity, float maxVelocity) {
+        return Math.max(-maxVelocity, Math.min(maxVelocity, velocity));
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.androidl.welen.androidl;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Checks which children the {@link AnimationDegradationPolicy} snaps, with the positions on
+ * screen computed like the layout does in both orientations.
+ */
+public class AnimationDegradationPolicyTest {
+
+    private static final int LAYOUT_HEIGHT = 1920;
+    private static final int CHILD_HEIGHT = 200;
+
+    private final AnimationDegradationPolicy mPolicy = new AnimationDegradationPolicy();
+
+    /**
+     * @return the top on screen of a child at the given content position, scrolled to the top
+     */
+    private static float getScreenTop(StackOrientation orientation, int position) {
+        return orientation.getChildTop(LAYOUT_HEIGHT, CHILD_HEIGHT)
+                + orientation.getTranslation(position, 0);
+    }
+
+    private boolean isOffscreen(StackOrientation orientation, int fromPosition, int toPosition) {
+        return mPolicy.isOffscreen(getScreenTop(orientation, fromPosition),
+                getScreenTop(orientation, toPosition), CHILD_HEIGHT, LAYOUT_HEIGHT);
+    }
+
+    @Test
+    public void visibleChildrenAreAnimatedInNormalMode() {
+        for (int position = 0; position < LAYOUT_HEIGHT; position += CHILD_HEIGHT) {
+            assertFalse(isOffscreen(StackOrientation.NORMAL, position, position + 100));
+        }
+    }
+
+    @Test
+    public void visibleChildrenAreAnimatedInRevertMode() {
+        for (int position = 0; position < LAYOUT_HEIGHT; position += CHILD_HEIGHT) {
+            assertFalse(isOffscreen(StackOrientation.REVERT, position, position + 100));
+        }
+    }
+
+    @Test
+    public void childrenPastTheEndAreSnapped() {
+        for (StackOrientation orientation : new StackOrientation[] {
+                StackOrientation.NORMAL, StackOrientation.REVERT }) {
+            assertTrue(isOffscreen(orientation, LAYOUT_HEIGHT, LAYOUT_HEIGHT + 500));
+            assertTrue(isOffscreen(orientation, -CHILD_HEIGHT, -CHILD_HEIGHT - 500));
+        }
+    }
+
+    @Test
+    public void childrenMovingIntoTheViewportAreAnimated() {
+        for (StackOrientation orientation : new StackOrientation[] {
+                StackOrientation.NORMAL, StackOrientation.REVERT }) {
+            assertFalse(isOffscreen(orientation, LAYOUT_HEIGHT + 500, LAYOUT_HEIGHT - 100));
+            assertFalse(isOffscreen(orientation, 100, LAYOUT_HEIGHT + 500));
+        }
+    }
+
+    @Test
+    public void disabledPolicyAnimatesOffscreenChildren() {
+        AnimationDegradationPolicy policy = AnimationDegradationPolicy.createDisabled();
+        assertFalse(policy.isOffscreen(-1000, -2000, CHILD_HEIGHT, LAYOUT_HEIGHT));
+        assertTrue(policy.canStartAnimation(Integer.MAX_VALUE - 1));
+    }
+}
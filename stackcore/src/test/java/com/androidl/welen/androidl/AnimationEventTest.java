@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.androidl.welen.androidl;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+
+/**
+ * Checks the precomputed filter and length tables of {@link AnimationEvent} against combining
+ * the filters of the types one by one.
+ */
+public class AnimationEventTest {
+
+    private static final int[] FLAGS = new int[] {
+            AnimationFilter.ANIMATE_ALPHA,
+            AnimationFilter.ANIMATE_Y,
+            AnimationFilter.ANIMATE_Z,
+            AnimationFilter.ANIMATE_SCALE,
+            AnimationFilter.ANIMATE_HEIGHT,
+            AnimationFilter.ANIMATE_TOP_INSET,
+            AnimationFilter.ANIMATE_DIMMED,
+            AnimationFilter.ANIMATE_DARK,
+            AnimationFilter.ANIMATE_HIDE_SENSITIVE,
+            AnimationFilter.HAS_DELAYS
+    };
+
+    private static final int TYPE_COUNT = AnimationEvent.FILTERS.length;
+
+    @Test
+    public void everyTypeSetMatchesTheFieldByFieldCombination() {
+        for (int types = 0; types < 1 << TYPE_COUNT; types++) {
+            int flags = 0;
+            long length = 0;
+            for (int type = 0; type < TYPE_COUNT; type++) {
+                if ((types & 1 << type) == 0) {
+                    continue;
+                }
+                AnimationFilter filter = AnimationEvent.FILTERS[type];
+                for (int flag : FLAGS) {
+                    if (filter.has(flag)) {
+                        flags |= flag;
+                    }
+                }
+                length = Math.max(length, AnimationEvent.LENGTHS[type]);
+            }
+            assertEquals("filter of " + Integer.toBinaryString(types), flags,
+                    AnimationEvent.combineFilter(types));
+            assertEquals("length of " + Integer.toBinaryString(types), length,
+                    AnimationEvent.combineLength(types));
+        }
+    }
+
+    @Test
+    public void eventListsCombineLikeTheirTypes() {
+        ArrayList<AnimationEvent> events = new ArrayList<AnimationEvent>();
+        AnimationFilter filter = new AnimationFilter();
+        for (int type = 0; type < TYPE_COUNT; type++) {
+            events.add(new AnimationEvent(null, type));
+            int types = AnimationEvent.getTypes(events);
+            assertEquals((1 << type + 1) - 1, types);
+            filter.applyCombination(events);
+            assertEquals(AnimationEvent.combineFilter(types), filter.flags);
+            assertEquals(AnimationEvent.combineLength(types), AnimationEvent.combineLength(events));
+        }
+    }
+
+    @Test
+    public void customLengthsCombineByTheirActualLength() {
+        ArrayList<AnimationEvent> events = new ArrayList<AnimationEvent>();
+        events.add(new AnimationEvent(null, 0));
+        long longer = AnimationEvent.combineLength(1) + 1000;
+        events.add(new AnimationEvent(null, 1, longer));
+        assertEquals(longer, AnimationEvent.combineLength(events));
+
+        // a custom length which is shorter doesn't count the default length of its type
+        events.clear();
+        events.add(new AnimationEvent(null, 1, 1));
+        assertEquals(1, AnimationEvent.combineLength(events));
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.androidl.welen.androidl;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+/**
+ * Checks the sweep of {@link CascadeDelays} against the per event loop it replaced in the
+ * StackStateAnimator.
+ */
+public class CascadeDelaysTest {
+
+    private static final long DELAY_PER_ELEMENT_INTERRUPTING = 80;
+    private static final long DELAY_PER_ELEMENT_MANUAL = 32;
+    private static final int ROUNDS = 20000;
+
+    private static final int EVENT_ADD = 0;
+    private static final int EVENT_REMOVE = 1;
+    private static final int EVENT_REMOVE_SWIPED_OUT = 2;
+
+    @Test
+    public void matchesThePerEventLoop() {
+        Random random = new Random(3);
+        CascadeDelays delays = new CascadeDelays(DELAY_PER_ELEMENT_INTERRUPTING);
+        for (int round = 0; round < ROUNDS; round++) {
+            int childCount = 1 + random.nextInt(40);
+            int eventCount = random.nextInt(8);
+            int[] types = new int[eventCount];
+            int[] indices = new int[eventCount];
+            delays.reset();
+            for (int i = 0; i < eventCount; i++) {
+                types[i] = random.nextInt(3);
+                indices[i] = random.nextInt(childCount);
+                if (types[i] == EVENT_ADD) {
+                    delays.addInsertion(indices[i]);
+                } else {
+                    delays.addRemoval(indices[i], getDelayPerElement(types[i]));
+                }
+            }
+            // the children past the computed ones are calculated on demand
+            delays.compute(random.nextBoolean() ? childCount : childCount / 2);
+            for (int ownIndex = 0; ownIndex < childCount; ownIndex++) {
+                assertEquals("round " + round + " child " + ownIndex,
+                        calculateDelay(ownIndex, types, indices), delays.getDelay(ownIndex));
+            }
+        }
+    }
+
+    private static long getDelayPerElement(int type) {
+        return type == EVENT_REMOVE_SWIPED_OUT
+                ? DELAY_PER_ELEMENT_MANUAL
+                : DELAY_PER_ELEMENT_INTERRUPTING;
+    }
+
+    /**
+     * The former StackStateAnimator.calculateChildAnimationDelay, over the not gone indices of
+     * the changing views and the views after the removed ones.
+     */
+    private static long calculateDelay(int ownIndex, int[] types, int[] indices) {
+        int maxDifference = CascadeDelays.MAX_INDEX_DIFFERENCE;
+        long minDelay = 0;
+        for (int i = 0; i < types.length; i++) {
+            long delayPerElement = DELAY_PER_ELEMENT_INTERRUPTING;
+            if (types[i] == EVENT_ADD) {
+                int difference = Math.abs(ownIndex - indices[i]);
+                difference = Math.max(0, Math.min(maxDifference, difference - 1));
+                long delay = (maxDifference - difference) * delayPerElement;
+                minDelay = Math.max(delay, minDelay);
+            } else {
+                if (types[i] == EVENT_REMOVE_SWIPED_OUT) {
+                    delayPerElement = DELAY_PER_ELEMENT_MANUAL;
+                }
+                int index = ownIndex;
+                int nextIndex = indices[i];
+                if (index >= nextIndex) {
+                    // we only have the view afterwards
+                    index++;
+                }
+                int difference = Math.abs(index - nextIndex);
+                difference = Math.max(0, Math.min(maxDifference, difference - 1));
+                long delay = difference * delayPerElement;
+                minDelay = Math.max(delay, minDelay);
+            }
+        }
+        return minDelay;
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.androidl.welen.androidl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Checks the timing and the rest of the {@link ExponentialFlingCurve}.
+ */
+public class ExponentialFlingCurveTest {
+
+    private static final float[] VELOCITIES = new float[] {
+            100f, 500f, 1500f, 4000f, 9000f, 20000f
+    };
+
+    private final ExponentialFlingCurve mCurve = new ExponentialFlingCurve(
+            ExponentialFlingCurve.DEFAULT_FRICTION, ExponentialFlingCurve.DEFAULT_REST_VELOCITY);
+
+    @Test
+    public void comesToRestAtTheRestVelocity() {
+        for (float velocity : VELOCITIES) {
+            long duration = mCurve.getDuration(velocity);
+            float last = Math.abs(mCurve.getVelocity(velocity, duration - 1));
+            assertTrue("slower than the rest velocity: " + last,
+                    last >= ExponentialFlingCurve.DEFAULT_REST_VELOCITY);
+            assertEquals(ExponentialFlingCurve.DEFAULT_REST_VELOCITY, last, 1f);
+            assertEquals(0f, mCurve.getVelocity(velocity, duration), 0);
+        }
+    }
+
+    @Test
+    public void offsetIsMonotonicAndEndsAtTheDistance() {
+        for (float velocity : VELOCITIES) {
+            for (int sign = -1; sign <= 1; sign += 2) {
+                float v = sign * velocity;
+                long duration = mCurve.getDuration(v);
+                float previous = 0;
+                for (long time = 0; time <= duration; time++) {
+                    float offset = mCurve.getOffset(v, time);
+                    assertTrue((offset - previous) * sign >= 0);
+                    previous = offset;
+                }
+                assertEquals(mCurve.getDistance(v), mCurve.getOffset(v, duration), 0);
+                assertEquals(mCurve.getDistance(v), mCurve.getOffset(v, duration * 2), 0);
+                assertTrue(mCurve.getDistance(v) * sign > 0);
+            }
+        }
+    }
+
+    @Test
+    public void velocityIsTheSlopeOfTheOffset() {
+        for (float velocity : VELOCITIES) {
+            long duration = mCurve.getDuration(velocity);
+            for (long time = 1; time < duration - 1; time += 16) {
+                float slope = (mCurve.getOffset(velocity, time + 1)
+                        - mCurve.getOffset(velocity, time - 1)) / 2f * 1000f;
+                float expected = mCurve.getVelocity(velocity, time);
+                assertEquals("at " + time, expected, slope, 1f + expected * 0.01f);
+            }
+        }
+    }
+
+    @Test
+    public void slowFlingDoesNotMove() {
+        float slow = ExponentialFlingCurve.DEFAULT_REST_VELOCITY / 2;
+        assertEquals(0, mCurve.getDuration(slow));
+        assertEquals(0f, mCurve.getDistance(slow), 0);
+        assertEquals(0f, mCurve.getVelocity(slow, 0), 0);
+    }
+}
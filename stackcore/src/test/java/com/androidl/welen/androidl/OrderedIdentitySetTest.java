@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.androidl.welen.androidl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.LinkedHashSet;
+import java.util.Random;
+
+/**
+ * Runs random operations on an {@link OrderedIdentitySet} and a LinkedHashSet side by side.
+ */
+public class OrderedIdentitySetTest {
+
+    private static final int ITEM_COUNT = 200;
+    private static final int ROUNDS = 2000;
+    private static final int OPERATIONS_PER_ROUND = 500;
+
+    @Test
+    public void behavesLikeALinkedHashSet() {
+        Random random = new Random(1);
+        Object[] items = new Object[ITEM_COUNT];
+        for (int i = 0; i < ITEM_COUNT; i++) {
+            items[i] = new Object();
+        }
+        for (int round = 0; round < ROUNDS; round++) {
+            OrderedIdentitySet<Object> set = new OrderedIdentitySet<Object>();
+            LinkedHashSet<Object> reference = new LinkedHashSet<Object>();
+            for (int operation = 0; operation < OPERATIONS_PER_ROUND; operation++) {
+                Object item = items[random.nextInt(ITEM_COUNT)];
+                int kind = random.nextInt(10);
+                if (kind < 5) {
+                    assertEquals(reference.add(item), set.add(item));
+                } else if (kind < 8) {
+                    assertEquals(reference.remove(item), set.remove(item));
+                } else if (kind < 9) {
+                    assertEquals(reference.contains(item), set.contains(item));
+                } else if (random.nextInt(20) == 0) {
+                    set.clear();
+                    reference.clear();
+                } else {
+                    assertSameOrder(reference, set);
+                }
+            }
+            assertSameOrder(reference, set);
+        }
+    }
+
+    @Test
+    public void comparesByIdentity() {
+        OrderedIdentitySet<String> set = new OrderedIdentitySet<String>();
+        String first = new String("row");
+        String second = new String("row");
+        set.add(first);
+        assertTrue(set.add(second));
+        assertEquals(2, set.size());
+        assertEquals(1, set.indexOf(second));
+        set.remove(first);
+        assertFalse(set.contains(first));
+        assertTrue(set.contains(second));
+    }
+
+    private static void assertSameOrder(LinkedHashSet<Object> reference,
+            OrderedIdentitySet<Object> set) {
+        assertEquals(reference.size(), set.size());
+        assertEquals(reference.isEmpty(), set.isEmpty());
+        int index = 0;
+        for (Object item : reference) {
+            assertSame(item, set.get(index));
+            assertEquals(index, set.indexOf(item));
+            index++;
+        }
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.androidl.welen.androidl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+
+/**
+ * Runs the {@link PhysicsScroller} with a simulated 60fps clock and checks the trajectories.
+ */
+public class PhysicsScrollerTest {
+
+    private static final long FRAME_MILLIS = 16;
+    private static final int MAX_FRAMES = 2000;
+    private static final long START_TIME = 1000;
+
+    private static final float[] VELOCITIES = new float[] {
+            60f, 250f, 800f, 2000f, 4000f, 8000f, 16000f
+    };
+
+    private static FlingCurve[] createCurves() {
+        return new FlingCurve[] {
+                new SplineFlingCurve(3f, SplineFlingCurve.DEFAULT_FRICTION),
+                new ExponentialFlingCurve(ExponentialFlingCurve.DEFAULT_FRICTION,
+                        ExponentialFlingCurve.DEFAULT_REST_VELOCITY)
+        };
+    }
+
+    /**
+     * @return the positions of all frames until the scroller came to rest
+     */
+    private static ArrayList<Integer> run(PhysicsScroller scroller, long startTime) {
+        ArrayList<Integer> positions = new ArrayList<Integer>();
+        long time = startTime;
+        while (scroller.computeScrollOffset(time)) {
+            positions.add(scroller.getCurrY());
+            if (positions.size() > MAX_FRAMES) {
+                fail("did not come to rest after " + MAX_FRAMES + " frames");
+            }
+            time += FRAME_MILLIS;
+        }
+        assertTrue(scroller.isFinished());
+        return positions;
+    }
+
+    @Test
+    public void springBackNeverOscillates() {
+        PhysicsScroller scroller = new PhysicsScroller(createCurves()[0]);
+        for (int offset = 1; offset <= 2000; offset += 37) {
+            scroller.springBack(-offset, 0, 1000, START_TIME);
+            ArrayList<Integer> positions = run(scroller, START_TIME);
+            assertApproachesEdge(positions, 0, -1);
+            assertEquals(0, last(positions));
+
+            scroller.springBack(1000 + offset, 0, 1000, START_TIME);
+            positions = run(scroller, START_TIME);
+            assertApproachesEdge(positions, 1000, 1);
+            assertEquals(1000, last(positions));
+        }
+    }
+
+    @Test
+    public void springWithOutwardVelocityTurnsOnlyOnce() {
+        PhysicsScroller scroller = new PhysicsScroller(createCurves()[0]);
+        for (float velocity : VELOCITIES) {
+            // past the start edge and still moving away from it
+            scroller.fling(-50, -velocity, 0, 1000, START_TIME);
+            ArrayList<Integer> positions = run(scroller, START_TIME);
+            assertStaysOutside(positions, 0, -1);
+            assertAtMostOneTurn(positions);
+            assertEquals(0, last(positions));
+
+            scroller.fling(1050, velocity, 0, 1000, START_TIME);
+            positions = run(scroller, START_TIME);
+            assertStaysOutside(positions, 1000, 1);
+            assertAtMostOneTurn(positions);
+            assertEquals(1000, last(positions));
+        }
+    }
+
+    @Test
+    public void flingPastAnEdgeSpringsBackWithoutOscillating() {
+        for (FlingCurve curve : createCurves()) {
+            PhysicsScroller scroller = new PhysicsScroller(curve);
+            scroller.fling(0, 8000, 0, 500, START_TIME);
+            ArrayList<Integer> positions = run(scroller, START_TIME);
+            assertTrue("overshoots the edge", max(positions) > 500);
+            assertAtMostOneTurn(positions);
+            assertEquals(500, last(positions));
+
+            scroller.fling(500, -8000, 0, 500, START_TIME);
+            positions = run(scroller, START_TIME);
+            assertTrue("overshoots the edge", min(positions) < 0);
+            assertAtMostOneTurn(positions);
+            assertEquals(0, last(positions));
+        }
+    }
+
+    @Test
+    public void springThrownBackIntoTheRangeHandsBackToAFling() {
+        for (FlingCurve curve : createCurves()) {
+            PhysicsScroller scroller = new PhysicsScroller(curve);
+            scroller.fling(-50, 6000, 0, 3000, START_TIME);
+            ArrayList<Integer> positions = run(scroller, START_TIME);
+            int rest = last(positions);
+            // the fling carries it well into the range instead of stopping at the edge
+            assertTrue("rests inside the range: " + rest, rest > 0 && rest <= 3000);
+            assertEquals(rest, scroller.getFinalY());
+            assertMonotonic(positions, 1);
+        }
+    }
+
+    @Test
+    public void finalYIsWhereTheFlingComesToRest() {
+        for (FlingCurve curve : createCurves()) {
+            PhysicsScroller scroller = new PhysicsScroller(curve);
+            for (float velocity : VELOCITIES) {
+                for (int sign = -1; sign <= 1; sign += 2) {
+                    // inside a large range
+                    scroller.fling(50000, sign * velocity, 0, 100000, START_TIME);
+                    int finalY = scroller.getFinalY();
+                    assertEquals(finalY, last(run(scroller, START_TIME)));
+
+                    // into an edge
+                    scroller.fling(100, sign * velocity, 0, 200, START_TIME);
+                    finalY = scroller.getFinalY();
+                    assertEquals(finalY, last(run(scroller, START_TIME)));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void flingInsideTheRangeIsMonotonic() {
+        for (FlingCurve curve : createCurves()) {
+            PhysicsScroller scroller = new PhysicsScroller(curve);
+            for (float velocity : VELOCITIES) {
+                scroller.fling(50000, velocity, 0, 100000, START_TIME);
+                assertMonotonic(run(scroller, START_TIME), 1);
+                scroller.fling(50000, -velocity, 0, 100000, START_TIME);
+                assertMonotonic(run(scroller, START_TIME), -1);
+            }
+        }
+    }
+
+    @Test
+    public void springBackInsideTheRangeDoesNothing() {
+        PhysicsScroller scroller = new PhysicsScroller(createCurves()[0]);
+        assertFalse(scroller.springBack(500, 0, 1000, START_TIME));
+        assertFalse(scroller.computeScrollOffset(START_TIME));
+    }
+
+    /**
+     * The positions move towards the edge from the given side and never cross it.
+     *
+     * @param side -1 if the positions are below the edge, 1 if above
+     */
+    private static void assertApproachesEdge(ArrayList<Integer> positions, int edge, int side) {
+        assertStaysOutside(positions, edge, side);
+        assertMonotonic(positions, -side);
+    }
+
+    private static void assertStaysOutside(ArrayList<Integer> positions, int edge, int side) {
+        for (int position : positions) {
+            if ((position - edge) * side < 0) {
+                fail("crossed the edge " + edge + " to " + position);
+            }
+        }
+    }
+
+    private static void assertMonotonic(ArrayList<Integer> positions, int direction) {
+        for (int i = 1; i < positions.size(); i++) {
+            if ((positions.get(i) - positions.get(i - 1)) * direction < 0) {
+                fail("turned at frame " + i + ": " + positions.get(i - 1) + " -> "
+                        + positions.get(i));
+            }
+        }
+    }
+
+    private static void assertAtMostOneTurn(ArrayList<Integer> positions) {
+        int turns = 0;
+        int direction = 0;
+        for (int i = 1; i < positions.size(); i++) {
+            int step = Integer.signum(positions.get(i) - positions.get(i - 1));
+            if (step != 0 && step != direction) {
+                if (direction != 0) {
+                    turns++;
+                }
+                direction = step;
+            }
+        }
+        assertTrue("turned " + turns + " times", turns <= 1);
+    }
+
+    private static int last(ArrayList<Integer> positions) {
+        return positions.get(positions.size() - 1);
+    }
+
+    private static int max(ArrayList<Integer> positions) {
+        int max = Integer.MIN_VALUE;
+        for (int position : positions) {
+            max = Math.max(max, position);
+        }
+        return max;
+    }
+
+    private static int min(ArrayList<Integer> positions) {
+        int min = Integer.MAX_VALUE;
+        for (int position : positions) {
+            min = Math.min(min, position);
+        }
+        return min;
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.androidl.welen.androidl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Checks the mappings of the {@link RubberBand}s and their inverses.
+ */
+public class RubberBandTest {
+
+    @Test
+    public void linearScalesByTheFactor() {
+        RubberBand band = RubberBand.linear(0.5f);
+        for (float pixels = 0; pixels < 2000; pixels += 13) {
+            assertEquals(pixels * 0.5f, band.getAmount(pixels), 1e-3f);
+            assertEquals(pixels, band.getPixels(band.getAmount(pixels)), 1e-3f);
+        }
+    }
+
+    @Test
+    public void asymptoticStaysBelowTheLimit() {
+        RubberBand band = RubberBand.asymptotic(0.5f, 300f);
+        float previous = -1;
+        for (float pixels = 0; pixels < 100000; pixels += 97) {
+            float amount = band.getAmount(pixels);
+            assertTrue(amount > previous);
+            assertTrue(amount < 300f);
+            previous = amount;
+        }
+    }
+
+    @Test
+    public void asymptoticStartsWithTheSlopeOfTheFactor() {
+        RubberBand band = RubberBand.asymptotic(0.5f, 300f);
+        assertEquals(0f, band.getAmount(0), 0);
+        assertEquals(0.5f, band.getAmount(1f), 1e-2f);
+    }
+
+    @Test
+    public void asymptoticPixelsAreTheInverse() {
+        RubberBand band = RubberBand.asymptotic(0.5f, 300f);
+        for (float pixels = 0; pixels < 5000; pixels += 11) {
+            float roundTrip = band.getPixels(band.getAmount(pixels));
+            assertEquals(pixels, roundTrip, 1e-2f * Math.max(1, pixels));
+        }
+        // the limit itself is clamped instead of mapping to an infinite distance
+        assertTrue(band.getPixels(300f) < Float.POSITIVE_INFINITY);
+    }
+}
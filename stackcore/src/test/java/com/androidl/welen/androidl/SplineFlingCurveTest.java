@@ -0,0 +1,205 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.androidl.welen.androidl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Checks the {@link SplineFlingCurve} against the fling of the platform OverScroller.
+ */
+public class SplineFlingCurveTest {
+
+    private static final float[] DENSITIES = new float[] { 1f, 2f, 3f, 4f };
+    private static final float[] VELOCITIES = new float[] {
+            100f, 500f, 1500f, 4000f, 9000f, 20000f
+    };
+    private static final long FRAME_MILLIS = 16;
+
+    @Test
+    public void durationAndDistanceMatchTheOverScroller() {
+        for (float density : DENSITIES) {
+            SplineFlingCurve curve = new SplineFlingCurve(density,
+                    SplineFlingCurve.DEFAULT_FRICTION);
+            OverScrollerFling reference = new OverScrollerFling(density,
+                    SplineFlingCurve.DEFAULT_FRICTION);
+            for (float velocity : VELOCITIES) {
+                for (int sign = -1; sign <= 1; sign += 2) {
+                    reference.fling(0, (int) (sign * velocity));
+                    assertEquals(reference.mDuration, curve.getDuration(sign * velocity));
+                    // the OverScroller truncates the distance to whole pixels
+                    assertEquals(reference.mFinal, curve.getDistance(sign * velocity), 1.0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void everyFrameMatchesTheOverScroller() {
+        for (float density : DENSITIES) {
+            SplineFlingCurve curve = new SplineFlingCurve(density,
+                    SplineFlingCurve.DEFAULT_FRICTION);
+            OverScrollerFling reference = new OverScrollerFling(density,
+                    SplineFlingCurve.DEFAULT_FRICTION);
+            for (float velocity : VELOCITIES) {
+                for (int sign = -1; sign <= 1; sign += 2) {
+                    float v = sign * velocity;
+                    reference.fling(1000, (int) v);
+                    for (long time = 0; time < reference.mDuration; time += FRAME_MILLIS) {
+                        reference.update(time);
+                        int position = 1000 + Math.round(curve.getOffset(v, time));
+                        assertEquals("position at " + time, reference.mCurrentPosition,
+                                position, 1.0);
+                        // the velocity is proportional to the truncated distance
+                        float velocityAtTime = curve.getVelocity(v, time);
+                        float tolerance = 1f + Math.abs(velocityAtTime)
+                                * (0.01f + 1f / Math.max(1, Math.abs(reference.mSplineDistance)));
+                        assertEquals("velocity at " + time, reference.mCurrVelocity,
+                                velocityAtTime, tolerance);
+                    }
+                    assertEquals(0f, curve.getVelocity(v, reference.mDuration), 0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void offsetIsMonotonicAndEndsAtTheDistance() {
+        SplineFlingCurve curve = new SplineFlingCurve(3f, SplineFlingCurve.DEFAULT_FRICTION);
+        for (float velocity : VELOCITIES) {
+            long duration = curve.getDuration(velocity);
+            float previous = 0;
+            for (long time = 0; time <= duration; time++) {
+                float offset = curve.getOffset(velocity, time);
+                assertTrue(offset >= previous);
+                previous = offset;
+            }
+            assertEquals(curve.getDistance(velocity), curve.getOffset(velocity, duration), 0);
+            assertEquals(curve.getDistance(velocity), curve.getOffset(velocity, duration * 2), 0);
+        }
+    }
+
+    @Test
+    public void zeroVelocityDoesNotMove() {
+        SplineFlingCurve curve = new SplineFlingCurve(3f, SplineFlingCurve.DEFAULT_FRICTION);
+        assertEquals(0, curve.getDuration(0));
+        assertEquals(0f, curve.getDistance(0), 0);
+    }
+
+    /**
+     * The spline fling of android.widget.OverScroller.SplineOverScroller, transcribed without
+     * the edge handling.
+     */
+    private static class OverScrollerFling {
+
+        private static final float GRAVITY_EARTH = 9.80665f;
+        private static final float DECELERATION_RATE =
+                (float) (Math.log(0.78) / Math.log(0.9));
+        private static final float INFLEXION = 0.35f;
+        private static final float START_TENSION = 0.5f;
+        private static final float END_TENSION = 1.0f;
+        private static final float P1 = START_TENSION * INFLEXION;
+        private static final float P2 = 1.0f - END_TENSION * (1.0f - INFLEXION);
+
+        private static final int NB_SAMPLES = 100;
+        private static final float[] SPLINE_POSITION = new float[NB_SAMPLES + 1];
+
+        static {
+            float xMin = 0.0f;
+            for (int i = 0; i < NB_SAMPLES; i++) {
+                final float alpha = (float) i / NB_SAMPLES;
+                float xMax = 1.0f;
+                float x, tx, coef;
+                while (true) {
+                    x = xMin + (xMax - xMin) / 2.0f;
+                    coef = 3.0f * x * (1.0f - x);
+                    tx = coef * ((1.0f - x) * P1 + x * P2) + x * x * x;
+                    if (Math.abs(tx - alpha) < 1E-5) break;
+                    if (tx > alpha) xMax = x;
+                    else xMin = x;
+                }
+                SPLINE_POSITION[i] = coef * ((1.0f - x) * START_TENSION + x) + x * x * x;
+            }
+            SPLINE_POSITION[NB_SAMPLES] = 1.0f;
+        }
+
+        private final float mFlingFriction;
+        private final float mPhysicalCoeff;
+
+        int mStart;
+        int mFinal;
+        int mDuration;
+        int mSplineDistance;
+        int mCurrentPosition;
+        float mCurrVelocity;
+
+        OverScrollerFling(float density, float friction) {
+            float ppi = density * 160.0f;
+            mFlingFriction = friction;
+            mPhysicalCoeff = GRAVITY_EARTH * 39.37f * ppi * 0.84f;
+        }
+
+        void fling(int start, int velocity) {
+            mStart = start;
+            mDuration = 0;
+            double totalDistance = 0.0;
+            if (velocity != 0) {
+                mDuration = getSplineFlingDuration(velocity);
+                totalDistance = getSplineFlingDistance(velocity);
+            }
+            mSplineDistance = (int) (totalDistance * Math.signum(velocity));
+            mFinal = start + mSplineDistance;
+        }
+
+        void update(long currentTime) {
+            final float t = (float) currentTime / mDuration;
+            final int index = (int) (NB_SAMPLES * t);
+            float distanceCoef = 1.f;
+            float velocityCoef = 0.f;
+            if (index < NB_SAMPLES) {
+                final float tInf = (float) index / NB_SAMPLES;
+                final float tSup = (float) (index + 1) / NB_SAMPLES;
+                final float dInf = SPLINE_POSITION[index];
+                final float dSup = SPLINE_POSITION[index + 1];
+                velocityCoef = (dSup - dInf) / (tSup - tInf);
+                distanceCoef = dInf + (t - tInf) * velocityCoef;
+            }
+            double distance = distanceCoef * mSplineDistance;
+            mCurrVelocity = velocityCoef * mSplineDistance / mDuration * 1000.0f;
+            mCurrentPosition = mStart + (int) Math.round(distance);
+        }
+
+        private double getSplineDeceleration(int velocity) {
+            return Math.log(INFLEXION * Math.abs(velocity) / (mFlingFriction * mPhysicalCoeff));
+        }
+
+        private double getSplineFlingDistance(int velocity) {
+            final double l = getSplineDeceleration(velocity);
+            final double decelMinusOne = DECELERATION_RATE - 1.0;
+            return mFlingFriction * mPhysicalCoeff
+                    * Math.exp(DECELERATION_RATE / decelMinusOne * l);
+        }
+
+        private int getSplineFlingDuration(int velocity) {
+            final double l = getSplineDeceleration(velocity);
+            final double decelMinusOne = DECELERATION_RATE - 1.0;
+            return (int) (1000.0 * Math.exp(l / decelMinusOne));
+        }
+    }
+}